@@ -0,0 +1,202 @@
+package shiftman.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import shiftman.server.ShiftMan;
+
+/**
+ * Times the ShiftMan operations on generated rosters of increasing size, so that an operation that gets slower as
+ * the roster grows shows up before it reaches a shop. Each size is run in the same JVM, after a warm-up, and the time
+ * per call is printed for each operation.
+ * <p>
+ * Usage: java shiftman.client.Benchmark [-staff 100,1000,10000] [-shifts 10,50,200] [-density 1.0] [-millis 1000]
+ * [-server shiftman.server.ShiftManServer]
+ * <p>
+ * -staff and -shifts give the number of staff and the number of shifts per day of each roster. If -shifts has fewer
+ * values than -staff, its last value is used for the remaining rosters. -density is how fully the shifts are staffed,
+ * see {@link RosterGenerator}. -millis is how long each operation is timed for at each size.
+ */
+public class Benchmark {
+	private static final long SEED = 42;
+
+	private final String _serverClass;
+	private final long _millis;
+	private long _sink; // results of the queries are added up here, so the JIT cannot skip the calls
+
+	public Benchmark(String serverClass, long millis) {
+		_serverClass = serverClass;
+		_millis = millis;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] staff = { 100, 1000, 10000 };
+		int[] shifts = { 10, 50, 200 };
+		double density = 1.0;
+		long millis = 1000;
+		String serverClass = "shiftman.server.ShiftManServer";
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "-staff": staff = parseInts(args[i + 1]); break;
+			case "-shifts": shifts = parseInts(args[i + 1]); break;
+			case "-density": density = Double.parseDouble(args[i + 1]); break;
+			case "-millis": millis = Long.parseLong(args[i + 1]); break;
+			case "-server": serverClass = args[i + 1]; break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		Benchmark benchmark = new Benchmark(serverClass, millis);
+		System.out.println("Server: " + serverClass + ", assignment density: " + density);
+		System.out.println(String.format("%-22s %8s %8s %14s", "Operation", "Staff", "Shifts", "ns/op"));
+		for (int i = 0; i < staff.length; i++) {
+			int shiftsPerDay = shifts[Math.min(i, shifts.length - 1)];
+			benchmark.run(new RosterGenerator(staff[i], shiftsPerDay, density, SEED + i));
+		}
+		System.out.println("(" + benchmark._sink + ")");
+	}
+
+	private static int[] parseInts(String values) {
+		String[] parts = values.split(",");
+		int[] ints = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			ints[i] = Integer.parseInt(parts[i].trim());
+		}
+		return ints;
+	}
+
+	/**
+	 * Times every operation on the given roster and prints the results
+	 */
+	public void run(RosterGenerator roster) throws Exception {
+		String size = String.format("%8d %8d", roster.getStaff().size(), roster.getShifts().size() / RosterGenerator.DAYS.length);
+		timeChanges(roster, size);
+
+		ShiftMan scheduler = newServer();
+		roster.populate(scheduler, "Benchmark");
+		for (Query query : queries(roster)) {
+			runQuery(scheduler, query, _millis / 2); // warm-up
+			double nanos = runQuery(scheduler, query, _millis);
+			System.out.println(String.format("%-22s %s %14.1f", query._name, size, nanos));
+		}
+	}
+
+	/**
+	 * Times registerStaff, addShift and assignStaff by building the roster from scratch repeatedly, and prints the
+	 * median time of each over all the builds. The first builds are a warm-up.
+	 */
+	private void timeChanges(RosterGenerator roster, String size) throws Exception {
+		List<Double> register = new ArrayList<>();
+		List<Double> addShift = new ArrayList<>();
+		List<Double> assign = new ArrayList<>();
+		long end = System.nanoTime() + _millis * 1000000 * 3 / 2;
+		for (int round = 0; round < 5 || System.nanoTime() < end; round++) {
+			ShiftMan scheduler = newServer();
+			scheduler.newRoster("Benchmark");
+			for (String day : RosterGenerator.DAYS) {
+				scheduler.setWorkingHours(day, RosterGenerator.OPENING_TIME, RosterGenerator.CLOSING_TIME);
+			}
+
+			long start = System.nanoTime();
+			for (String[] staff : roster.getStaff()) {
+				_sink += scheduler.registerStaff(staff[0], staff[1]).length();
+			}
+			long registered = System.nanoTime();
+			for (String[] shift : roster.getShifts()) {
+				_sink += scheduler.addShift(shift[0], shift[1], shift[2], shift[3]).length();
+			}
+			long added = System.nanoTime();
+			for (String[] row : roster.getAssignments()) {
+				_sink += scheduler.assignStaff(row[0], row[1], row[2], row[3], row[4], row[5].equals("true")).length();
+			}
+			long assigned = System.nanoTime();
+
+			if (round >= 2) {
+				register.add((double) (registered - start) / roster.getStaff().size());
+				addShift.add((double) (added - registered) / roster.getShifts().size());
+				assign.add((double) (assigned - added) / Math.max(1, roster.getAssignments().size()));
+			}
+		}
+		System.out.println(String.format("%-22s %s %14.1f", "registerStaff", size, median(register)));
+		System.out.println(String.format("%-22s %s %14.1f", "addShift", size, median(addShift)));
+		System.out.println(String.format("%-22s %s %14.1f", "assignStaff", size, median(assign)));
+	}
+
+	private static double median(List<Double> values) {
+		Collections.sort(values);
+		return values.get(values.size() / 2);
+	}
+
+	/**
+	 * Calls the query repeatedly for the given time
+	 * @return the average time of one call in nanoseconds
+	 */
+	private double runQuery(ShiftMan scheduler, Query query, long millis) {
+		long start = System.nanoTime();
+		long end = start + millis * 1000000;
+		long calls = 0;
+		long now;
+		do {
+			for (int i = 0; i < 100; i++) { // check the time every 100 calls, so that reading the clock is not timed
+				_sink += query.run(scheduler, (int) (calls++ & Integer.MAX_VALUE));
+			}
+			now = System.nanoTime();
+		} while (now < end);
+		return (double) (now - start) / calls;
+	}
+
+	private ShiftMan newServer() throws Exception {
+		return (ShiftMan) Class.forName(_serverClass).getDeclaredConstructor().newInstance();
+	}
+
+	private List<Query> queries(RosterGenerator roster) {
+		final List<String[]> staff = roster.getStaff();
+		return Arrays.asList(
+				new Query("getRosterForDay") {
+					int run(ShiftMan scheduler, int call) {
+						return scheduler.getRosterForDay(RosterGenerator.DAYS[call % RosterGenerator.DAYS.length]).size();
+					}
+				},
+				new Query("getRosterForWorker") {
+					int run(ShiftMan scheduler, int call) {
+						String[] worker = staff.get(call % staff.size());
+						return scheduler.getRosterForWorker(worker[0] + " " + worker[1]).size();
+					}
+				},
+				new Query("getUnassignedStaff") {
+					int run(ShiftMan scheduler, int call) {
+						return scheduler.getUnassignedStaff().size();
+					}
+				},
+				new Query("shiftsWithoutManagers") {
+					int run(ShiftMan scheduler, int call) {
+						return scheduler.shiftsWithoutManagers().size();
+					}
+				},
+				new Query("understaffedShifts") {
+					int run(ShiftMan scheduler, int call) {
+						return scheduler.understaffedShifts().size();
+					}
+				},
+				new Query("overstaffedShifts") {
+					int run(ShiftMan scheduler, int call) {
+						return scheduler.overstaffedShifts().size();
+					}
+				});
+	}
+
+	/**
+	 * A query to time. Each call is given its number, to vary the arguments of the query between calls.
+	 */
+	private abstract static class Query {
+		private final String _name;
+
+		Query(String name) {
+			_name = name;
+		}
+
+		abstract int run(ShiftMan scheduler, int call);
+	}
+}
@@ -0,0 +1,175 @@
+package shiftman.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import shiftman.server.ConcurrentShiftManServer;
+import shiftman.server.LatencyHistogram;
+import shiftman.server.ShiftManProtocol;
+import shiftman.server.ShiftManService;
+
+/**
+ * Puts load on a ShiftManService from many connections at once, like the terminals of many stores sharing one
+ * roster, and reports the throughput and latency of the requests. The roster is first created with batch requests, then
+ * each connection sends requests in pipelined groups: mostly queries, with some assignments.
+ * <p>
+ * Usage: java shiftman.client.LoadGenerator [-host localhost -port 7000] [-connections 8] [-depth 32] [-seconds 10]
+ * [-staff 1000] [-shifts 50] [-threads 4]
+ * <p>
+ * Without -port, a service is started in this process on a loopback port, with -threads I/O threads. -depth is the
+ * number of requests each connection sends before waiting for their responses.
+ */
+public class LoadGenerator {
+	private static final int WRITE_PERCENT = 10;
+
+	public static void main(String[] args) throws Exception {
+		String host = "localhost";
+		int port = -1;
+		int connections = 8;
+		int depth = 32;
+		int seconds = 10;
+		int staff = 1000;
+		int shifts = 50;
+		int threads = 4;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "-host": host = args[i + 1]; break;
+			case "-port": port = Integer.parseInt(args[i + 1]); break;
+			case "-connections": connections = Integer.parseInt(args[i + 1]); break;
+			case "-depth": depth = Integer.parseInt(args[i + 1]); break;
+			case "-seconds": seconds = Integer.parseInt(args[i + 1]); break;
+			case "-staff": staff = Integer.parseInt(args[i + 1]); break;
+			case "-shifts": shifts = Integer.parseInt(args[i + 1]); break;
+			case "-threads": threads = Integer.parseInt(args[i + 1]); break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		ShiftManService service = null;
+		InetSocketAddress address;
+		if (port < 0) {
+			service = new ShiftManService(new ConcurrentShiftManServer(), new InetSocketAddress("localhost", 0), threads);
+			address = service.getAddress();
+		} else {
+			address = new InetSocketAddress(host, port);
+		}
+
+		RosterGenerator roster = new RosterGenerator(staff, shifts, 0.5, 1); // half staffed, so there are assignments to make
+		try (ShiftManClient client = new ShiftManClient(address)) {
+			createRoster(client, roster);
+		}
+		run(address, roster, connections, depth, seconds);
+
+		if (service != null) {
+			service.close();
+		}
+	}
+
+	/**
+	 * Creates the roster with one batch request for each kind of change
+	 */
+	private static void createRoster(ShiftManClient client, RosterGenerator roster) {
+		long start = System.nanoTime();
+		check(client.newRoster("Load test"));
+		for (String day : RosterGenerator.DAYS) {
+			check(client.setWorkingHours(day, RosterGenerator.OPENING_TIME, RosterGenerator.CLOSING_TIME));
+		}
+		checkAll(client.registerStaffBatch(roster.getStaff()));
+		checkAll(client.addShiftsBatch(roster.getShifts()));
+		checkAll(client.assignStaffBatch(roster.getAssignments()));
+		System.out.println(String.format("Created roster of %d staff, %d shifts and %d assignments in %d ms",
+				roster.getStaff().size(), roster.getShifts().size(), roster.getAssignments().size(),
+				(System.nanoTime() - start) / 1000000));
+	}
+
+	private static void checkAll(List<String> statuses) {
+		for (String status : statuses) {
+			check(status);
+		}
+	}
+
+	private static void check(String status) {
+		if (!status.equals("")) {
+			throw new IllegalStateException(status);
+		}
+	}
+
+	private static void run(InetSocketAddress address, final RosterGenerator roster, int connections, final int depth,
+			final int seconds) throws Exception {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong requests = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final long end = System.nanoTime() + seconds * 1000000000L;
+
+		Thread[] threads = new Thread[connections];
+		for (int i = 0; i < connections; i++) {
+			final ShiftManClient client = new ShiftManClient(address);
+			final Random random = new Random(i);
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						while (System.nanoTime() < end) {
+							long start = System.nanoTime();
+							for (int j = 0; j < depth; j++) {
+								sendRequest(client, roster, random);
+							}
+							client.flush();
+							for (int j = 0; j < depth; j++) {
+								client.receive();
+								latency.record(System.nanoTime() - start);
+							}
+							requests.addAndGet(depth);
+						}
+						client.close();
+					} catch (IOException e) {
+						errors.incrementAndGet();
+						System.err.println("Connection failed: " + e);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		LatencyHistogram.Snapshot snapshot = latency.snapshot();
+		System.out.println(String.format("%d connections, pipeline depth %d: %d requests/s, latency p50 %d us, p99 %d us, max %d us",
+				connections, depth, requests.get() / seconds, snapshot.getValueAtPercentile(50) / 1000,
+				snapshot.getValueAtPercentile(99) / 1000, snapshot.getMax() / 1000));
+		if (errors.get() > 0) {
+			System.out.println(errors.get() + " connections failed");
+		}
+	}
+
+	/**
+	 * Sends one request picked at random: a query of a day's roster, a worker's roster or the staffing of the shifts,
+	 * or an assignment of a random staff member to a random shift
+	 */
+	private static void sendRequest(ShiftManClient client, RosterGenerator roster, Random random) {
+		String[] staff = roster.getStaff().get(random.nextInt(roster.getStaff().size()));
+		if (random.nextInt(100) < WRITE_PERCENT) {
+			String[] shift = roster.getShifts().get(random.nextInt(roster.getShifts().size()));
+			client.sendAssignStaff(shift[0], shift[1], shift[2], staff[0], staff[1], false);
+			return;
+		}
+
+		switch (random.nextInt(4)) {
+		case 0:
+			client.send(ShiftManProtocol.GET_ROSTER_FOR_DAY, RosterGenerator.DAYS[random.nextInt(RosterGenerator.DAYS.length)]);
+			break;
+		case 1:
+			client.send(ShiftManProtocol.GET_ROSTER_FOR_WORKER, staff[0] + " " + staff[1]);
+			break;
+		case 2:
+			client.send(ShiftManProtocol.UNDERSTAFFED_SHIFTS);
+			break;
+		default:
+			client.send(ShiftManProtocol.SHIFTS_WITHOUT_MANAGERS);
+			break;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package shiftman.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import shiftman.server.ShiftMan;
+
+/**
+ * Generates a realistic roster of a given size, for benchmarks and load tests. The shop is open 06:00-22:00 every
+ * day and each day is split into back-to-back shifts. Staff share family names (so sorting by family name has ties,
+ * as in a real shop) and each shift gets a manager and workers picked at random from the staff.
+ */
+public class RosterGenerator {
+	public static final String[] DAYS = { "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday" };
+	public static final String OPENING_TIME = "06:00";
+	public static final String CLOSING_TIME = "22:00";
+	private static final int OPEN_MINUTES = 16 * 60;
+
+	private final List<String[]> _staff; // given name, family name
+	private final List<String[]> _shifts; // day, start time, end time, minimum workers
+	private final List<String[]> _assignments; // day, start time, end time, given name, family name, "true" if manager
+
+	/**
+	 * @param staff the number of staff to register
+	 * @param shiftsPerDay the number of shifts each day, at most 480 as shifts must be at least a minute long and
+	 *                     a minute apart
+	 * @param assignmentDensity how fully the shifts are staffed. Each shift has a manager with this probability, and
+	 *                          on average this fraction of its minimum workers. Above 1 shifts are overstaffed.
+	 * @param seed the seed of the random choices, so that the same roster can be generated again
+	 */
+	public RosterGenerator(int staff, int shiftsPerDay, double assignmentDensity, long seed) {
+		if (staff < 1 || shiftsPerDay < 1 || shiftsPerDay > OPEN_MINUTES / 2) {
+			throw new IllegalArgumentException("Cannot generate " + staff + " staff and " + shiftsPerDay + " shifts per day");
+		}
+		Random random = new Random(seed);
+
+		_staff = new ArrayList<>(staff);
+		int familyNames = (int) Math.max(1, Math.sqrt(staff));
+		for (int i = 0; i < staff; i++) {
+			_staff.add(new String[] { "Given" + i, "Family" + random.nextInt(familyNames) });
+		}
+
+		_shifts = new ArrayList<>();
+		_assignments = new ArrayList<>();
+		int length = OPEN_MINUTES / shiftsPerDay; // shifts that touch overlap, so each ends a minute before the next
+		for (String day : DAYS) {
+			for (int i = 0; i < shiftsPerDay; i++) {
+				int start = 6 * 60 + i * length;
+				String[] shift = { day, time(start), time(start + length - 1), Integer.toString(1 + random.nextInt(3)) };
+				_shifts.add(shift);
+				addAssignments(shift, assignmentDensity, random);
+			}
+		}
+	}
+
+	private void addAssignments(String[] shift, double assignmentDensity, Random random) {
+		int minWorkers = Integer.parseInt(shift[3]);
+		int workers = Math.min(_staff.size(), (int) (minWorkers * assignmentDensity + random.nextDouble()));
+		boolean hasManager = random.nextDouble() < assignmentDensity;
+
+		int first = random.nextInt(_staff.size()); // consecutive staff from a random start, so no one is picked twice
+		for (int i = 0; i < workers + (hasManager ? 1 : 0); i++) {
+			String[] staff = _staff.get((first + i) % _staff.size());
+			boolean isManager = hasManager && i == workers;
+			if (isManager && workers == _staff.size()) {
+				break; // everyone is already a worker
+			}
+			_assignments.add(new String[] { shift[0], shift[1], shift[2], staff[0], staff[1], Boolean.toString(isManager) });
+		}
+	}
+
+	private static String time(int minutes) {
+		return String.format("%02d:%02d", minutes / 60, minutes % 60);
+	}
+
+	public List<String[]> getStaff() {
+		return _staff;
+	}
+
+	public List<String[]> getShifts() {
+		return _shifts;
+	}
+
+	public List<String[]> getAssignments() {
+		return _assignments;
+	}
+
+	/**
+	 * Creates the whole roster in the given ShiftMan
+	 * @throws IllegalStateException if the ShiftMan rejects any part of the roster
+	 */
+	public void populate(ShiftMan scheduler, String shopName) {
+		check(scheduler.newRoster(shopName));
+		for (String day : DAYS) {
+			check(scheduler.setWorkingHours(day, OPENING_TIME, CLOSING_TIME));
+		}
+		for (String[] staff : _staff) {
+			check(scheduler.registerStaff(staff[0], staff[1]));
+		}
+		for (String[] shift : _shifts) {
+			check(scheduler.addShift(shift[0], shift[1], shift[2], shift[3]));
+		}
+		for (String[] assignment : _assignments) {
+			check(scheduler.assignStaff(assignment[0], assignment[1], assignment[2], assignment[3], assignment[4],
+					assignment[5].equals("true")));
+		}
+	}
+
+	private static void check(String status) {
+		if (!status.equals("")) {
+			throw new IllegalStateException(status);
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package shiftman.client;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import shiftman.server.ShiftMan;
+import shiftman.server.ShiftManProtocol;
+
+/**
+ * A client of a ShiftManService. It can be used as a ShiftMan, making one request at a time, or requests can be
+ * pipelined: any number of requests are sent with the send methods and flush(), and their responses are then
+ * received in the same order with receive(). A client must only be used by one thread at a time.
+ * <p>
+ * If the connection fails, the ShiftMan methods return an error rather than throwing an exception, in the same way as
+ * for any other error.
+ */
+public class ShiftManClient implements ShiftMan, Closeable {
+	private final SocketChannel _channel;
+	private ByteBuffer _out; // requests not yet sent
+	private ByteBuffer _in; // bytes received but not yet read as responses, ready to be read
+	private int _nextRequestId;
+	private int _pending; // requests sent or buffered whose responses have not been received
+
+	public ShiftManClient(InetSocketAddress address) throws IOException {
+		_channel = SocketChannel.open(address);
+		_channel.socket().setTcpNoDelay(true);
+		_out = ByteBuffer.allocate(64 * 1024);
+		_in = ByteBuffer.allocate(64 * 1024);
+		_in.flip();
+	}
+
+	/**
+	 * Buffers a request with string arguments. It is not sent until {@link #flush()} or {@link #receive()} is called.
+	 * @param operation one of the operations of {@link ShiftManProtocol}
+	 * @return the id of the request, which its response will have
+	 */
+	public int send(byte operation, String... args) {
+		int size = 1;
+		for (String arg : args) {
+			size += ShiftManProtocol.maxSize(arg);
+		}
+		int start = beginRequest(operation, size);
+		for (String arg : args) {
+			ShiftManProtocol.putString(_out, arg);
+		}
+		return endRequest(start);
+	}
+
+	public int sendAssignStaff(String dayOfWeek, String startTime, String endTime, String givenName, String familyName, boolean isManager) {
+		int size = ShiftManProtocol.maxSize(dayOfWeek) + ShiftManProtocol.maxSize(startTime) + ShiftManProtocol.maxSize(endTime)
+				+ ShiftManProtocol.maxSize(givenName) + ShiftManProtocol.maxSize(familyName) + 1;
+		int start = beginRequest(ShiftManProtocol.ASSIGN_STAFF, size);
+		ShiftManProtocol.putString(_out, dayOfWeek);
+		ShiftManProtocol.putString(_out, startTime);
+		ShiftManProtocol.putString(_out, endTime);
+		ShiftManProtocol.putString(_out, givenName);
+		ShiftManProtocol.putString(_out, familyName);
+		_out.put((byte) (isManager ? 1 : 0));
+		return endRequest(start);
+	}
+
+	/**
+	 * Buffers a batch request
+	 * @param operation one of the batch operations of {@link ShiftManProtocol}
+	 */
+	public int sendBatch(byte operation, List<String[]> rows) {
+		int size = 5;
+		for (String[] row : rows) {
+			size += ShiftManProtocol.maxSize(Arrays.asList(row));
+		}
+		int start = beginRequest(operation, size);
+		ShiftManProtocol.putVarInt(_out, rows.size());
+		for (String[] row : rows) {
+			ShiftManProtocol.putStrings(_out, Arrays.asList(row));
+		}
+		return endRequest(start);
+	}
+
+	private int beginRequest(byte operation, int size) {
+		_out = ShiftManProtocol.ensureRoom(_out, ShiftManProtocol.FRAME_HEADER_SIZE + 1 + size);
+		int start = ShiftManProtocol.beginFrame(_out, _nextRequestId);
+		_out.put(operation);
+		return start;
+	}
+
+	private int endRequest(int start) {
+		ShiftManProtocol.endFrame(_out, start);
+		_pending++;
+		return _nextRequestId++;
+	}
+
+	/**
+	 * Sends all the buffered requests
+	 */
+	public void flush() throws IOException {
+		_out.flip();
+		while (_out.hasRemaining()) {
+			_channel.write(_out);
+		}
+		_out.clear();
+	}
+
+	/**
+	 * Receives the response to the oldest request whose response has not been received yet, sending any buffered
+	 * requests first
+	 */
+	public Response receive() throws IOException {
+		if (_pending == 0) {
+			throw new IllegalStateException("No request is waiting for a response");
+		}
+		if (_out.position() > 0) {
+			flush();
+		}
+
+		int length;
+		while ((length = ShiftManProtocol.frameLength(_in)) < 0) {
+			_in.compact();
+			if (!_in.hasRemaining()) { // the response is larger than the buffer
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(_in.capacity() * 2, 4 + _in.getInt(0)));
+				_in.flip();
+				larger.put(_in);
+				_in = larger;
+			}
+			int read = _channel.read(_in);
+			_in.flip();
+			if (read < 0) {
+				throw new EOFException("Connection closed by the server");
+			}
+		}
+
+		int frameEnd = _in.position() + 4 + length;
+		_in.getInt(); // length
+		int requestId = _in.getInt();
+		byte kind = _in.get();
+		Response response;
+		if (kind == ShiftManProtocol.STATUS) {
+			response = new Response(requestId, ShiftManProtocol.getString(_in), null);
+		} else {
+			response = new Response(requestId, null, ShiftManProtocol.getStrings(_in));
+		}
+		_in.position(frameEnd);
+		_pending--;
+		return response;
+	}
+
+	/**
+	 * @return the number of requests whose responses have not been received
+	 */
+	public int getPending() {
+		return _pending;
+	}
+
+	public void close() throws IOException {
+		_channel.close();
+	}
+
+	/**
+	 * Makes one request and waits for its response
+	 */
+	private Response call(byte operation, String... args) throws IOException {
+		checkNotPipelining();
+		send(operation, args);
+		return receive();
+	}
+
+	private void checkNotPipelining() {
+		if (_pending > 0) {
+			throw new IllegalStateException("Responses to pipelined requests must be received first");
+		}
+	}
+
+	private String status(byte operation, String... args) {
+		try {
+			return call(operation, args).getStatus();
+		} catch (IOException e) {
+			return "ERROR: Request failed: " + e.getMessage();
+		}
+	}
+
+	private List<String> list(byte operation, String... args) {
+		try {
+			return call(operation, args).getList();
+		} catch (IOException e) {
+			return Collections.singletonList("ERROR: Request failed: " + e.getMessage());
+		}
+	}
+
+	private List<String> batch(byte operation, List<String[]> rows) {
+		try {
+			checkNotPipelining();
+			sendBatch(operation, rows);
+			return receive().getList();
+		} catch (IOException e) {
+			return Collections.singletonList("ERROR: Request failed: " + e.getMessage());
+		}
+	}
+
+	public String newRoster(String shopName) {
+		return status(ShiftManProtocol.NEW_ROSTER, shopName);
+	}
+
+	public String setWorkingHours(String dayOfWeek, String startTime, String endTime) {
+		return status(ShiftManProtocol.SET_WORKING_HOURS, dayOfWeek, startTime, endTime);
+	}
+
+	public String addShift(String dayOfWeek, String startTime, String endTime, String minimumWorkers) {
+		return status(ShiftManProtocol.ADD_SHIFT, dayOfWeek, startTime, endTime, minimumWorkers);
+	}
+
+	public String registerStaff(String givenName, String familyName) {
+		return status(ShiftManProtocol.REGISTER_STAFF, givenName, familyName);
+	}
+
+	public String assignStaff(String dayOfWeek, String startTime, String endTime, String givenName, String familyName, boolean isManager) {
+		try {
+			checkNotPipelining();
+			sendAssignStaff(dayOfWeek, startTime, endTime, givenName, familyName, isManager);
+			return receive().getStatus();
+		} catch (IOException e) {
+			return "ERROR: Request failed: " + e.getMessage();
+		}
+	}
+
+	public List<String> getRegisteredStaff() {
+		return list(ShiftManProtocol.GET_REGISTERED_STAFF);
+	}
+
+	public List<String> getUnassignedStaff() {
+		return list(ShiftManProtocol.GET_UNASSIGNED_STAFF);
+	}
+
+	public List<String> shiftsWithoutManagers() {
+		return list(ShiftManProtocol.SHIFTS_WITHOUT_MANAGERS);
+	}
+
+	public List<String> understaffedShifts() {
+		return list(ShiftManProtocol.UNDERSTAFFED_SHIFTS);
+	}
+
+	public List<String> overstaffedShifts() {
+		return list(ShiftManProtocol.OVERSTAFFED_SHIFTS);
+	}
+
+	public List<String> getRosterForDay(String dayOfWeek) {
+		return list(ShiftManProtocol.GET_ROSTER_FOR_DAY, dayOfWeek);
+	}
+
+	public List<String> getRosterForWorker(String workerName) {
+		return list(ShiftManProtocol.GET_ROSTER_FOR_WORKER, workerName);
+	}
+
+	public List<String> getShiftsManagedBy(String managerName) {
+		return list(ShiftManProtocol.GET_SHIFTS_MANAGED_BY, managerName);
+	}
+
+	public String reportRosterIssues() {
+		return status(ShiftManProtocol.REPORT_ROSTER_ISSUES);
+	}
+
+	public String displayRoster() {
+		return status(ShiftManProtocol.DISPLAY_ROSTER);
+	}
+
+	public List<String> addShiftsBatch(List<String[]> shifts) {
+		return batch(ShiftManProtocol.ADD_SHIFTS_BATCH, shifts);
+	}
+
+	public List<String> registerStaffBatch(List<String[]> staff) {
+		return batch(ShiftManProtocol.REGISTER_STAFF_BATCH, staff);
+	}
+
+	public List<String> assignStaffBatch(List<String[]> assignments) {
+		return batch(ShiftManProtocol.ASSIGN_STAFF_BATCH, assignments);
+	}
+
+	/**
+	 * The response to a request, which is either a status or a list
+	 */
+	public static class Response {
+		private final int _requestId;
+		private final String _status;
+		private final List<String> _list;
+
+		private Response(int requestId, String status, List<String> list) {
+			_requestId = requestId;
+			_status = status;
+			_list = list;
+		}
+
+		public int getRequestId() {
+			return _requestId;
+		}
+
+		public boolean isList() {
+			return _list != null;
+		}
+
+		/**
+		 * @return the status, or the only string of the list if the request returned an error as a list
+		 */
+		public String getStatus() {
+			if (_list != null) {
+				return _list.size() == 1 ? _list.get(0) : "";
+			}
+			return _status;
+		}
+
+		/**
+		 * @return the list, or a list holding only the status if the request returned a status
+		 */
+		public List<String> getList() {
+			if (_list == null) {
+				return Collections.singletonList(_status);
+			}
+			return _list;
+		}
+	}
+}
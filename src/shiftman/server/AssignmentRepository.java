@@ -0,0 +1,162 @@
+package shiftman.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Repository of the shifts each employee is assigned to. Each employee maps to their own schedule, which is kept in
+ * chronological order so that the shifts of one employee can be listed without looking at any other shifts.
+ * Assignments to different shifts may be added concurrently.
+ */
+public class AssignmentRepository {
+    private final ConcurrentHashMap<Employee, NavigableMap<Shift, Assignment>> _schedules; // employee -> (shift -> assignment)
+    private final AtomicInteger _size; // number of assignments
+
+    public AssignmentRepository() {
+        _schedules = new ConcurrentHashMap<>();
+        _size = new AtomicInteger();
+    }
+
+    /**
+     * Records that the employee has been assigned to the shift
+     * @param isManager true if the employee is the manager of the shift, false if the employee is a worker
+     * @param version the version of the roster in which the assignment was made, see {@link Roster#snapshot()}
+     */
+    public void add(Employee employee, Shift shift, boolean isManager, long version) {
+        NavigableMap<Shift, Assignment> schedule = _schedules.get(employee);
+        if (schedule == null) {
+            NavigableMap<Shift, Assignment> newSchedule = new ConcurrentSkipListMap<>(TimePeriod.CHRONOLOGICAL_ORDER);
+            schedule = _schedules.putIfAbsent(employee, newSchedule);
+            if (schedule == null) {
+                schedule = newSchedule;
+            }
+        }
+        schedule.put(shift, new Assignment(isManager, version));
+        _size.incrementAndGet();
+    }
+
+    /**
+     * @return the number of assignments of employees to shifts, as manager or worker
+     */
+    public int size() {
+        return _size.get();
+    }
+
+    /**
+     * Gets all the shifts assigned to the employee as a list of strings. You can either get the shifts where
+     * the employee is a manager or where the employee is a worker.
+     * @param employee the employee to get the shifts for
+     * @param asManager true if you want to get shifts where the employee is a manager.
+     *                  false if you want the shifts where the employee is a worker.
+     * @return the list of shifts assigned to the employee (either as manager or worker).
+     */
+    public List<String> getShiftsForEmployee(Employee employee, boolean asManager) {
+        return getShiftsForEmployee(employee, asManager, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets the shifts as for {@link #getShiftsForEmployee(Employee, boolean)}, leaving out the assignments made after
+     * the given version of the roster
+     */
+    public List<String> getShiftsForEmployee(Employee employee, boolean asManager, long version) {
+        List<String> list = new ArrayList<>();
+        NavigableMap<Shift, Assignment> schedule = _schedules.get(employee);
+        if (schedule == null) {
+            return list;
+        }
+
+        list.add(employee.getFamilyFirstName());
+        for (Map.Entry<Shift, Assignment> assignment : schedule.entrySet()) {
+            if (assignment.getValue().is(asManager, version)) {
+                list.add(assignment.getKey().toString());
+            }
+        }
+
+        if (list.size() == 1) { // no shifts in the requested role
+            list.clear();
+        }
+        return list;
+    }
+
+    /**
+     * Writes the same lines as {@link #getShiftsForEmployee(Employee, boolean)}, each followed by a new line
+     */
+    public void writeShiftsForEmployee(Employee employee, boolean asManager, Appendable out) throws IOException {
+        NavigableMap<Shift, Assignment> schedule = _schedules.get(employee);
+        if (schedule == null) {
+            return;
+        }
+
+        // the name is only written if there is a shift in the requested role. Assignments are never removed, so the
+        // first such shift found is still there when the shifts are written
+        Shift first = null;
+        for (Map.Entry<Shift, Assignment> assignment : schedule.entrySet()) {
+            if (assignment.getValue()._isManager == asManager) {
+                first = assignment.getKey();
+                break;
+            }
+        }
+        if (first == null) {
+            return;
+        }
+
+        out.append(employee.getFamilyFirstName()).append('\n');
+        for (Map.Entry<Shift, Assignment> assignment : schedule.tailMap(first, true).entrySet()) {
+            if (assignment.getValue()._isManager == asManager) {
+                out.append(assignment.getKey().toString()).append('\n');
+            }
+        }
+    }
+
+    /**
+     * @return the version of the roster in which the employee was assigned to the shift, or Long.MAX_VALUE if the
+     *         employee is not assigned to the shift, so that the assignment is in no snapshot
+     */
+    public long getVersion(Employee employee, Shift shift) {
+        NavigableMap<Shift, Assignment> schedule = _schedules.get(employee);
+        Assignment assignment = schedule != null ? schedule.get(shift) : null;
+        return assignment != null ? assignment._version : Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks if the employee was assigned to any shift by the given version of the roster
+     */
+    public boolean isAssigned(Employee employee, long version) {
+        NavigableMap<Shift, Assignment> schedule = _schedules.get(employee);
+        if (schedule == null) {
+            return false;
+        }
+        for (Assignment assignment : schedule.values()) {
+            if (assignment._version <= version) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The role of an employee in a shift, and the version of the roster in which they were assigned to it
+     */
+    private static class Assignment {
+        private final boolean _isManager;
+        private final long _version;
+
+        private Assignment(boolean isManager, long version) {
+            _isManager = isManager;
+            _version = version;
+        }
+
+        /**
+         * Checks if the assignment is in the given role and was made by the given version of the roster
+         */
+        private boolean is(boolean asManager, long version) {
+            return _isManager == asManager && _version <= version;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package shiftman.server;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ShiftMan server that can be used by many clients at the same time.
+ * Changes to the working hours and shifts of a day, and the assignment of staff to the shifts of that day, are
+ * serialized by a lock for that day, so that changes to different days can proceed in parallel. Registering staff is
+ * serialized by a separate lock. The queries take no locks, so they never block or are blocked by changes to the roster.
+ * A batch request holds the locks of all the days it changes, or the staff lock, while its rows are checked and
+ * applied, so the rows are checked against the roster they are applied to and no other changes to those days are
+ * interleaved with it. A roster is exported from a snapshot, so exporting does not hold off changes either.
+ */
+public class ConcurrentShiftManServer extends ShiftManServer {
+    private final ReentrantLock _staffLock;
+    private final ReentrantLock[] _dayLocks; // indexed by the ordinal of the day
+
+    public ConcurrentShiftManServer() {
+        this(new EmployeeTable());
+    }
+
+    ConcurrentShiftManServer(EmployeeTable employeeTable) {
+        super(employeeTable);
+        _staffLock = new ReentrantLock();
+        _dayLocks = new ReentrantLock[DayOfWeek.count()];
+        for (int i = 0; i < _dayLocks.length; i++) {
+            _dayLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Replaces the roster once no other changes are in progress
+     */
+    @Override
+    String installRoster(Roster newRoster) {
+        lockAll();
+        try {
+            return super.installRoster(newRoster);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Takes all the locks of the server, waiting for any changes in progress to finish and keeping the roster
+     * from changing until {@link #unlockAll()} is called
+     */
+    void lockAll() {
+        _staffLock.lock();
+        for (ReentrantLock lock : _dayLocks) {
+            lock.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (ReentrantLock lock : _dayLocks) {
+            lock.unlock();
+        }
+        _staffLock.unlock();
+    }
+
+    @Override
+    public String setWorkingHours(String dayOfWeek, String startTime, String endTime) {
+        ReentrantLock lock = lockForDay(dayOfWeek);
+        if (lock == null) { // invalid day, the error is reported without changing the roster
+            return super.setWorkingHours(dayOfWeek, startTime, endTime);
+        }
+
+        lock.lock();
+        try {
+            return super.setWorkingHours(dayOfWeek, startTime, endTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String addShift(String dayOfWeek, String startTime, String endTime, String minimumWorkers) {
+        ReentrantLock lock = lockForDay(dayOfWeek);
+        if (lock == null) {
+            return super.addShift(dayOfWeek, startTime, endTime, minimumWorkers);
+        }
+
+        lock.lock();
+        try {
+            return super.addShift(dayOfWeek, startTime, endTime, minimumWorkers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String registerStaff(String givenName, String familyName) {
+        _staffLock.lock();
+        try {
+            return super.registerStaff(givenName, familyName);
+        } finally {
+            _staffLock.unlock();
+        }
+    }
+
+    @Override
+    public String assignStaff(String dayOfWeek, String startTime, String endTime, String givenName, String familyName, boolean isManager) {
+        ReentrantLock lock = lockForDay(dayOfWeek);
+        if (lock == null) {
+            return super.assignStaff(dayOfWeek, startTime, endTime, givenName, familyName, isManager);
+        }
+
+        lock.lock();
+        try {
+            return super.assignStaff(dayOfWeek, startTime, endTime, givenName, familyName, isManager);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> addShiftsBatch(List<String[]> shifts) {
+        int days = lockDays(shifts);
+        try {
+            return super.addShiftsBatch(shifts);
+        } finally {
+            unlockDays(days);
+        }
+    }
+
+    @Override
+    public List<String> registerStaffBatch(List<String[]> staff) {
+        _staffLock.lock();
+        try {
+            return super.registerStaffBatch(staff);
+        } finally {
+            _staffLock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> assignStaffBatch(List<String[]> assignments) {
+        int days = lockDays(assignments);
+        try {
+            return super.assignStaffBatch(assignments);
+        } finally {
+            unlockDays(days);
+        }
+    }
+
+    /**
+     * Locks the days given in the first value of the rows of a batch request. The locks are always taken in the order
+     * of the days, so that two batches cannot deadlock.
+     * @return a bit mask of the days locked, indexed by the ordinal of the day
+     */
+    private int lockDays(List<String[]> rows) {
+        int days = 0;
+        for (String[] row : rows) {
+            DayOfWeek day = row != null && row.length > 0 ? DayOfWeek.fromString(row[0]) : null;
+            if (day != null) {
+                days |= 1 << day.ordinal();
+            }
+        }
+
+        for (int i = 0; i < _dayLocks.length; i++) {
+            if ((days & (1 << i)) != 0) {
+                _dayLocks[i].lock();
+            }
+        }
+        return days;
+    }
+
+    private void unlockDays(int days) {
+        for (int i = 0; i < _dayLocks.length; i++) {
+            if ((days & (1 << i)) != 0) {
+                _dayLocks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the lock for the given day, or null if the day is invalid
+     */
+    private ReentrantLock lockForDay(String dayOfWeek) {
+        DayOfWeek day = DayOfWeek.fromString(dayOfWeek);
+        return day != null ? _dayLocks[day.ordinal()] : null;
+    }
+}
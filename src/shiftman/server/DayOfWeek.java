@@ -1,14 +1,44 @@
 package shiftman.server;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum DayOfWeek {
     Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday;
 
-    public static boolean isValidDay(String dayOfWeek) {
-        for (DayOfWeek day : DayOfWeek.values()) {
-            if (dayOfWeek.equals(day.toString())) {
-                return true;
-            }
+    private static final DayOfWeek[] DAYS = values(); // values() returns a new copy of the array on every call
+    private static final Map<String, DayOfWeek> DAYS_BY_NAME = new HashMap<>();
+
+    static {
+        for (DayOfWeek day : DAYS) {
+            DAYS_BY_NAME.put(day.toString(), day);
         }
-        return false;
+    }
+
+    public static boolean isValidDay(String dayOfWeek) {
+        return fromString(dayOfWeek) != null;
+    }
+
+    /**
+     * Looks up the day with exactly the given name, without the exception thrown by valueOf for an invalid name
+     * @return the day, or null if the name is not a valid day
+     */
+    public static DayOfWeek fromString(String dayOfWeek) {
+        return DAYS_BY_NAME.get(dayOfWeek);
+    }
+
+    /**
+     * @return the day with the given ordinal, without copying the array of days as values() does
+     * @throws ArrayIndexOutOfBoundsException if there is no day with the ordinal
+     */
+    public static DayOfWeek of(int ordinal) {
+        return DAYS[ordinal];
+    }
+
+    /**
+     * @return the number of days in the week
+     */
+    public static int count() {
+        return DAYS.length;
     }
 }
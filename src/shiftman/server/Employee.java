@@ -1,12 +1,60 @@
 package shiftman.server;
 
+import java.util.Locale;
+
 public class Employee implements Comparable<Employee> {
     private final String _givenName;
     private final String _familyName;
+    private final String _fullName; // "givenName familyName"
+    private final String _familyFirstName; // "familyName, givenName"
+    private final String _nameKey; // normalized full name, used for case insensitive lookups, equality and hashing
+    private final String[] _nameWords; // distinct words of the normalized name, see StaffSearchIndex
+    private int _id = -1; // dense id given when registered in a roster, -1 if not registered
+    private long _version; // version of the roster the employee was registered in, see Roster#snapshot()
 
     public Employee(String givenName, String familyName) {
         _givenName = givenName;
         _familyName = familyName;
+        _fullName = givenName + " " + familyName;
+        _familyFirstName = familyName + ", " + givenName;
+        _nameKey = normalizeName(_fullName);
+        _nameWords = StaffSearchIndex.getDistinctWords(_nameKey);
+    }
+
+    /**
+     * Creates an unregistered employee with the same names as the given employee. The name strings are shared
+     * rather than copied, see {@link EmployeeTable}.
+     */
+    public Employee(Employee other) {
+        _givenName = other._givenName;
+        _familyName = other._familyName;
+        _fullName = other._fullName;
+        _familyFirstName = other._familyFirstName;
+        _nameKey = other._nameKey;
+        _nameWords = other._nameWords;
+    }
+
+    /**
+     * Normalizes a full name so that names differing only in case map to the same key
+     * @param fullName the full name in the format: "givenName familyName"
+     * @return the lower case form of the name
+     */
+    public static String normalizeName(String fullName) {
+        return fullName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the normalized full name of the employee, see {@link #normalizeName(String)}
+     */
+    public String getNameKey() {
+        return _nameKey;
+    }
+
+    /**
+     * @return the distinct words of the normalized full name, in order. Shared, so must not be changed.
+     */
+    String[] getNameWords() {
+        return _nameWords;
     }
 
     public String getGivenName() {
@@ -18,24 +66,65 @@ public class Employee implements Comparable<Employee> {
     }
 
     /**
-     * Implementing comparable so that employees can be sorted in alphabetical order by their family name
+     * @return the name of the employee with the family name first, in the format: "familyName, givenName"
+     */
+    public String getFamilyFirstName() {
+        return _familyFirstName;
+    }
+
+    /**
+     * @return the id of the employee within its roster. Ids are allocated in order of registration starting from 0,
+     *         so they can be used to index per-employee state. -1 if the employee is not registered.
+     */
+    public int getId() {
+        return _id;
+    }
+
+    public void setId(int id) {
+        _id = id;
+    }
+
+    /**
+     * @return the version of the roster in which the employee was registered. Snapshots of earlier versions do not
+     *         include the employee.
+     */
+    public long getVersion() {
+        return _version;
+    }
+
+    public void setVersion(long version) {
+        _version = version;
+    }
+
+    /**
+     * Implementing comparable so that employees can be sorted in alphabetical order by their family name, and
+     * employees with the same family name by their given name
      */
     @Override
     public int compareTo(Employee employee) {
-        return _familyName.compareTo(employee._familyName);
+        int order = _familyName.compareTo(employee._familyName);
+        return order != 0 ? order : _givenName.compareTo(employee._givenName);
     }
 
     @Override
     public String toString() {
-        return _givenName + " " + _familyName;
+        return _fullName;
     }
 
+    /**
+     * Employees are equal if their full names are the same ignoring case, ie. they have the same
+     * {@link #getNameKey() name key}, as when staff are registered and looked up by name
+     */
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof Employee) {
-            Employee other = (Employee)obj;
-            return _familyName.equalsIgnoreCase(other._familyName) && _givenName.equalsIgnoreCase(other._givenName);
+            return _nameKey.equals(((Employee)obj)._nameKey);
         }
         return false;
     }
+
+    @Override
+    public int hashCode() {
+        return _nameKey.hashCode();
+    }
 }
@@ -1,36 +1,100 @@
 package shiftman.server;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
+/**
+ * Repository of the staff registered in a roster. The employees are kept sorted by family name and then given name,
+ * so listings never need to sort them and a page of a listing can start anywhere in it, see
+ * {@link #getStaffPage(Employee, BitSet, int)}. The lookups and listings can safely run concurrently with an employee
+ * being added. Adding employees must not be done concurrently.
+ */
 public class EmployeeRepository {
-    private final List<Employee> _employees;
+    private final NavigableSet<Employee> _employees; // sorted by family name, then given name
+    private final ConcurrentHashMap<String, Employee> _employeesByName; // index of employees by their normalized full name
+    private final StaffSearchIndex _searchIndex; // employees by the words of their names
+    private volatile int _size;
 
     public EmployeeRepository() {
-        _employees = new ArrayList<>();
+        _employees = new ConcurrentSkipListSet<>(new RegistrationComparator());
+        _employeesByName = new ConcurrentHashMap<>();
+        _searchIndex = new StaffSearchIndex();
     }
 
+    /**
+     * Adds an employee to the repository. The employee must already have been given its id.
+     */
     public void add(Employee employee) {
         _employees.add(employee);
+        _employeesByName.putIfAbsent(employee.getNameKey(), employee); // keep the first employee if full names clash
+        _searchIndex.add(employee);
+        _size++;
     }
 
     public boolean contains(Employee person) {
-        return _employees.contains(person);
+        return person.equals(_employeesByName.get(person.getNameKey()));
     }
 
     public List<String> getAllStaff() {
-        List<String> staff = new ArrayList<>(_employees.size());
-        Collections.sort(_employees);
-
+        List<String> staff = new ArrayList<>(_size);
         for (Employee employee : _employees) {
             staff.add(employee.toString());
         }
         return staff;
     }
 
+    /**
+     * Gets a page of the staff, in the same order as {@link #getAllStaff()}, starting straight after the given
+     * employee. The employees are kept sorted, so the start of the page is found without going over the staff
+     * before it.
+     * @param after the last employee of the previous page, or null for the first page
+     * @param excludedStaff the ids of staff to leave out, or null to include all staff
+     * @param limit the most staff in the page
+     * @return the full names of the staff in the page
+     */
+    public List<String> getStaffPage(Employee after, BitSet excludedStaff, int limit) {
+        List<String> staff = new ArrayList<>(Math.min(limit, _size));
+        for (Employee employee : after != null ? _employees.tailSet(after, false) : _employees) {
+            if (staff.size() == limit) {
+                break;
+            }
+            if (excludedStaff == null || !excludedStaff.get(employee.getId())) {
+                staff.add(employee.toString());
+            }
+        }
+        return staff;
+    }
+
     public int size() {
-        return _employees.size();
+        return _size;
+    }
+
+    /**
+     * Gets all the employees as an unmodifiable live view, sorted by family name and then given name.
+     * Employees registered while the view is being iterated may or may not be seen.
+     */
+    public Collection<Employee> getEmployees() {
+        return Collections.unmodifiableCollection(_employees);
+    }
+
+    /**
+     * @return all the employees, in the order they were registered
+     */
+    public List<Employee> getEmployeesByRegistration() {
+        List<Employee> employees = new ArrayList<>(_employees);
+        Collections.sort(employees, new Comparator<Employee>() {
+            public int compare(Employee e1, Employee e2) {
+                return Integer.compare(e1.getId(), e2.getId());
+            }
+        });
+        return employees;
     }
 
     /**
@@ -39,28 +103,43 @@ public class EmployeeRepository {
      * @return the employee. If no employee with that name is registered, then return null.
      */
     public Employee getEmployeeByName(String fullName) {
-        for (Employee employee : _employees) {
-            if (fullName.equalsIgnoreCase(employee.toString())) {
-                return employee;
-            }
-        }
-        return null;
+        return _employeesByName.get(Employee.normalizeName(fullName));
+    }
+
+    /**
+     * Finds the employees whose names match a partly typed, possibly misspelt query, see
+     * {@link StaffSearchIndex#search(String, int)}
+     */
+    public List<Employee> search(String query, int limit) {
+        return _searchIndex.search(query, limit);
     }
 
     /**
      * Gets either all the registered staff or staff not assigned to any shifts, as a list of strings.
-     * @param assignedStaff a list of staff assigned to a shift
+     * @param assignedStaff the ids of the staff assigned to a shift
      * @return a list of unassigned staff or all registered staff
      */
-    public List<String> getUnassignedStaff(EmployeeRepository assignedStaff) {
+    public List<String> getUnassignedStaff(BitSet assignedStaff) {
         List<String> staff = new ArrayList<>();
-        Collections.sort(_employees);
-
         for (Employee employee : _employees) {
-            if (!assignedStaff.contains(employee)) {
+            if (!assignedStaff.get(employee.getId())) {
                 staff.add(employee.toString());
             }
         }
         return staff;
     }
+
+    /**
+     * Orders employees by name, see {@link Employee#compareTo(Employee)}. Registered employees never have the same
+     * name, but employees of the same name are ordered by registration to be safe.
+     */
+    private static class RegistrationComparator implements Comparator<Employee> {
+        public int compare(Employee e1, Employee e2) {
+            int order = e1.compareTo(e2);
+            if (order != 0) {
+                return order;
+            }
+            return Integer.compare(e1.getId(), e2.getId());
+        }
+    }
 }
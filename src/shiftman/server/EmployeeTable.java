@@ -0,0 +1,78 @@
+package shiftman.server;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of the names of the staff registered by one or more servers. When the same person is registered with several
+ * rosters, each roster has its own Employee object but they all share one copy of the person's names.
+ * <p>
+ * The table only refers weakly to the registered employees, so an entry goes once no roster has the person
+ * registered any more, eg. when the rosters are removed from their {@link RosterRegistry}, and the table never holds
+ * more names than the rosters do. Names are only added by {@link #register(Employee)} once a registration succeeds,
+ * so rejected registrations add nothing.
+ */
+public class EmployeeTable {
+    private final ConcurrentHashMap<String, EmployeeReference> _employees; // by exact "givenName\0familyName"
+    private final ReferenceQueue<Employee> _released; // references to employees no longer registered anywhere
+
+    public EmployeeTable() {
+        _employees = new ConcurrentHashMap<>();
+        _released = new ReferenceQueue<>();
+    }
+
+    /**
+     * Creates a new, unregistered employee with the given names, sharing the name strings with an employee of the
+     * same names that is still registered, if any
+     */
+    public Employee newEmployee(String givenName, String familyName) {
+        removeReleased();
+        EmployeeReference reference = _employees.get(getKey(givenName, familyName));
+        Employee registered = reference != null ? reference.get() : null;
+        return registered != null ? new Employee(registered) : new Employee(givenName, familyName);
+    }
+
+    /**
+     * Adds the names of an employee that has been registered with a roster, so that later employees with the same
+     * names share them. Does nothing if an employee with the same names is already in the table.
+     */
+    public void register(Employee employee) {
+        String key = getKey(employee.getGivenName(), employee.getFamilyName());
+        EmployeeReference reference = _employees.get(key);
+        if (reference == null || reference.get() == null) {
+            _employees.put(key, new EmployeeReference(key, employee, _released));
+        }
+    }
+
+    /**
+     * @return the number of names in the table, including any whose employees have been released but not yet removed
+     */
+    public int size() {
+        removeReleased();
+        return _employees.size();
+    }
+
+    private static String getKey(String givenName, String familyName) {
+        return givenName + '\0' + familyName;
+    }
+
+    /**
+     * Removes the entries of the employees that are no longer registered with any roster
+     */
+    private void removeReleased() {
+        EmployeeReference reference;
+        while ((reference = (EmployeeReference) _released.poll()) != null) {
+            _employees.remove(reference._key, reference); // unless replaced by a newer registration
+        }
+    }
+
+    private static class EmployeeReference extends WeakReference<Employee> {
+        private final String _key;
+
+        EmployeeReference(String key, Employee employee, ReferenceQueue<Employee> queue) {
+            super(employee, queue);
+            _key = key;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package shiftman.server;
+
+/**
+ * The kinds of error a ShiftMan request can fail with, used to count errors without each client having to parse the
+ * error messages itself. The category is given where the error is raised, see {@link ShiftManException} and
+ * {@link ShiftManServer#recordErrors()}.
+ */
+public enum ErrorCategory {
+    /** No roster has been created, or the shop has no roster */
+    NO_ROSTER,
+    /** A value given is invalid, eg. an unknown day, a badly formatted time or an empty name */
+    INVALID_INPUT,
+    /** The staff member or shift given does not exist */
+    NOT_FOUND,
+    /** The change conflicts with the roster, eg. the shift overlaps another shift or the staff is already assigned */
+    CONFLICT,
+    /** The change was made but could not be saved, see {@link PersistentShiftManServer} */
+    NOT_SAVED,
+    /** The request was interrupted before it completed, eg. while planning the roster */
+    INTERRUPTED
+}
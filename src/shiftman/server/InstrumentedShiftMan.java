@@ -0,0 +1,248 @@
+package shiftman.server;
+
+import java.util.List;
+
+import shiftman.server.ShiftManMetrics.Operation;
+
+/**
+ * A ShiftMan that passes every request on to a server and records metrics of the requests, see {@link ShiftManMetrics}.
+ * While the metrics are disabled, a request is passed straight on after checking that they are disabled. A failed
+ * request is counted under the {@link ErrorCategory} that the server gave the error when raising it.
+ */
+public class InstrumentedShiftMan implements ShiftMan {
+    private final ShiftManServer _server;
+    private final ShiftManMetrics _metrics;
+
+    public InstrumentedShiftMan(ShiftManServer server) {
+        _server = server;
+        _metrics = new ShiftManMetrics(server);
+    }
+
+    public ShiftManServer getServer() {
+        return _server;
+    }
+
+    public ShiftManMetrics getMetrics() {
+        return _metrics;
+    }
+
+    @Override
+    public String newRoster(final String shopName) {
+        if (!_metrics.isEnabled()) {
+            return _server.newRoster(shopName);
+        }
+        return call(Operation.newRoster, new Request<String>() {
+            @Override
+            public String call() {
+                return _server.newRoster(shopName);
+            }
+        });
+    }
+
+    @Override
+    public String setWorkingHours(final String dayOfWeek, final String startTime, final String endTime) {
+        if (!_metrics.isEnabled()) {
+            return _server.setWorkingHours(dayOfWeek, startTime, endTime);
+        }
+        return call(Operation.setWorkingHours, new Request<String>() {
+            @Override
+            public String call() {
+                return _server.setWorkingHours(dayOfWeek, startTime, endTime);
+            }
+        });
+    }
+
+    @Override
+    public String addShift(final String dayOfWeek, final String startTime, final String endTime,
+                           final String minimumWorkers) {
+        if (!_metrics.isEnabled()) {
+            return _server.addShift(dayOfWeek, startTime, endTime, minimumWorkers);
+        }
+        return call(Operation.addShift, new Request<String>() {
+            @Override
+            public String call() {
+                return _server.addShift(dayOfWeek, startTime, endTime, minimumWorkers);
+            }
+        });
+    }
+
+    @Override
+    public String registerStaff(final String givenName, final String familyName) {
+        if (!_metrics.isEnabled()) {
+            return _server.registerStaff(givenName, familyName);
+        }
+        return call(Operation.registerStaff, new Request<String>() {
+            @Override
+            public String call() {
+                return _server.registerStaff(givenName, familyName);
+            }
+        });
+    }
+
+    @Override
+    public String assignStaff(final String dayOfWeek, final String startTime, final String endTime,
+                              final String givenName, final String familyName, final boolean isManager) {
+        if (!_metrics.isEnabled()) {
+            return _server.assignStaff(dayOfWeek, startTime, endTime, givenName, familyName, isManager);
+        }
+        return call(Operation.assignStaff, new Request<String>() {
+            @Override
+            public String call() {
+                return _server.assignStaff(dayOfWeek, startTime, endTime, givenName, familyName, isManager);
+            }
+        });
+    }
+
+    @Override
+    public List<String> getRegisteredStaff() {
+        if (!_metrics.isEnabled()) {
+            return _server.getRegisteredStaff();
+        }
+        return call(Operation.getRegisteredStaff, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.getRegisteredStaff();
+            }
+        });
+    }
+
+    @Override
+    public List<String> getUnassignedStaff() {
+        if (!_metrics.isEnabled()) {
+            return _server.getUnassignedStaff();
+        }
+        return call(Operation.getUnassignedStaff, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.getUnassignedStaff();
+            }
+        });
+    }
+
+    @Override
+    public List<String> shiftsWithoutManagers() {
+        if (!_metrics.isEnabled()) {
+            return _server.shiftsWithoutManagers();
+        }
+        return call(Operation.shiftsWithoutManagers, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.shiftsWithoutManagers();
+            }
+        });
+    }
+
+    @Override
+    public List<String> understaffedShifts() {
+        if (!_metrics.isEnabled()) {
+            return _server.understaffedShifts();
+        }
+        return call(Operation.understaffedShifts, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.understaffedShifts();
+            }
+        });
+    }
+
+    @Override
+    public List<String> overstaffedShifts() {
+        if (!_metrics.isEnabled()) {
+            return _server.overstaffedShifts();
+        }
+        return call(Operation.overstaffedShifts, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.overstaffedShifts();
+            }
+        });
+    }
+
+    @Override
+    public List<String> getRosterForDay(final String dayOfWeek) {
+        if (!_metrics.isEnabled()) {
+            return _server.getRosterForDay(dayOfWeek);
+        }
+        return call(Operation.getRosterForDay, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.getRosterForDay(dayOfWeek);
+            }
+        });
+    }
+
+    @Override
+    public List<String> getRosterForWorker(final String workerName) {
+        if (!_metrics.isEnabled()) {
+            return _server.getRosterForWorker(workerName);
+        }
+        return call(Operation.getRosterForWorker, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.getRosterForWorker(workerName);
+            }
+        });
+    }
+
+    @Override
+    public List<String> getShiftsManagedBy(final String managerName) {
+        if (!_metrics.isEnabled()) {
+            return _server.getShiftsManagedBy(managerName);
+        }
+        return call(Operation.getShiftsManagedBy, new Request<List<String>>() {
+            @Override
+            public List<String> call() {
+                return _server.getShiftsManagedBy(managerName);
+            }
+        });
+    }
+
+    @Override
+    public String reportRosterIssues() {
+        if (!_metrics.isEnabled()) {
+            return _server.reportRosterIssues();
+        }
+        return call(Operation.reportRosterIssues, new Request<String>() {
+            @Override
+            public String call() {
+                return _server.reportRosterIssues();
+            }
+        });
+    }
+
+    @Override
+    public String displayRoster() {
+        if (!_metrics.isEnabled()) {
+            return _server.displayRoster();
+        }
+        return call(Operation.displayRoster, new Request<String>() {
+            @Override
+            public String call() {
+                return _server.displayRoster();
+            }
+        });
+    }
+
+    /**
+     * Passes a request on to the server, recording how long it took and whether it failed
+     * @return the result of the request
+     */
+    private <T> T call(Operation operation, Request<T> request) {
+        ErrorCategory[] error = ShiftManServer.recordErrors();
+        try {
+            long start = System.nanoTime();
+            T result = request.call();
+            _metrics.record(operation, start, error[0]);
+            return result;
+        } finally {
+            ShiftManServer.stopRecordingErrors();
+        }
+    }
+
+    /**
+     * A request to pass on to the server
+     */
+    private interface Request<T> {
+        T call();
+    }
+}
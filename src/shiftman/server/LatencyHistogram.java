@@ -0,0 +1,123 @@
+package shiftman.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, in the style of HdrHistogram. Values below 32 each have their own bucket, and
+ * every power of two above that is split into 16 buckets, so a percentile is accurate to within about 6% whatever the
+ * range of the values. Recording is lock-free and takes constant time, so the histogram can be shared by many threads.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // buckets per power of two
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2; // values below this have a bucket each
+    private static final long MAX_VALUE = (1L << 40) - 1; // about 18 minutes, larger values are recorded as this
+
+    private final AtomicLongArray _counts;
+    private final AtomicLong _max;
+
+    public LatencyHistogram() {
+        _counts = new AtomicLongArray(bucketOf(MAX_VALUE) + 1);
+        _max = new AtomicLong();
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        _counts.incrementAndGet(bucketOf(value));
+
+        long max = _max.get();
+        while (value > max && !_max.compareAndSet(max, value)) {
+            max = _max.get();
+        }
+    }
+
+    /**
+     * Clears the histogram. Values recorded at the same time may or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < _counts.length(); i++) {
+            _counts.set(i, 0);
+        }
+        _max.set(0);
+    }
+
+    /**
+     * Gets the bucket of a value. A value of 32 or more, with its highest bit at position p, is shifted right by
+     * p - 4 to leave its 5 highest bits, 16 to 31. The bucket is then (p - 4) * 16 plus those bits, which follows on
+     * from the buckets of the smaller values.
+     */
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the highest value that falls in the given bucket
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long bits = bucket - shift * SUB_BUCKETS;
+        return ((bits + 1) << shift) - 1;
+    }
+
+    /**
+     * @return a copy of the histogram as it is now, from which percentiles can be read
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[_counts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = _counts.get(i);
+        }
+        return new Snapshot(counts, _max.get());
+    }
+
+    /**
+     * The values recorded in a histogram at one point in time
+     */
+    public static class Snapshot {
+        private final long[] _counts;
+        private final long _total;
+        private final long _max;
+
+        private Snapshot(long[] counts, long max) {
+            _counts = counts;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            _total = total;
+            _max = max;
+        }
+
+        public long getCount() {
+            return _total;
+        }
+
+        public long getMax() {
+            return _max;
+        }
+
+        /**
+         * @param percentile the percentile, from 0 to 100. eg. 99.9
+         * @return the value that the given percentage of the values are at or below, or 0 if there are no values
+         */
+        public long getValueAtPercentile(double percentile) {
+            long target = (long) Math.ceil(percentile / 100 * _total);
+            long count = 0;
+            for (int i = 0; i < _counts.length; i++) {
+                count += _counts[i];
+                if (count >= Math.max(1, target)) {
+                    return Math.min(highestValueOf(i), _max);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package shiftman.server;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The metrics of one ShiftMan operation at one point in time, see {@link ShiftManMetrics#getOperations()}.
+ * Latencies are in nanoseconds.
+ */
+public class OperationStats {
+    private final String _name;
+    private final long _calls;
+    private final Map<String, Long> _errors;
+    private final LatencyHistogram.Snapshot _latency;
+
+    OperationStats(String name, long calls, Map<String, Long> errors, LatencyHistogram.Snapshot latency) {
+        _name = name;
+        _calls = calls;
+        _errors = Collections.unmodifiableMap(errors);
+        _latency = latency;
+    }
+
+    /**
+     * @return the name of the ShiftMan method, eg. "addShift"
+     */
+    public String getName() {
+        return _name;
+    }
+
+    public long getCalls() {
+        return _calls;
+    }
+
+    /**
+     * @return the number of calls that failed
+     */
+    public long getErrors() {
+        long errors = 0;
+        for (long count : _errors.values()) {
+            errors += count;
+        }
+        return errors;
+    }
+
+    /**
+     * @return the number of calls that failed, by the name of the {@link ErrorCategory}. Categories with no errors are
+     *         left out.
+     */
+    public Map<String, Long> getErrorsByCategory() {
+        return _errors;
+    }
+
+    public long getLatencyP50() {
+        return _latency.getValueAtPercentile(50);
+    }
+
+    public long getLatencyP90() {
+        return _latency.getValueAtPercentile(90);
+    }
+
+    public long getLatencyP99() {
+        return _latency.getValueAtPercentile(99);
+    }
+
+    public long getLatencyP999() {
+        return _latency.getValueAtPercentile(99.9);
+    }
+
+    public long getLatencyMax() {
+        return _latency.getMax();
+    }
+
+    /**
+     * @return the latency that the given percentage of the calls took no longer than
+     */
+    public long getLatencyAtPercentile(double percentile) {
+        return _latency.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public String toString() {
+        return _name + " calls=" + _calls + " errors=" + _errors + " p50=" + getLatencyP50() + "ns p99=" +
+                getLatencyP99() + "ns max=" + getLatencyMax() + "ns";
+    }
+}
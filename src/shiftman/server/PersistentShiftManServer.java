@@ -0,0 +1,245 @@
+package shiftman.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A ShiftMan server that saves its roster to disk, so that the roster survives a restart.
+ * <p>
+ * Every change is appended to a write-ahead journal, see {@link RosterJournal}, and is forced to disk before the
+ * request returns. Requests made at the same time share one disk force. Once the journal holds a given number of
+ * changes, a compact snapshot of the roster is written and a new, empty journal is started. When the server is
+ * created, it loads the snapshot and then replays the changes in the journal since the snapshot. If the snapshot or
+ * the journal is damaged, or they do not belong together, the server is not created and the files are left as they
+ * are, rather than starting over with an empty roster.
+ */
+public class PersistentShiftManServer extends ConcurrentShiftManServer implements Closeable {
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 100000;
+    private static final String SNAPSHOT_FILE = "roster.snapshot";
+    private static final String JOURNAL_FILE = "roster.journal";
+
+    private final Path _snapshotFile;
+    private final Path _journalFile;
+    private final long _snapshotInterval;
+    private volatile RosterJournal _journal; // null while the roster is being recovered
+
+    public PersistentShiftManServer(Path directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Creates a server that saves its roster in the given directory, recovering the roster already saved there
+     * @param snapshotInterval the number of changes in the journal after which a snapshot is taken,
+     *                         or 0 to only take snapshots when {@link #snapshot()} is called
+     * @throws IOException if the saved roster cannot be read
+     */
+    public PersistentShiftManServer(Path directory, long snapshotInterval) throws IOException {
+        Files.createDirectories(directory);
+        _snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        _journalFile = directory.resolve(JOURNAL_FILE);
+        _snapshotInterval = snapshotInterval;
+        recover();
+    }
+
+    /**
+     * Loads the snapshot, if there is one, and replays the journal that follows it
+     * @throws IOException if the snapshot or journal cannot be read, or the journal does not follow the snapshot
+     */
+    private void recover() throws IOException {
+        long generation = 0;
+        if (Files.exists(_snapshotFile)) { // snapshots are renamed into place once complete, so it must be valid
+            generation = RosterJournal.readGeneration(_snapshotFile);
+            if (generation < 0
+                    || RosterJournal.replay(_snapshotFile, generation, this).getLength() != Files.size(_snapshotFile)) {
+                throw new IOException("Snapshot " + _snapshotFile + " is incomplete");
+            }
+        }
+
+        // the journal is either the one started with the snapshot, or the one the snapshot was taken from if the
+        // process stopped before the new journal was started, whose changes are all in the snapshot. Any other
+        // generation means a snapshot is missing, so the journal must not be replaced.
+        long journalGeneration = RosterJournal.readGeneration(_journalFile);
+        if (journalGeneration >= 0 && journalGeneration != generation && journalGeneration != generation - 1) {
+            throw new IOException("Journal " + _journalFile + " has generation " + journalGeneration
+                    + ", but the snapshot has generation " + generation);
+        }
+
+        RosterJournal.Replay journal = RosterJournal.replay(_journalFile, generation, this);
+        if (journal.wasReplayed()) {
+            _journal = RosterJournal.openForAppend(_journalFile, journal);
+        } else {
+            _journal = RosterJournal.create(_journalFile, generation);
+            syncDirectory(_journalFile.getParent());
+        }
+        setRosterListener(_journal);
+    }
+
+    /**
+     * Writes a snapshot of the roster and starts a new, empty journal. Changes are held off while this is done.
+     * The snapshot is written to a temporary file which then replaces the previous snapshot, so there is always
+     * a complete snapshot on disk.
+     */
+    public void snapshot() throws IOException {
+        lockAll();
+        try {
+            RosterJournal journal = _journal;
+            long generation = journal.getGeneration() + 1;
+            Path tempFile = _snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+
+            RosterJournal snapshot = RosterJournal.create(tempFile, generation);
+            try {
+                Roster current = roster;
+                if (current != null) {
+                    current.replayTo(snapshot);
+                }
+                snapshot.sync();
+            } catch (ShiftManException e) {
+                throw new IOException(e.getMessage(), e);
+            } finally {
+                snapshot.close();
+            }
+            Files.move(tempFile, _snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(_snapshotFile.getParent()); // so the new snapshot is still there after a crash
+
+            journal.retire();
+            _journal = RosterJournal.create(_journalFile, generation);
+            setRosterListener(_journal);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Saves any changes not yet forced to disk and closes the journal. Changes made after this are not saved.
+     */
+    public void close() throws IOException {
+        lockAll();
+        try {
+            _journal.sync();
+            _journal.close();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public String newRoster(String shopName) {
+        return save(super.newRoster(shopName));
+    }
+
+    @Override
+    public String importRoster(ReadableByteChannel channel) throws IOException {
+        return save(super.importRoster(channel));
+    }
+
+    @Override
+    public String setWorkingHours(String dayOfWeek, String startTime, String endTime) {
+        return save(super.setWorkingHours(dayOfWeek, startTime, endTime));
+    }
+
+    @Override
+    public String addShift(String dayOfWeek, String startTime, String endTime, String minimumWorkers) {
+        return save(super.addShift(dayOfWeek, startTime, endTime, minimumWorkers));
+    }
+
+    @Override
+    public String registerStaff(String givenName, String familyName) {
+        return save(super.registerStaff(givenName, familyName));
+    }
+
+    @Override
+    public String assignStaff(String dayOfWeek, String startTime, String endTime, String givenName, String familyName, boolean isManager) {
+        return save(super.assignStaff(dayOfWeek, startTime, endTime, givenName, familyName, isManager));
+    }
+
+    @Override
+    public List<String> addShiftsBatch(List<String[]> shifts) {
+        return save(super.addShiftsBatch(shifts));
+    }
+
+    @Override
+    public List<String> registerStaffBatch(List<String[]> staff) {
+        return save(super.registerStaffBatch(staff));
+    }
+
+    @Override
+    public List<String> assignStaffBatch(List<String[]> assignments) {
+        return save(super.assignStaffBatch(assignments));
+    }
+
+    /**
+     * Makes sure the change made by a request is on disk before the request returns
+     * @param status the status of the request
+     * @return the status of the request, or an error if the change could not be saved
+     */
+    private String save(String status) {
+        if (!status.isEmpty() || _journal == null) { // nothing changed, or recovering
+            return status;
+        }
+
+        try {
+            _journal.sync();
+        } catch (IOException e) {
+            return error(ErrorCategory.NOT_SAVED,
+                    "ERROR: The change was made but could not be saved: " + e.getMessage());
+        }
+        snapshotIfDue();
+        return status;
+    }
+
+    /**
+     * Makes sure the changes made by a batch request are on disk before the request returns
+     * @param statuses the status of each row of the request
+     * @return the statuses, with an error in place of each change that could not be saved
+     */
+    private List<String> save(List<String> statuses) {
+        if (_journal == null) {
+            return statuses;
+        }
+
+        try {
+            _journal.sync();
+        } catch (IOException e) {
+            String error = error(ErrorCategory.NOT_SAVED,
+                    "ERROR: The change was made but could not be saved: " + e.getMessage());
+            List<String> saved = new ArrayList<>(statuses.size());
+            for (String status : statuses) {
+                saved.add(status.isEmpty() ? error : status);
+            }
+            return saved;
+        }
+        snapshotIfDue();
+        return statuses;
+    }
+
+    /**
+     * Forces the entries of a directory to disk, so that a file created or renamed in it is still there after a crash.
+     * Not done on Windows, where a directory cannot be opened to force it.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        if (System.getProperty("os.name").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void snapshotIfDue() {
+        if (_snapshotInterval > 0 && _journal.getRecordCount() >= _snapshotInterval) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                // the journal still holds every change, so nothing is lost. A snapshot is tried again after the next change
+            }
+        }
+    }
+}
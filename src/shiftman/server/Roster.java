@@ -1,49 +1,299 @@
 package shiftman.server;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * The roster of a shop. Queries can run concurrently with changes to the roster. Changes to the staff and changes to
+ * the working hours and shifts of each day must each be made by one thread at a time, see {@link ConcurrentShiftManServer}.
+ * <p>
+ * Each change makes a new version of the roster. Nothing is ever removed from a roster, so a version is everything
+ * stamped with that version or an earlier one, and a {@link RosterSnapshot} reads a version by leaving out anything
+ * stamped later, sharing the data of the roster rather than copying it. A version is only published once it and all
+ * earlier versions are complete, so a snapshot never sees part of a change. A batch of rows, eg.
+ * {@link #addShifts(List)}, is one change, so a snapshot has all the accepted rows of a batch or none of them.
+ */
 public class Roster {
+    private static final int PENDING_VERSIONS = 1024; // changes that can complete before an earlier change completes
+    static final int EVENT_CAPACITY = 4096; // latest changes kept as events for subscribers
+
     private final String _shopName;
-    private final List<TimePeriod> _workingHours;
+    private final AtomicReferenceArray<TimePeriod> _workingHours; // indexed by the ordinal of the day, null if not set
     private final ShiftRepository _shifts;
     private final EmployeeRepository _staff;
-    private final EmployeeRepository _assignedStaff; // repository of staff assigned to a shift (as manager or worker)
+    private final AssignmentRepository _assignments; // shifts assigned to each employee
+    private final BitSet _assignedStaff; // ids of staff assigned to a shift (as manager or worker)
+    private final AtomicLongArray _workingHoursVersions; // version the working hours of each day were set in
+    private final AtomicLong _lastVersion; // last version given to a change
+    private final AtomicLong _publishedVersion; // all changes up to this version are complete
+    private final AtomicLongArray _completedVersions; // recently completed versions, indexed by version % PENDING_VERSIONS
+    private volatile RosterListener _listener; // null if there is no listener
+    private volatile RosterEventRing _events; // null until the first subscription
 
     public Roster(String shopName) {
         _shopName = shopName;
-        _workingHours = new ArrayList<>();
+        _workingHours = new AtomicReferenceArray<>(DayOfWeek.count());
         _shifts = new ShiftRepository();
         _staff = new EmployeeRepository();
-        _assignedStaff = new EmployeeRepository();
+        _assignments = new AssignmentRepository();
+        _assignedStaff = new BitSet();
+        _workingHoursVersions = new AtomicLongArray(DayOfWeek.count());
+        _lastVersion = new AtomicLong();
+        _publishedVersion = new AtomicLong();
+        _completedVersions = new AtomicLongArray(PENDING_VERSIONS);
+    }
+
+    /**
+     * Starts a change to the roster. Must be called once the change is known to succeed, and be followed by
+     * {@link #endChange(long)} even if the change fails.
+     * @return the version made by the change, to stamp on whatever the change adds
+     */
+    long beginChange() {
+        long version = _lastVersion.incrementAndGet();
+        while (version - _publishedVersion.get() > PENDING_VERSIONS) { // only if an earlier change has stalled
+            Thread.yield();
+        }
+        return version;
+    }
+
+    /**
+     * Marks the change as complete, and publishes every version up to the first change that has not completed.
+     * Changes to different days can be made at the same time, so a change may complete before one that began
+     * earlier. Its version is then published by whichever change completes the gap, without either having to wait.
+     */
+    void endChange(long version) {
+        _completedVersions.set((int) (version % PENDING_VERSIONS), version);
+        long published = _publishedVersion.get();
+        while (_completedVersions.get((int) ((published + 1) % PENDING_VERSIONS)) == published + 1) {
+            _publishedVersion.compareAndSet(published, published + 1);
+            published = _publishedVersion.get();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the latest version of the roster. The snapshot shares the data of the roster, so taking it
+     * copies nothing, and it can be read without locks while the roster continues to change.
+     */
+    public RosterSnapshot snapshot() {
+        return new RosterSnapshot(this, _publishedVersion.get());
+    }
+
+    /**
+     * @return the version up to which all changes are complete, see {@link #endChange(long)}
+     */
+    long getPublishedVersion() {
+        return _publishedVersion.get();
+    }
+
+    /**
+     * Starts keeping the latest changes as events, if not already, and takes a snapshot that the events of every
+     * later change follow on from. Changes that were being made while the events started may not have stored their
+     * events, so the snapshot is not taken until they complete.
+     */
+    RosterSnapshot startEvents() {
+        if (_events == null) {
+            synchronized (_completedVersions) {
+                if (_events == null) {
+                    _events = new RosterEventRing(EVENT_CAPACITY);
+                }
+            }
+        }
+        long lastVersion = _lastVersion.get(); // every change after this one sees the events
+        while (_publishedVersion.get() < lastVersion) {
+            Thread.yield();
+        }
+        return snapshot();
+    }
+
+    /**
+     * @return the events of the latest changes, or null if no subscription has started them
+     */
+    RosterEventRing getEvents() {
+        return _events;
+    }
+
+    /**
+     * Sets the listener to be told about every change made to the roster from now on
+     * @param listener the listener, or null to remove the current listener
+     */
+    public void setListener(RosterListener listener) {
+        _listener = listener;
     }
 
     public void addEmployee(Employee employee) throws ShiftManException {
-        if (_staff.contains(employee)) {
-            throw new ShiftManException("ERROR: \"" + employee + "\" is already registered");
+        checkNewEmployee(employee, null);
+
+        RosterListener listener = _listener;
+        if (listener != null) {
+            listener.staffRegistered(employee);
+        }
+        long version = beginChange();
+        try {
+            RosterEventRing events = _events; // stored before the change ends, so every published version has its event
+            RosterEvent event = addEmployee(employee, version);
+            if (events != null) {
+                events.put(event);
+            }
+        } finally {
+            endChange(version);
+        }
+    }
+
+    /**
+     * Registers many employees as one change, see {@link #addEmployee(Employee)}. Each employee is checked against
+     * the staff and the employees before it in the list, and then all those that pass are registered together, as
+     * one version of the roster.
+     * @return the status of each employee, in order: "" if registered, otherwise the error
+     */
+    public List<String> addEmployees(List<Employee> employees) {
+        List<String> statuses = new ArrayList<>(employees.size());
+        List<Employee> accepted = new ArrayList<>(employees.size());
+        Set<String> pending = new HashSet<>(); // name keys of the employees accepted so far
+        for (Employee employee : employees) {
+            try {
+                checkNewEmployee(employee, pending);
+                RosterListener listener = _listener;
+                if (listener != null) {
+                    listener.staffRegistered(employee);
+                }
+                pending.add(employee.getNameKey());
+                accepted.add(employee);
+                statuses.add("");
+            } catch (ShiftManException e) {
+                statuses.add(e.getMessage());
+            }
+        }
+        if (accepted.isEmpty()) {
+            return statuses;
         }
+
+        long version = beginChange();
+        try {
+            RosterEventRing events = _events;
+            RosterEvent[] changes = new RosterEvent[accepted.size()];
+            for (int i = 0; i < changes.length; i++) {
+                changes[i] = addEmployee(accepted.get(i), version);
+            }
+            if (events != null) {
+                events.put(changes);
+            }
+        } finally {
+            endChange(version);
+        }
+        return statuses;
+    }
+
+    /**
+     * @param pending the name keys of the employees to be registered along with this one, or null if none
+     */
+    private void checkNewEmployee(Employee employee, Set<String> pending) throws ShiftManException {
+        if (_staff.contains(employee) || (pending != null && pending.contains(employee.getNameKey()))) {
+            throw new ShiftManException(ErrorCategory.CONFLICT, "ERROR: \"" + employee + "\" is already registered");
+        }
+    }
+
+    private RosterEvent addEmployee(Employee employee, long version) {
+        employee.setId(_staff.size());
+        employee.setVersion(version);
         _staff.add(employee);
+        return RosterEvent.staffRegistered(version, employee);
     }
 
     public void addShift(Shift shift) throws ShiftManException {
-        if (_shifts.contains(shift)) {
-            throw new ShiftManException("ERROR: Shift \"" + shift + "\" already exists");
+        checkNewShift(shift, null);
+
+        RosterListener listener = _listener;
+        if (listener != null) {
+            listener.shiftAdded(shift);
         }
+        long version = beginChange();
+        try {
+            RosterEventRing events = _events; // stored before the change ends, so every published version has its event
+            RosterEvent event = addShift(shift, version);
+            if (events != null) {
+                events.put(event);
+            }
+        } finally {
+            endChange(version);
+        }
+    }
 
-        for (Shift existingShift : _shifts.getShiftsForDay(shift.getDay())) {
-            if (shift.overlaps(existingShift)) {
-                throw new ShiftManException("ERROR: Given shift overlaps with an existing shift");
+    /**
+     * Adds many shifts as one change, see {@link #addShift(Shift)}. Each shift is checked against the roster and the
+     * shifts before it in the list, and then all those that pass are added together, as one version of the roster.
+     * @return the status of each shift, in order: "" if added, otherwise the error
+     */
+    public List<String> addShifts(List<Shift> shifts) {
+        List<String> statuses = new ArrayList<>(shifts.size());
+        List<Shift> accepted = new ArrayList<>(shifts.size());
+        ShiftRepository pending = new ShiftRepository(); // the shifts accepted so far
+        for (Shift shift : shifts) {
+            try {
+                checkNewShift(shift, pending);
+                RosterListener listener = _listener;
+                if (listener != null) {
+                    listener.shiftAdded(shift);
+                }
+                pending.add(shift);
+                accepted.add(shift);
+                statuses.add("");
+            } catch (ShiftManException e) {
+                statuses.add(e.getMessage());
             }
         }
+        if (accepted.isEmpty()) {
+            return statuses;
+        }
 
-        for (TimePeriod workday : _workingHours) {
-            if (shift.isWithin(workday)) {
-                _shifts.add(shift);
-                return;
+        long version = beginChange();
+        try {
+            RosterEventRing events = _events;
+            RosterEvent[] changes = new RosterEvent[accepted.size()];
+            for (int i = 0; i < changes.length; i++) {
+                changes[i] = addShift(accepted.get(i), version);
             }
+            if (events != null) {
+                events.put(changes);
+            }
+        } finally {
+            endChange(version);
+        }
+        return statuses;
+    }
+
+    /**
+     * @param pending the shifts to be added along with this one, or null if none
+     */
+    private void checkNewShift(Shift shift, ShiftRepository pending) throws ShiftManException {
+        if (_shifts.contains(shift) || (pending != null && pending.contains(shift))) {
+            throw new ShiftManException(ErrorCategory.CONFLICT, "ERROR: Shift \"" + shift + "\" already exists");
+        }
+
+        if (_shifts.overlapsExistingShift(shift) || (pending != null && pending.overlapsExistingShift(shift))) {
+            throw new ShiftManException(ErrorCategory.CONFLICT, "ERROR: Given shift overlaps with an existing shift");
         }
-        throw new ShiftManException("ERROR: Given shift is not within the working hours");
+
+        TimePeriod workday = getWorkingHours(shift.getDay());
+        if (workday == null || !shift.isWithin(workday)) {
+            throw new ShiftManException(ErrorCategory.CONFLICT, "ERROR: Given shift is not within the working hours");
+        }
+    }
+
+    private RosterEvent addShift(Shift shift, long version) {
+        shift.setVersion(version);
+        _shifts.add(shift);
+        return RosterEvent.shiftAdded(version, shift);
     }
 
     /**
@@ -51,28 +301,146 @@ public class Roster {
      * and if the employee is to be a manager, there must not already be a manager for the shift
      */
     public void assignStaff(Shift shift, Employee employee, boolean isManager) throws ShiftManException {
-        if ((shift.getManager() != null && employee.equals(shift.getManager())) || shift.getWorkers().contains(employee)) {
-            throw new ShiftManException("ERROR: " + employee + " is already assigned to this shift");
+        checkAssignment(new Assignment(shift, employee, isManager), null);
+
+        RosterListener listener = _listener;
+        if (listener != null) {
+            listener.staffAssigned(shift, employee, isManager);
+        }
+        long version = beginChange();
+        try {
+            RosterEventRing events = _events; // stored before the change ends, so every published version has its event
+            RosterEvent event = assignStaff(new Assignment(shift, employee, isManager), version);
+            if (events != null) {
+                events.put(event);
+            }
+        } finally {
+            endChange(version);
         }
+    }
 
-        if (isManager) {
-            if (shift.getManager() == null) {
-                shift.setManager(employee);
-            } else throw new ShiftManException("ERROR: A manager is already assigned to this shift") ;
+    /**
+     * Makes many assignments as one change, see {@link #assignStaff(Shift, Employee, boolean)}. Each assignment is
+     * checked against the roster and the assignments before it in the list, and then all those that pass are made
+     * together, as one version of the roster.
+     * @return the status of each assignment, in order: "" if made, otherwise the error
+     */
+    public List<String> assignStaff(List<Assignment> assignments) {
+        List<String> statuses = new ArrayList<>(assignments.size());
+        List<Assignment> accepted = new ArrayList<>(assignments.size());
+        Map<Shift, List<Assignment>> pending = new IdentityHashMap<>(); // assignments accepted so far, by shift
+        for (Assignment assignment : assignments) {
+            try {
+                checkAssignment(assignment, pending);
+                RosterListener listener = _listener;
+                if (listener != null) {
+                    listener.staffAssigned(assignment._shift, assignment._employee, assignment._isManager);
+                }
+                List<Assignment> shiftPending = pending.get(assignment._shift);
+                if (shiftPending == null) {
+                    shiftPending = new ArrayList<>();
+                    pending.put(assignment._shift, shiftPending);
+                }
+                shiftPending.add(assignment);
+                accepted.add(assignment);
+                statuses.add("");
+            } catch (ShiftManException e) {
+                statuses.add(e.getMessage());
+            }
+        }
+        if (accepted.isEmpty()) {
+            return statuses;
+        }
+
+        long version = beginChange();
+        try {
+            RosterEventRing events = _events;
+            RosterEvent[] changes = new RosterEvent[accepted.size()];
+            for (int i = 0; i < changes.length; i++) {
+                changes[i] = assignStaff(accepted.get(i), version);
+            }
+            if (events != null) {
+                events.put(changes);
+            }
+        } finally {
+            endChange(version);
+        }
+        return statuses;
+    }
+
+    /**
+     * @param pending the assignments to be made along with this one, by shift, or null if none
+     */
+    private void checkAssignment(Assignment assignment, Map<Shift, List<Assignment>> pending) throws ShiftManException {
+        Shift shift = assignment._shift;
+        Employee employee = assignment._employee;
+        Employee manager = shift.getManager();
+        boolean hasManager = manager != null;
+        boolean isAssigned = (hasManager && employee.equals(manager)) || shift.getWorkers().contains(employee);
+        List<Assignment> shiftPending = pending != null ? pending.get(shift) : null;
+        if (shiftPending != null) {
+            for (Assignment other : shiftPending) {
+                hasManager |= other._isManager;
+                isAssigned |= other._employee.equals(employee);
+            }
+        }
+
+        if (isAssigned) {
+            throw new ShiftManException(ErrorCategory.CONFLICT,
+                    "ERROR: " + employee + " is already assigned to this shift");
+        }
+
+        if (assignment._isManager && hasManager) {
+            throw new ShiftManException(ErrorCategory.CONFLICT, "ERROR: A manager is already assigned to this shift") ;
+        }
+    }
+
+    private RosterEvent assignStaff(Assignment assignment, long version) {
+        Shift shift = assignment._shift;
+        Employee employee = assignment._employee;
+        if (assignment._isManager) {
+            shift.setManager(employee);
         } else {
             shift.assignWorker(employee);
         }
 
-        _assignedStaff.add(employee);
+        _shifts.updateStaffingStatus(shift);
+        _assignments.add(employee, shift, assignment._isManager, version);
+        synchronized (_assignedStaff) {
+            _assignedStaff.set(employee.getId());
+        }
+        return RosterEvent.staffAssigned(version, shift, employee, assignment._isManager);
     }
 
     public void setWorkingHours(TimePeriod workday) throws ShiftManException {
-        for (TimePeriod workingHours : _workingHours) {
-            if (workday.getDay().equals(workingHours.getDay())) {
-                throw new ShiftManException("ERROR: Working hours already set for " + workday.getDay());
+        if (getWorkingHours(workday.getDay()) != null) {
+            throw new ShiftManException(ErrorCategory.CONFLICT,
+                    "ERROR: Working hours already set for " + workday.getDay());
+        }
+
+        RosterListener listener = _listener;
+        if (listener != null) {
+            listener.workingHoursSet(workday);
+        }
+        long version = beginChange();
+        try {
+            _workingHoursVersions.set(workday.getDay().ordinal(), version); // set first, so it is there once the hours are
+            _workingHours.set(workday.getDay().ordinal(), workday);
+            RosterEventRing events = _events; // stored before the change ends, so every published version has its event
+            if (events != null) {
+                events.put(RosterEvent.workingHoursSet(version, workday));
             }
+        } finally {
+            endChange(version);
         }
-        _workingHours.add(workday);
+    }
+
+    /**
+     * Tells the listener about the changes that would rebuild the latest version of the roster, see
+     * {@link RosterSnapshot#replayTo(RosterListener)}. Used to write a compact snapshot of the roster.
+     */
+    public void replayTo(RosterListener listener) throws ShiftManException {
+        snapshot().replayTo(listener);
     }
 
     /**
@@ -80,12 +448,59 @@ public class Roster {
      * @return the working hours for that day. If there is no working hours set for that day, then return null
      */
     public String getWorkingHours(String dayOfWeek) {
-        for (TimePeriod day : _workingHours) {
-            if (dayOfWeek.equals(day.getDay().toString())) {
-                return day.getTimePeriod();
-            }
+        DayOfWeek day = DayOfWeek.fromString(dayOfWeek);
+        TimePeriod workingHours = day != null ? getWorkingHours(day) : null;
+        return workingHours != null ? workingHours.getTimePeriod() : null;
+    }
+
+    private TimePeriod getWorkingHours(DayOfWeek dayOfWeek) {
+        return _workingHours.get(dayOfWeek.ordinal());
+    }
+
+    /**
+     * @return the working hours of the day as of the given version, or null if they were not set by that version
+     */
+    TimePeriod getWorkingHours(DayOfWeek dayOfWeek, long version) {
+        TimePeriod workingHours = _workingHours.get(dayOfWeek.ordinal());
+        if (workingHours == null || _workingHoursVersions.get(dayOfWeek.ordinal()) > version) {
+            return null;
         }
-        return null;
+        return workingHours;
+    }
+
+    /*
+     * Live views of the data of the roster, for snapshots to read
+     */
+
+    Collection<Employee> getEmployees() {
+        return _staff.getEmployees();
+    }
+
+    Collection<Shift> getShiftsOnDay(DayOfWeek day) {
+        return _shifts.getShiftsOnDay(day);
+    }
+
+    AssignmentRepository getAssignments() {
+        return _assignments;
+    }
+
+    public String getShopName() {
+        return _shopName;
+    }
+
+    public int getStaffCount() {
+        return _staff.size();
+    }
+
+    public int getShiftCount() {
+        return _shifts.size();
+    }
+
+    /**
+     * @return the number of assignments of staff to shifts, counting managers and workers
+     */
+    public int getAssignmentCount() {
+        return _assignments.size();
     }
 
     /**
@@ -101,33 +516,131 @@ public class Roster {
         return _staff.getEmployeeByName(fullName);
     }
 
+    /**
+     * @return all the employees, in the order they were registered, so that the index of each employee is its id
+     */
+    public List<Employee> getEmployeesByRegistration() {
+        return _staff.getEmployeesByRegistration();
+    }
+
+    /**
+     * @return all the shifts, in chronological order
+     */
+    public List<Shift> getAllShifts() {
+        return _shifts.getAllShifts();
+    }
+
     public List<String> getRegisteredStaff() {
         return _staff.getAllStaff();
     }
 
     public List<String> getUnassignedStaff() {
-        return _staff.getUnassignedStaff(_assignedStaff);
+        return _staff.getUnassignedStaff(copyAssignedStaff());
+    }
+
+    /**
+     * @return a page of the registered staff, see {@link EmployeeRepository#getStaffPage(Employee, BitSet, int)}
+     */
+    public List<String> getRegisteredStaff(Employee after, int limit) {
+        return _staff.getStaffPage(after, null, limit);
+    }
+
+    /**
+     * @return a page of the unassigned staff, see {@link EmployeeRepository#getStaffPage(Employee, BitSet, int)}
+     */
+    public List<String> getUnassignedStaff(Employee after, int limit) {
+        return _staff.getStaffPage(after, copyAssignedStaff(), limit);
+    }
+
+    /**
+     * @return the full names of the staff found by a type-ahead search, best match first, see
+     *         {@link StaffSearchIndex#search(String, int)}
+     */
+    public List<String> searchStaff(String query, int limit) {
+        List<String> staff = new ArrayList<>();
+        for (Employee employee : _staff.search(query, limit)) {
+            staff.add(employee.toString());
+        }
+        return staff;
+    }
+
+    private BitSet copyAssignedStaff() {
+        synchronized (_assignedStaff) { // copy so that staff can be assigned while the list is built
+            return (BitSet) _assignedStaff.clone();
+        }
     }
 
     public List<String> getShiftList(boolean noManager, boolean understaffed, boolean overstaffed) {
         return _shifts.getShiftList(noManager, understaffed, overstaffed);
     }
 
+    public void writeShiftList(boolean noManager, boolean understaffed, boolean overstaffed, Appendable out) throws IOException {
+        _shifts.writeShiftList(noManager, understaffed, overstaffed, out);
+    }
+
     public List<String> getShiftsForEmployee(Employee employee, boolean asManager) {
-        return _shifts.getShiftsForEmployee(employee, asManager);
+        return _assignments.getShiftsForEmployee(employee, asManager);
+    }
+
+    public void writeShiftsForEmployee(Employee employee, boolean asManager, Appendable out) throws IOException {
+        _assignments.writeShiftsForEmployee(employee, asManager, out);
+    }
+
+    /**
+     * Discards cached data that can be rebuilt when needed, to save memory while the roster is not being used
+     */
+    public void trimCaches() {
+        _shifts.clearCachedRosterLines();
     }
 
     public List<String> getRosterForDay(String dayOfWeek) {
-        String workingHours = getWorkingHours(dayOfWeek);
-        if (workingHours == null) { // return empty list if no roster/working hours not set for that day
+        DayOfWeek day = DayOfWeek.fromString(dayOfWeek);
+        if (!hasRosterForDay(day)) { // return empty list if no roster/working hours not set for that day
             return Collections.emptyList();
         }
 
-        List<String> roster = _shifts.getRosterForDay(DayOfWeek.valueOf(dayOfWeek));
-        if (!roster.isEmpty()) {
-            roster.add(0, _shopName);
-            roster.add(1, dayOfWeek + " " + workingHours);
-        }
+        List<String> roster = new ArrayList<>();
+        roster.add(_shopName);
+        roster.add(dayOfWeek + " " + getWorkingHours(day).getTimePeriod());
+        _shifts.addRosterLines(day, roster);
         return roster;
     }
+
+    /**
+     * Checks if there is a roster for the given day, ie. the working hours are set and there is at least one shift.
+     * Working hours and shifts are never removed, so once this is true it stays true.
+     */
+    public boolean hasRosterForDay(DayOfWeek day) {
+        return getWorkingHours(day) != null && _shifts.hasShiftsOn(day);
+    }
+
+    /**
+     * Writes the roster for the given day without the shop name: the day and its working hours, then the roster line
+     * of each shift. Nothing is written if the working hours of the day are not set.
+     * @param linePrefix written at the start of each line, eg. to indent the lines
+     */
+    public void writeRosterForDay(DayOfWeek day, Appendable out, String linePrefix) throws IOException {
+        TimePeriod workingHours = getWorkingHours(day);
+        if (workingHours == null) {
+            return;
+        }
+
+        out.append(linePrefix).append(day.toString()).append(' ').append(workingHours.getTimePeriod()).append('\n');
+        _shifts.writeRosterLines(day, out, linePrefix);
+    }
+
+    /**
+     * An assignment of an employee to a shift of the roster, as a row of {@link #assignStaff(List)}
+     */
+    public static class Assignment {
+        private final Shift _shift;
+        private final Employee _employee;
+        private final boolean _isManager;
+
+        public Assignment(Shift shift, Employee employee, boolean isManager) {
+            _shift = shift;
+            _employee = employee;
+            _isManager = isManager;
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package shiftman.server;
+
+/**
+ * A change made to a roster, as delivered to a {@link RosterSubscription}. Each change makes a new version of the
+ * roster, and the event has that version, so a subscriber can apply the events in order of version to a snapshot
+ * to keep up with the roster. The rows of a batch are published as one change, so their events share a version.
+ */
+public class RosterEvent {
+    public enum Type {
+        WORKING_HOURS_SET,
+        SHIFT_ADDED,
+        STAFF_REGISTERED,
+        MANAGER_ASSIGNED,
+        WORKER_ASSIGNED
+    }
+
+    private final Type _type;
+    private final long _version;
+    private final TimePeriod _period; // working hours or shift, null for STAFF_REGISTERED
+    private final Employee _employee; // null for WORKING_HOURS_SET and SHIFT_ADDED
+
+    private RosterEvent(Type type, long version, TimePeriod period, Employee employee) {
+        _type = type;
+        _version = version;
+        _period = period;
+        _employee = employee;
+    }
+
+    static RosterEvent workingHoursSet(long version, TimePeriod workingHours) {
+        return new RosterEvent(Type.WORKING_HOURS_SET, version, workingHours, null);
+    }
+
+    static RosterEvent shiftAdded(long version, Shift shift) {
+        return new RosterEvent(Type.SHIFT_ADDED, version, shift, null);
+    }
+
+    static RosterEvent staffRegistered(long version, Employee employee) {
+        return new RosterEvent(Type.STAFF_REGISTERED, version, null, employee);
+    }
+
+    static RosterEvent staffAssigned(long version, Shift shift, Employee employee, boolean isManager) {
+        return new RosterEvent(isManager ? Type.MANAGER_ASSIGNED : Type.WORKER_ASSIGNED, version, shift, employee);
+    }
+
+    public Type getType() {
+        return _type;
+    }
+
+    /**
+     * @return the version of the roster made by the change
+     */
+    public long getVersion() {
+        return _version;
+    }
+
+    /**
+     * @return the day of the working hours or shift, or null if the event is not about a period of time
+     */
+    public String getDay() {
+        return _period != null ? _period.getDay().toString() : null;
+    }
+
+    /**
+     * @return the start time of the working hours or shift, or null if the event is not about a period of time
+     */
+    public String getStartTime() {
+        return _period != null ? _period.getStartTime().toString() : null;
+    }
+
+    /**
+     * @return the end time of the working hours or shift, or null if the event is not about a period of time
+     */
+    public String getEndTime() {
+        return _period != null ? _period.getEndTime().toString() : null;
+    }
+
+    /**
+     * @return the minimum number of workers of the shift added, or 0 if the event is not about a shift
+     */
+    public int getMinimumWorkers() {
+        return _period instanceof Shift ? ((Shift) _period).getMinWorkers() : 0;
+    }
+
+    /**
+     * @return the given name of the staff member registered or assigned, or null if the event is not about staff
+     */
+    public String getGivenName() {
+        return _employee != null ? _employee.getGivenName() : null;
+    }
+
+    /**
+     * @return the family name of the staff member registered or assigned, or null if the event is not about staff
+     */
+    public String getFamilyName() {
+        return _employee != null ? _employee.getFamilyName() : null;
+    }
+
+    /**
+     * Describes the event in one line, eg. "12 WORKER_ASSIGNED Monday[09:00-12:00] Smith, John"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append(_version).append(' ').append(_type);
+        if (_period != null) {
+            sb.append(' ').append(_period);
+        }
+        if (_type == Type.SHIFT_ADDED) {
+            sb.append(' ').append(getMinimumWorkers());
+        }
+        if (_employee != null) {
+            sb.append(' ').append(_employee.getFamilyFirstName());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package shiftman.server;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free ring buffer of the latest changes of a roster. The events of each version are stored in the slot
+ * of its version, so events of changes to different days can be stored at the same time without coordinating with
+ * each other, and each change overwrites the change of the version a whole ring earlier. A change has one event, or
+ * one per row for a batch.
+ */
+class RosterEventRing {
+    private final AtomicReferenceArray<RosterEvent[]> _changes;
+    private final int _mask;
+
+    /**
+     * @param capacity the number of changes kept, a power of two
+     */
+    RosterEventRing(int capacity) {
+        _changes = new AtomicReferenceArray<>(capacity);
+        _mask = capacity - 1;
+    }
+
+    /**
+     * @param events the events of one change, at least one, all of the same version
+     */
+    void put(RosterEvent... events) {
+        _changes.set((int) (events[0].getVersion() & _mask), events);
+    }
+
+    /**
+     * @return the events of the given version, or null if they have been overwritten or were never stored
+     */
+    RosterEvent[] get(long version) {
+        RosterEvent[] events = _changes.get((int) (version & _mask));
+        return events != null && events[0].getVersion() == version ? events : null;
+    }
+}
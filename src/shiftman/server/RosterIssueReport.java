@@ -0,0 +1,155 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Report of the issues with one version of a roster: shifts without a manager, understaffed shifts, overstaffed
+ * shifts and unassigned staff, see {@link ShiftManServer#reportRosterIssues()}.
+ * <p>
+ * The roster is analysed from a snapshot, so the issues all agree with each other even while the roster changes.
+ * Each shift is looked at once for every kind of issue, and the staff assigned to it are noted on the way, so the
+ * unassigned staff are found without going over the shifts again. The days are analysed in parallel on the common
+ * fork/join pool, splitting the week in halves until each task has one day.
+ */
+class RosterIssueReport {
+    private final Roster _roster;
+    private final long _version;
+    private final String _text;
+
+    private RosterIssueReport(Roster roster, long version, String text) {
+        _roster = roster;
+        _version = version;
+        _text = text;
+    }
+
+    /**
+     * Analyses the latest version of the roster
+     */
+    static RosterIssueReport analyze(Roster roster) {
+        RosterSnapshot snapshot = roster.snapshot();
+        Issues issues = ForkJoinPool.commonPool().invoke(new DaysTask(snapshot, 0, DayOfWeek.count()));
+
+        List<String> unassignedStaff = new ArrayList<>();
+        for (Employee employee : roster.getEmployees()) { // sorted by family name and then given name
+            if (employee.getVersion() <= snapshot.getVersion() && !issues._assignedStaff.get(employee.getId())) {
+                unassignedStaff.add(employee.toString());
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        appendIssues(sb, "Shifts without a manager:", issues._shiftsWithoutManager);
+        appendIssues(sb, "Understaffed shifts:", issues._understaffedShifts);
+        appendIssues(sb, "Overstaffed shifts:", issues._overstaffedShifts);
+        appendIssues(sb, "Unassigned staff:", unassignedStaff);
+        return new RosterIssueReport(roster, snapshot.getVersion(), sb.toString());
+    }
+
+    private static void appendIssues(StringBuilder sb, String heading, List<String> issues) {
+        sb.append(heading).append('\n');
+        for (String issue : issues) {
+            sb.append('\t').append(issue).append('\n');
+        }
+        if (issues.isEmpty()) {
+            sb.append("\t(none)\n");
+        }
+    }
+
+    /**
+     * @return true if the report is of the latest version of the given roster, ie. nothing has changed since
+     */
+    boolean isCurrent(Roster roster) {
+        return roster == _roster && roster.getPublishedVersion() == _version;
+    }
+
+    /**
+     * @return the report, one heading per kind of issue followed by the issues, one per line
+     */
+    @Override
+    public String toString() {
+        return _text;
+    }
+
+    /**
+     * Issues found on a range of days, in chronological order
+     */
+    private static class Issues {
+        final List<String> _shiftsWithoutManager = new ArrayList<>();
+        final List<String> _understaffedShifts = new ArrayList<>();
+        final List<String> _overstaffedShifts = new ArrayList<>();
+        final BitSet _assignedStaff = new BitSet(); // ids of staff assigned to a shift on the days
+
+        /**
+         * Adds the issues of the days after these days
+         */
+        void addAll(Issues later) {
+            _shiftsWithoutManager.addAll(later._shiftsWithoutManager);
+            _understaffedShifts.addAll(later._understaffedShifts);
+            _overstaffedShifts.addAll(later._overstaffedShifts);
+            _assignedStaff.or(later._assignedStaff);
+        }
+    }
+
+    /**
+     * Finds the issues of the days from the first up to, but not including, the last. Ranges of more than one day
+     * are split in two, and the halves analysed in parallel.
+     */
+    private static class DaysTask extends RecursiveTask<Issues> {
+        private static final long serialVersionUID = 1L;
+
+        private final RosterSnapshot _snapshot;
+        private final int _firstDay; // ordinal
+        private final int _lastDay; // ordinal, exclusive
+
+        DaysTask(RosterSnapshot snapshot, int firstDay, int lastDay) {
+            _snapshot = snapshot;
+            _firstDay = firstDay;
+            _lastDay = lastDay;
+        }
+
+        @Override
+        protected Issues compute() {
+            if (_lastDay - _firstDay == 1) {
+                return analyzeDay(DayOfWeek.of(_firstDay));
+            }
+
+            int middle = (_firstDay + _lastDay) / 2;
+            DaysTask earlier = new DaysTask(_snapshot, _firstDay, middle);
+            earlier.fork();
+            Issues later = new DaysTask(_snapshot, middle, _lastDay).compute();
+            Issues issues = earlier.join();
+            issues.addAll(later);
+            return issues;
+        }
+
+        private Issues analyzeDay(DayOfWeek day) {
+            Issues issues = new Issues();
+            for (Shift shift : _snapshot.getShiftsOnDay(day)) {
+                if (!_snapshot.contains(shift)) {
+                    continue;
+                }
+
+                Employee manager = _snapshot.getManager(shift);
+                List<Employee> workers = _snapshot.getWorkers(shift);
+                if (manager == null) {
+                    issues._shiftsWithoutManager.add(shift.toString());
+                } else {
+                    issues._assignedStaff.set(manager.getId());
+                }
+                int workersNeeded = shift.getMinWorkers() - workers.size();
+                if (workersNeeded > 0) {
+                    issues._understaffedShifts.add(shift.toString());
+                } else if (workersNeeded < 0) {
+                    issues._overstaffedShifts.add(shift.toString());
+                }
+                for (Employee worker : workers) {
+                    issues._assignedStaff.set(worker.getId());
+                }
+            }
+            return issues;
+        }
+    }
+}
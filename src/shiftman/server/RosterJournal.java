@@ -0,0 +1,462 @@
+package shiftman.server;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of the changes made to a roster. It is used both as the write-ahead journal of a
+ * {@link PersistentShiftManServer} and, holding just the changes needed to rebuild a roster, for its snapshots.
+ * <p>
+ * The file starts with a header: magic number (int), format version (short) and generation (long). The generation
+ * ties a journal to the snapshot it follows. The header is followed by records, each of which is the length of the
+ * payload (int), the CRC32 of the payload (int), and the payload. The payload is the record type (byte) followed by
+ * its values. Days are written as the ordinal of the day (byte), times as minutes since the start of the day (short),
+ * and strings as the number of UTF-8 bytes (int) followed by the bytes.
+ * <p>
+ * Records are buffered in memory when appended and written by {@link #sync()}. When several threads sync at the same
+ * time, one of them writes and forces the records of all of them to disk (group commit).
+ */
+public class RosterJournal implements RosterListener {
+    private static final int MAGIC = 0x52535452; // "RSTR"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8;
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+
+    private static final byte ROSTER_CREATED = 1;
+    private static final byte WORKING_HOURS_SET = 2;
+    private static final byte STAFF_REGISTERED = 3;
+    private static final byte SHIFT_ADDED = 4;
+    private static final byte STAFF_ASSIGNED = 5;
+
+    private final FileChannel _channel;
+    private final long _generation;
+    private final CRC32 _crc;
+    private final Object _syncLock;
+    private ByteBuffer _pending; // records appended but not yet written, guarded by this
+    private ByteBuffer _writing; // records being written, guarded by _syncLock
+    private long _recordCount; // number of records appended, guarded by this
+    private volatile long _durableCount; // number of records forced to disk
+    private IOException _failure; // set if writing failed, after which the journal cannot be used, guarded by _syncLock
+
+    private RosterJournal(FileChannel channel, long generation, long recordCount) {
+        _channel = channel;
+        _generation = generation;
+        _crc = new CRC32();
+        _syncLock = new Object();
+        _pending = ByteBuffer.allocate(64 * 1024);
+        _writing = ByteBuffer.allocate(64 * 1024);
+        _recordCount = recordCount;
+        _durableCount = recordCount;
+    }
+
+    /**
+     * Creates a new, empty journal, replacing any existing file
+     * @param generation the generation of the journal, written in its header
+     */
+    public static RosterJournal create(Path file, long generation) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).putLong(generation).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+            return new RosterJournal(channel, generation, 0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing journal to append more records to it. Anything after the given length, such as a record that
+     * was only partly written when the process stopped, is discarded.
+     * @param replay the result of replaying the journal, see {@link #replay(Path, long, ShiftMan)}
+     */
+    public static RosterJournal openForAppend(Path file, Replay replay) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(replay.getLength());
+            channel.position(replay.getLength());
+            return new RosterJournal(channel, replay.getGeneration(), replay.getRecordCount());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the generation from the header of a journal
+     * @return the generation, or -1 if the file does not exist or is shorter than a header, as it is if the process
+     *         stopped while the journal was being created
+     * @throws IOException if the file cannot be read or does not start with a valid header
+     */
+    public static long readGeneration(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new IOException(file + " does not start with a valid journal header");
+            }
+            return header.getLong();
+        }
+    }
+
+    /**
+     * Replays the records of a journal by making the matching calls to the given ShiftMan. The file is read through
+     * memory-mapped I/O. Reading stops at the end of the file or at a record that is incomplete or corrupt, as the
+     * last record is if the process stopped while it was being written. A corrupt record followed by an intact one
+     * cannot be explained that way, so the journal is then treated as damaged rather than cut short there.
+     * @param generation the generation the journal must have to be replayed
+     * @param target the ShiftMan to apply the changes to
+     * @return the result of the replay. If the journal does not have the given generation, nothing is replayed.
+     * @throws IOException if the journal cannot be read, has a corrupt record before an intact one, or a record is
+     *                     rejected by the ShiftMan
+     */
+    public static Replay replay(Path file, long generation, ShiftMan target) throws IOException {
+        if (readGeneration(file) != generation) {
+            return new Replay(generation, -1, 0);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            long recordCount = 0;
+
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                int length = getRecordLength(buffer, start, crc);
+                if (length < 0) {
+                    if (hasRecordAfter(buffer, start, crc)) {
+                        throw new IOException("Journal record " + recordCount + " of " + file
+                                + " is corrupt, but records after it are intact");
+                    }
+                    break; // the record the process stopped while writing
+                }
+
+                String status;
+                try {
+                    status = apply(getPayload(buffer, start, length), target);
+                } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                    throw new IOException("Journal record " + recordCount + " of " + file + " is invalid", e);
+                }
+                if (!status.isEmpty()) {
+                    throw new IOException("Journal record " + recordCount + " of " + file + " could not be replayed: " + status);
+                }
+                buffer.position(start + RECORD_HEADER_SIZE + length);
+                recordCount++;
+            }
+            return new Replay(generation, buffer.position(), recordCount);
+        }
+    }
+
+    /**
+     * @return the length of the payload of the record that starts at the given position, or -1 if there is no
+     *         complete record with a valid checksum there
+     */
+    private static int getRecordLength(ByteBuffer buffer, int start, CRC32 crc) {
+        int available = buffer.limit() - start - RECORD_HEADER_SIZE;
+        if (available < 0) {
+            return -1;
+        }
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > available) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(getPayload(buffer, start, length));
+        return (int) crc.getValue() == buffer.getInt(start + 4) ? length : -1;
+    }
+
+    /**
+     * @return true if an intact record starts anywhere after the start of the corrupt record at the given position
+     */
+    private static boolean hasRecordAfter(ByteBuffer buffer, int start, CRC32 crc) {
+        for (int next = start + 1; next <= buffer.limit() - RECORD_HEADER_SIZE; next++) {
+            if (getRecordLength(buffer, next, crc) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ByteBuffer getPayload(ByteBuffer buffer, int start, int length) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(start + RECORD_HEADER_SIZE + length);
+        payload.position(start + RECORD_HEADER_SIZE);
+        return payload.slice();
+    }
+
+    /**
+     * Applies the change of one record to the ShiftMan
+     * @return the status returned by the ShiftMan
+     */
+    private static String apply(ByteBuffer payload, ShiftMan target) {
+        byte type = payload.get();
+        switch (type) {
+            case ROSTER_CREATED:
+                return target.newRoster(getString(payload));
+            case WORKING_HOURS_SET: {
+                String day = getDay(payload);
+                return target.setWorkingHours(day, getTime(payload), getTime(payload));
+            }
+            case STAFF_REGISTERED: {
+                String givenName = getString(payload);
+                return target.registerStaff(givenName, getString(payload));
+            }
+            case SHIFT_ADDED: {
+                String day = getDay(payload);
+                String startTime = getTime(payload);
+                String endTime = getTime(payload);
+                return target.addShift(day, startTime, endTime, Integer.toString(payload.getInt()));
+            }
+            case STAFF_ASSIGNED: {
+                String day = getDay(payload);
+                String startTime = getTime(payload);
+                String endTime = getTime(payload);
+                String givenName = getString(payload);
+                String familyName = getString(payload);
+                return target.assignStaff(day, startTime, endTime, givenName, familyName, payload.get() != 0);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown record type " + type);
+        }
+    }
+
+    private static String getDay(ByteBuffer payload) {
+        return DayOfWeek.of(payload.get()).toString();
+    }
+
+    private static String getTime(ByteBuffer payload) {
+        return Time.format(payload.getShort());
+    }
+
+    private static String getString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0 || length > payload.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public long getGeneration() {
+        return _generation;
+    }
+
+    /**
+     * @return the number of records in the journal, including those not yet synced
+     */
+    public synchronized long getRecordCount() {
+        return _recordCount;
+    }
+
+    @Override
+    public synchronized void rosterCreated(String shopName) {
+        int start = beginRecord(ROSTER_CREATED);
+        putString(shopName);
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void workingHoursSet(TimePeriod workingHours) {
+        int start = beginRecord(WORKING_HOURS_SET);
+        putPeriod(workingHours);
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void shiftAdded(Shift shift) {
+        int start = beginRecord(SHIFT_ADDED);
+        putPeriod(shift);
+        ensureCapacity(4);
+        _pending.putInt(shift.getMinWorkers());
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void staffRegistered(Employee employee) {
+        int start = beginRecord(STAFF_REGISTERED);
+        putString(employee.getGivenName());
+        putString(employee.getFamilyName());
+        endRecord(start);
+    }
+
+    @Override
+    public synchronized void staffAssigned(Shift shift, Employee employee, boolean isManager) {
+        int start = beginRecord(STAFF_ASSIGNED);
+        putPeriod(shift);
+        putString(employee.getGivenName());
+        putString(employee.getFamilyName());
+        ensureCapacity(1);
+        _pending.put((byte) (isManager ? 1 : 0));
+        endRecord(start);
+    }
+
+    /**
+     * Starts a record, leaving space for its length and checksum
+     * @return the position of the start of the record
+     */
+    private int beginRecord(byte type) {
+        ensureCapacity(RECORD_HEADER_SIZE + 1);
+        int start = _pending.position();
+        _pending.position(start + RECORD_HEADER_SIZE);
+        _pending.put(type);
+        return start;
+    }
+
+    /**
+     * Fills in the length and checksum of the record that starts at the given position
+     */
+    private void endRecord(int start) {
+        int payloadStart = start + RECORD_HEADER_SIZE;
+        int length = _pending.position() - payloadStart;
+
+        ByteBuffer payload = _pending.duplicate();
+        payload.position(payloadStart);
+        payload.limit(payloadStart + length);
+        _crc.reset();
+        _crc.update(payload);
+
+        _pending.putInt(start, length);
+        _pending.putInt(start + 4, (int) _crc.getValue());
+        _recordCount++;
+    }
+
+    private void putPeriod(TimePeriod period) {
+        ensureCapacity(1 + 2 + 2);
+        _pending.put((byte) period.getDay().ordinal());
+        _pending.putShort((short) period.getStartTime().getTotalMins());
+        _pending.putShort((short) period.getEndTime().getTotalMins());
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(4 + bytes.length);
+        _pending.putInt(bytes.length);
+        _pending.put(bytes);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (_pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(_pending.capacity() * 2, _pending.position() + bytes));
+            _pending.flip();
+            larger.put(_pending);
+            _pending = larger;
+        }
+    }
+
+    /**
+     * Writes all the records appended so far and forces them to disk. If another thread is already doing so, then
+     * waits for it and only writes the records that it did not include.
+     * @throws IOException if the records could not be written. Once this happens, every later sync also fails.
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = _recordCount;
+        }
+
+        synchronized (_syncLock) {
+            if (_failure != null) {
+                throw new IOException("Journal could not be written", _failure);
+            }
+            if (_durableCount >= target) { // written by another thread while waiting for the lock
+                return;
+            }
+
+            long recordCount;
+            synchronized (this) { // swap the buffers, so that records can be appended while writing
+                ByteBuffer records = _pending;
+                _pending = _writing;
+                _writing = records;
+                recordCount = _recordCount;
+            }
+
+            try {
+                _writing.flip();
+                while (_writing.hasRemaining()) {
+                    _channel.write(_writing);
+                }
+                _writing.clear();
+                _channel.force(false);
+                _durableCount = recordCount;
+            } catch (IOException e) {
+                _failure = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Closes the journal. Records that have not been synced are discarded.
+     */
+    public void close() throws IOException {
+        synchronized (_syncLock) {
+            _channel.close();
+        }
+    }
+
+    /**
+     * Closes the journal once its records have been saved elsewhere, such as in a snapshot. Any records that have not
+     * been synced are treated as synced, so threads still waiting to sync them are not told that they failed.
+     */
+    public void retire() throws IOException {
+        synchronized (_syncLock) {
+            synchronized (this) {
+                _pending.clear();
+                _durableCount = _recordCount;
+            }
+            _channel.close();
+        }
+    }
+
+    /**
+     * The result of replaying a journal
+     */
+    public static class Replay {
+        private final long _generation;
+        private final long _length;
+        private final long _recordCount;
+
+        private Replay(long generation, long length, long recordCount) {
+            _generation = generation;
+            _length = length;
+            _recordCount = recordCount;
+        }
+
+        public long getGeneration() {
+            return _generation;
+        }
+
+        /**
+         * @return the length of the valid part of the journal in bytes, or -1 if the journal was not replayed
+         *         because it was missing or had a different generation
+         */
+        public long getLength() {
+            return _length;
+        }
+
+        public long getRecordCount() {
+            return _recordCount;
+        }
+
+        public boolean wasReplayed() {
+            return _length >= 0;
+        }
+    }
+}
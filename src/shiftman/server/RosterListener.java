@@ -0,0 +1,22 @@
+package shiftman.server;
+
+/**
+ * Listener for the changes made to a roster. Each method is called once a change has been checked and just before it
+ * is applied to the roster, while the lock guarding that change is held. If a method throws an exception, then the
+ * change is not applied and the error is reported to the client instead.
+ */
+public interface RosterListener {
+
+    void rosterCreated(String shopName) throws ShiftManException;
+
+    void workingHoursSet(TimePeriod workingHours) throws ShiftManException;
+
+    void shiftAdded(Shift shift) throws ShiftManException;
+
+    void staffRegistered(Employee employee) throws ShiftManException;
+
+    /**
+     * @param isManager true if the employee is assigned as the manager of the shift, false if as a worker
+     */
+    void staffAssigned(Shift shift, Employee employee, boolean isManager) throws ShiftManException;
+}
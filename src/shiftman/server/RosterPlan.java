@@ -0,0 +1,51 @@
+package shiftman.server;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The assignments planned by a {@link RosterSolver} to fill the gaps of a roster, and the gaps it could not fill.
+ * The plan is not applied to the roster until its assignments are passed to
+ * {@link ShiftManServer#assignStaffBatch(List)}.
+ */
+public class RosterPlan {
+    private final List<String[]> _assignments;
+    private final int _shiftsWithoutManager;
+    private final int _workersMissing;
+
+    RosterPlan(List<String[]> assignments, int shiftsWithoutManager, int workersMissing) {
+        _assignments = Collections.unmodifiableList(assignments);
+        _shiftsWithoutManager = shiftsWithoutManager;
+        _workersMissing = workersMissing;
+    }
+
+    /**
+     * @return the planned assignments as rows for {@link ShiftManServer#assignStaffBatch(List)}: day of week, start
+     *         time, end time, given name, family name, and "true" if the staff member is to be the manager.
+     *         The rows are in chronological order of the shifts, with the manager of a shift before its workers.
+     */
+    public List<String[]> getAssignments() {
+        return _assignments;
+    }
+
+    /**
+     * @return the number of shifts that would still have no manager once the plan is applied
+     */
+    public int getShiftsWithoutManager() {
+        return _shiftsWithoutManager;
+    }
+
+    /**
+     * @return the number of workers that would still be needed, over all shifts, once the plan is applied
+     */
+    public int getWorkersMissing() {
+        return _workersMissing;
+    }
+
+    /**
+     * @return true if the plan fills every gap of the roster
+     */
+    public boolean isComplete() {
+        return _shiftsWithoutManager == 0 && _workersMissing == 0;
+    }
+}
@@ -0,0 +1,174 @@
+package shiftman.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads rosters written by a {@link RosterWriter} from a channel. Each roster is rebuilt by making the matching calls
+ * to a ShiftMan, so it is checked just as if it had been entered by a client. The channel is read through a buffer as
+ * the roster is rebuilt, and the names and times of each employee and shift are only decoded once however many
+ * assignments refer to them.
+ */
+public class RosterReader {
+    private static final int MAX_STRING_LENGTH = 64 * 1024; // bytes, far longer than any name
+
+    private final ReadableByteChannel _channel;
+    private final ByteBuffer _buffer;
+
+    public RosterReader(ReadableByteChannel channel) {
+        _channel = channel;
+        _buffer = ByteBuffer.allocate(64 * 1024);
+        _buffer.flip(); // nothing has been read yet
+    }
+
+    /**
+     * Reads the next roster from the channel and rebuilds it in the given ShiftMan, starting with a new roster
+     * @return true if a roster was read, or false if the channel has ended before the start of another roster
+     * @throws IOException if the channel cannot be read, does not hold a valid roster, or the ShiftMan rejects
+     *         part of the roster
+     */
+    public boolean readTo(ShiftMan target) throws IOException {
+        if (!fill(1)) {
+            return false;
+        }
+        require(4 + 2);
+        if (_buffer.getInt() != RosterWriter.MAGIC) {
+            throw new IOException("Not a roster");
+        }
+        short version = _buffer.getShort();
+        if (version != RosterWriter.VERSION) {
+            throw new IOException("Unsupported roster format version " + version);
+        }
+
+        List<String> givenNames = new ArrayList<>();
+        List<String> familyNames = new ArrayList<>();
+        List<String[]> shifts = new ArrayList<>(); // day, start time and end time of each shift
+        long recordCount = 0;
+
+        while (true) {
+            require(1);
+            byte type = _buffer.get();
+            String status;
+            switch (type) {
+                case RosterWriter.END:
+                    return true;
+                case RosterWriter.SHOP:
+                    status = target.newRoster(getString());
+                    break;
+                case RosterWriter.WORKING_HOURS: {
+                    String[] period = getPeriod();
+                    status = target.setWorkingHours(period[0], period[1], period[2]);
+                    break;
+                }
+                case RosterWriter.EMPLOYEE: {
+                    String givenName = getString();
+                    String familyName = getString();
+                    givenNames.add(givenName);
+                    familyNames.add(familyName);
+                    status = target.registerStaff(givenName, familyName);
+                    break;
+                }
+                case RosterWriter.SHIFT: {
+                    String[] period = getPeriod();
+                    shifts.add(period);
+                    status = target.addShift(period[0], period[1], period[2], Integer.toString(getVarInt()));
+                    break;
+                }
+                case RosterWriter.MANAGER:
+                case RosterWriter.WORKER: {
+                    String[] period = getNumbered(shifts, getVarInt(), "shift");
+                    int employee = getVarInt();
+                    String givenName = getNumbered(givenNames, employee, "employee");
+                    status = target.assignStaff(period[0], period[1], period[2], givenName, familyNames.get(employee),
+                            type == RosterWriter.MANAGER);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown roster record type " + type);
+            }
+
+            if (!status.isEmpty()) {
+                throw new IOException("Roster record " + recordCount + " could not be imported: " + status);
+            }
+            recordCount++;
+        }
+    }
+
+    /**
+     * Reads a time period packed by {@link TimePeriod#getKey()}
+     * @return the day, start time and end time of the period
+     */
+    private String[] getPeriod() throws IOException {
+        require(4);
+        int key = _buffer.getInt();
+        int day = key >>> 22;
+        if (day >= DayOfWeek.count()) {
+            throw new IOException("Invalid day in roster: " + day);
+        }
+        return new String[] { DayOfWeek.of(day).toString(), Time.format((key >>> 11) & 0x7FF), Time.format(key & 0x7FF) };
+    }
+
+    private <T> T getNumbered(List<T> values, int number, String kind) throws IOException {
+        if (number < 0 || number >= values.size()) {
+            throw new IOException("Roster refers to " + kind + " " + number + " before it is defined");
+        }
+        return values.get(number);
+    }
+
+    private int getVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            require(1);
+            byte b = _buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid number in roster");
+    }
+
+    private String getString() throws IOException {
+        int length = getVarInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) { // before allocating, as the length may be corrupt
+            throw new IOException("Invalid string length in roster: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) { // long strings may not fit in the buffer, so they are copied out in parts
+            require(1);
+            int count = Math.min(_buffer.remaining(), length - offset);
+            _buffer.get(bytes, offset, count);
+            offset += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void require(int bytes) throws IOException {
+        if (!fill(bytes)) {
+            throw new EOFException("Roster ends before its END record");
+        }
+    }
+
+    /**
+     * Reads from the channel until the buffer holds at least the given number of bytes
+     * @return false if the channel ended first
+     */
+    private boolean fill(int bytes) throws IOException {
+        while (_buffer.remaining() < bytes) {
+            _buffer.compact();
+            int read = _channel.read(_buffer);
+            _buffer.flip();
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the rosters for many shops, hosted in one process. Each shop is managed through its own
+ * {@link ShiftMan}, and the names of the staff are shared between all shops through one {@link EmployeeTable}.
+ * Shops can be added, looked up and removed concurrently, and each shop's ShiftMan can be used by many clients at once.
+ */
+public class RosterRegistry {
+    private final ConcurrentHashMap<String, Shop> _shops;
+    private final EmployeeTable _employeeTable;
+
+    public RosterRegistry() {
+        _shops = new ConcurrentHashMap<>();
+        _employeeTable = new EmployeeTable();
+    }
+
+    /**
+     * Starts a new roster for the shop with the supplied name
+     * @return the status of the request. Possible problems include: the supplied name is null or empty, or there is
+     *         already a roster for the shop.
+     */
+    public String newRoster(String shopName) {
+        if (shopName == null || shopName.isEmpty()) {
+            return "ERROR: Cannot create a new roster due to invalid shop name.";
+        }
+
+        ConcurrentShiftManServer server = new ConcurrentShiftManServer(_employeeTable);
+        server.newRoster(shopName);
+        if (_shops.putIfAbsent(shopName, new Shop(server)) != null) {
+            return "ERROR: A roster already exists for " + shopName;
+        }
+        return "";
+    }
+
+    /**
+     * Gets the ShiftMan for the roster of the given shop. Calling newRoster on it starts the shop's roster over.
+     * @return the ShiftMan of the shop. If there is no roster for the shop, then return null.
+     */
+    public ShiftMan getRoster(String shopName) {
+        Shop shop = _shops.get(shopName);
+        if (shop == null) {
+            return null;
+        }
+        shop._lastUsed = System.currentTimeMillis();
+        return shop._server;
+    }
+
+    /**
+     * Removes the roster of the given shop. Names of staff registered with no other shop are released from the
+     * shared {@link EmployeeTable} once the roster is garbage collected.
+     * @return the status of the request. Possible problems include: there is no roster for the shop.
+     */
+    public String removeRoster(String shopName) {
+        if (shopName == null || _shops.remove(shopName) == null) {
+            return "ERROR: No roster exists for " + shopName;
+        }
+        return "";
+    }
+
+    /**
+     * Discards the cached data of rosters that have not been looked up with {@link #getRoster(String)} for the given
+     * time, so that idle rosters only use the memory needed for their data
+     * @param idleMillis how long a roster must have been idle for, in milliseconds
+     * @return the number of rosters trimmed
+     */
+    public int trimIdleRosters(long idleMillis) {
+        long now = System.currentTimeMillis();
+        int trimmed = 0;
+        for (Shop shop : _shops.values()) {
+            if (now - shop._lastUsed >= idleMillis) {
+                shop._server.trimCaches();
+                trimmed++;
+            }
+        }
+        return trimmed;
+    }
+
+    /**
+     * @return the names of all shops with a roster, in alphabetical order
+     */
+    public List<String> getShopNames() {
+        List<String> shopNames = new ArrayList<>(_shops.keySet());
+        Collections.sort(shopNames);
+        return shopNames;
+    }
+
+    public int size() {
+        return _shops.size();
+    }
+
+    /**
+     * The server of a shop and when it was last looked up
+     */
+    private static class Shop {
+        private final ConcurrentShiftManServer _server;
+        private volatile long _lastUsed;
+
+        private Shop(ConcurrentShiftManServer server) {
+            _server = server;
+            _lastUsed = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package shiftman.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A consistent, read only view of one version of a roster, see {@link Roster#snapshot()}. The snapshot reads the
+ * data of the roster itself, leaving out anything added by a later version, so it takes no locks and copies nothing,
+ * and any number of queries of the snapshot all see the roster as it was when the snapshot was taken, even while the
+ * roster continues to change. Used for reports and exports that need several queries to agree with each other.
+ * <p>
+ * The queries return the same results as the queries of {@link ShiftMan} would have returned at that version.
+ */
+public class RosterSnapshot {
+    private final Roster _roster;
+    private final long _version;
+
+    RosterSnapshot(Roster roster, long version) {
+        _roster = roster;
+        _version = version;
+    }
+
+    /**
+     * @return the version of the roster the snapshot is of. Each change to the roster makes a new version.
+     */
+    public long getVersion() {
+        return _version;
+    }
+
+    public String getShopName() {
+        return _roster.getShopName();
+    }
+
+    public List<String> getRegisteredStaff() {
+        List<String> staff = new ArrayList<>();
+        for (Employee employee : _roster.getEmployees()) {
+            if (employee.getVersion() <= _version) {
+                staff.add(employee.toString());
+            }
+        }
+        return staff;
+    }
+
+    public List<String> getUnassignedStaff() {
+        List<String> staff = new ArrayList<>();
+        for (Employee employee : _roster.getEmployees()) {
+            if (employee.getVersion() <= _version && !_roster.getAssignments().isAssigned(employee, _version)) {
+                staff.add(employee.toString());
+            }
+        }
+        return staff;
+    }
+
+    public List<String> shiftsWithoutManagers() {
+        List<String> list = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (Shift shift : _roster.getShiftsOnDay(day)) {
+                if (contains(shift) && getManager(shift) == null) {
+                    list.add(shift.toString());
+                }
+            }
+        }
+        return list;
+    }
+
+    public List<String> understaffedShifts() {
+        return getShiftsByStaffing(true);
+    }
+
+    public List<String> overstaffedShifts() {
+        return getShiftsByStaffing(false);
+    }
+
+    /**
+     * @param understaffed true for the understaffed shifts, false for the overstaffed shifts
+     */
+    private List<String> getShiftsByStaffing(boolean understaffed) {
+        List<String> list = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (Shift shift : _roster.getShiftsOnDay(day)) {
+                if (contains(shift)) {
+                    int workersNeeded = shift.getMinWorkers() - getWorkers(shift).size();
+                    if (understaffed ? workersNeeded > 0 : workersNeeded < 0) {
+                        list.add(shift.toString());
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    public List<String> getRosterForDay(String dayOfWeek) {
+        DayOfWeek day = DayOfWeek.fromString(dayOfWeek);
+        if (day == null) {
+            return Collections.singletonList("ERROR: Day given (" + dayOfWeek + ") is invalid.");
+        }
+
+        List<String> roster = new ArrayList<>();
+        TimePeriod workingHours = _roster.getWorkingHours(day, _version);
+        if (workingHours != null) {
+            roster.add(getShopName());
+            roster.add(dayOfWeek + " " + workingHours.getTimePeriod());
+            for (Shift shift : _roster.getShiftsOnDay(day)) {
+                if (contains(shift)) {
+                    roster.add(shift.buildRosterLine(getManager(shift), getWorkers(shift)));
+                }
+            }
+        }
+        if (roster.size() <= 2) { // no working hours or no shifts
+            roster.clear();
+        }
+        return roster;
+    }
+
+    public List<String> getRosterForWorker(String workerName) {
+        return getShiftsForEmployee(workerName, false);
+    }
+
+    public List<String> getShiftsManagedBy(String managerName) {
+        return getShiftsForEmployee(managerName, true);
+    }
+
+    private List<String> getShiftsForEmployee(String name, boolean asManager) {
+        Employee employee = _roster.getEmployeeByName(name);
+        if (employee == null || employee.getVersion() > _version) {
+            return Collections.singletonList("ERROR: \"" + name + "\" is not registered.");
+        }
+        return _roster.getAssignments().getShiftsForEmployee(employee, asManager, _version);
+    }
+
+    /**
+     * @return the roster of every day, in the format of {@link ShiftMan#displayRoster()}
+     */
+    public String displayRoster() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeRoster(sb);
+        } catch (IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws IOException
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the roster of every day in the format of {@link ShiftMan#displayRoster()}
+     */
+    public void writeRoster(Appendable out) throws IOException {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            out.append(day.toString()).append('\n');
+            TimePeriod workingHours = _roster.getWorkingHours(day, _version);
+            boolean hasShifts = false;
+            if (workingHours != null) {
+                for (Shift shift : _roster.getShiftsOnDay(day)) {
+                    if (!contains(shift)) {
+                        continue;
+                    }
+                    if (!hasShifts) {
+                        out.append('\t').append(day.toString()).append(' ').append(workingHours.getTimePeriod()).append('\n');
+                        hasShifts = true;
+                    }
+                    out.append('\t').append(shift.buildRosterLine(getManager(shift), getWorkers(shift))).append('\n');
+                }
+            }
+            if (!hasShifts) {
+                out.append("\t(no shifts) \n");
+            }
+        }
+    }
+
+    /**
+     * Tells the listener about the changes that would rebuild the roster as of this snapshot, starting from an empty
+     * roster: the roster being created, the working hours in order of day, the staff in order of registration, the
+     * shifts, and then the assignments of each shift
+     */
+    public void replayTo(RosterListener listener) throws ShiftManException {
+        listener.rosterCreated(getShopName());
+        for (DayOfWeek day : DayOfWeek.values()) {
+            TimePeriod workingHours = _roster.getWorkingHours(day, _version);
+            if (workingHours != null) {
+                listener.workingHoursSet(workingHours);
+            }
+        }
+        for (Employee employee : getEmployeesByRegistration()) {
+            listener.staffRegistered(employee);
+        }
+
+        List<Shift> shifts = getAllShifts();
+        for (Shift shift : shifts) {
+            listener.shiftAdded(shift);
+        }
+        for (Shift shift : shifts) {
+            Employee manager = getManager(shift);
+            if (manager != null) {
+                listener.staffAssigned(shift, manager, true);
+            }
+            for (Employee worker : getWorkers(shift)) { // in list order, so that the workers are rebuilt in the same order
+                listener.staffAssigned(shift, worker, false);
+            }
+        }
+    }
+
+    /**
+     * @return the staff registered by the version of this snapshot, in order of registration
+     */
+    List<Employee> getEmployeesByRegistration() {
+        List<Employee> staff = new ArrayList<>();
+        for (Employee employee : _roster.getEmployeesByRegistration()) {
+            if (employee.getVersion() <= _version) {
+                staff.add(employee);
+            }
+        }
+        return staff;
+    }
+
+    /**
+     * @return the shifts added by the version of this snapshot, in chronological order
+     */
+    List<Shift> getAllShifts() {
+        List<Shift> shifts = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (Shift shift : _roster.getShiftsOnDay(day)) {
+                if (contains(shift)) {
+                    shifts.add(shift);
+                }
+            }
+        }
+        return shifts;
+    }
+
+    /**
+     * @return the shifts of the day in chronological order, including those added since the snapshot, see
+     *         {@link #contains(Shift)}
+     */
+    Collection<Shift> getShiftsOnDay(DayOfWeek day) {
+        return _roster.getShiftsOnDay(day);
+    }
+
+    /**
+     * @return true if the shift had been added by the version of this snapshot
+     */
+    boolean contains(Shift shift) {
+        return shift.getVersion() <= _version;
+    }
+
+    private boolean isAssigned(Employee employee, Shift shift) {
+        return _roster.getAssignments().getVersion(employee, shift) <= _version;
+    }
+
+    /**
+     * @return the manager of the shift as of this snapshot, or null if it had no manager
+     */
+    Employee getManager(Shift shift) {
+        Employee manager = shift.getManager();
+        return manager != null && isAssigned(manager, shift) ? manager : null;
+    }
+
+    /**
+     * @return the workers of the shift as of this snapshot, sorted by name. Workers are only ever added to a
+     *         shift, so these are the current workers less those assigned since the snapshot.
+     */
+    List<Employee> getWorkers(Shift shift) {
+        List<Employee> workers = shift.getWorkers();
+        for (int i = 0; i < workers.size(); i++) {
+            if (!isAssigned(workers.get(i), shift)) { // copy the workers assigned by this version, from here on
+                List<Employee> earlierWorkers = new ArrayList<>(workers.subList(0, i));
+                for (int j = i + 1; j < workers.size(); j++) {
+                    if (isAssigned(workers.get(j), shift)) {
+                        earlierWorkers.add(workers.get(j));
+                    }
+                }
+                return earlierWorkers;
+            }
+        }
+        return workers;
+    }
+}
@@ -0,0 +1,454 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plans assignments of staff that fill the gaps of a roster: shifts without a manager, and shifts with fewer workers
+ * than their minimum. The assignments already made are kept, and no shift is given more staff than it needs.
+ * A staff member is never given a shift they are already assigned to, a shift outside their availability, or more
+ * hours than their maximum, see {@link StaffConstraints}. The shifts of a roster never overlap each other, so a staff
+ * member is never given two shifts at the same time.
+ * <p>
+ * The plan is found by local search. A gap is filled by a staff member who can take it, and when none of the staff
+ * tried can, one who could take it if they were freed from a shift given to them earlier is moved to the gap, with
+ * someone else taking over their old shift. Several searches run in parallel from different random seeds, and the
+ * plan that leaves the fewest gaps is kept. A missing manager counts for more than a missing worker.
+ * <p>
+ * The solver works on a copy of one snapshot of the roster, taken when it is created, so the roster can still be
+ * changed while the solver runs. A planned assignment that no longer fits when the plan is applied is rejected by the
+ * roster as usual.
+ */
+public class RosterSolver {
+    private static final int MANAGER_WEIGHT = 2; // a shift without a manager counts as this many missing workers
+    private static final int SAMPLE_SIZE = 8; // staff tried for a gap before trying to free one of them up
+    private static final int MIN_STALE_STEPS = 100000; // steps without filling a gap before a search gives up
+
+    private final Shift[] _shifts; // in chronological order
+    private final int[] _lengths; // minutes of each shift
+    private final Employee[] _staff; // indexed by id
+    private final int[] _minutesLeft; // minutes each employee can still be given, after the shifts they already have
+    private final int[][] _currentStaff; // ids of the staff already assigned to each shift
+    private final boolean[] _needsManager;
+    private final int[] _workersNeeded;
+    private final int[] _anyTime; // ids of the staff who are available at any time
+    private final int[][] _available; // ids of the other staff who are available for each shift
+    private final long _seed;
+
+    /**
+     * Copies the latest version of the roster and works out which staff are available for each shift
+     * @param seed the seed of the first search, each other search uses the next seed
+     */
+    public RosterSolver(Roster roster, StaffConstraints constraints, long seed) {
+        this(roster.snapshot(), constraints, seed);
+    }
+
+    /**
+     * Copies the roster as of the snapshot and works out which staff are available for each shift
+     * @param seed the seed of the first search, each other search uses the next seed
+     */
+    public RosterSolver(RosterSnapshot snapshot, StaffConstraints constraints, long seed) {
+        // everyone assigned to a shift by the version of the snapshot was registered by that version too
+        List<Shift> shifts = snapshot.getAllShifts();
+        List<Employee> staff = snapshot.getEmployeesByRegistration();
+        _seed = seed;
+        _shifts = shifts.toArray(new Shift[shifts.size()]);
+        int staffCount = 0;
+        for (Employee employee : staff) {
+            staffCount = Math.max(staffCount, employee.getId() + 1);
+        }
+        _staff = new Employee[staffCount]; // indexed by id, null for any id not in the snapshot
+        _minutesLeft = new int[staffCount];
+        for (Employee employee : staff) {
+            _staff[employee.getId()] = employee;
+            _minutesLeft[employee.getId()] = constraints.getMaxMinutes(employee);
+        }
+
+        int count = _shifts.length;
+        _lengths = new int[count];
+        _currentStaff = new int[count][];
+        _needsManager = new boolean[count];
+        _workersNeeded = new int[count];
+        for (int s = 0; s < count; s++) {
+            Shift shift = _shifts[s];
+            Employee manager = snapshot.getManager(shift);
+            List<Employee> workers = snapshot.getWorkers(shift);
+            _lengths[s] = shift.getEndTime().getTotalMins() - shift.getStartTime().getTotalMins();
+            _needsManager[s] = manager == null;
+            _workersNeeded[s] = Math.max(0, shift.getMinWorkers() - workers.size());
+
+            IntList current = new IntList();
+            if (manager != null) {
+                current.add(manager.getId());
+            }
+            for (Employee worker : workers) {
+                current.add(worker.getId());
+            }
+            _currentStaff[s] = current.toArray();
+            for (int id : _currentStaff[s]) {
+                _minutesLeft[id] -= _lengths[s];
+            }
+        }
+
+        IntList anyTime = new IntList();
+        IntList[] available = new IntList[count];
+        for (int s = 0; s < count; s++) {
+            available[s] = new IntList();
+        }
+        for (Employee employee : staff) {
+            List<TimePeriod> periods = constraints.getAvailability(employee);
+            if (periods == null) {
+                anyTime.add(employee.getId());
+                continue;
+            }
+            for (int s = 0; s < count; s++) {
+                for (TimePeriod period : periods) {
+                    if (_shifts[s].isWithin(period)) {
+                        available[s].add(employee.getId());
+                        break;
+                    }
+                }
+            }
+        }
+        _anyTime = anyTime.toArray();
+        _available = new int[count][];
+        for (int s = 0; s < count; s++) {
+            _available[s] = available[s].toArray();
+        }
+    }
+
+    /**
+     * Runs the searches, and returns the best plan found
+     * @param timeBudgetMillis the most time the searches can take. A search stops sooner if it fills every gap that can
+     *                         be filled, if another search does, or if it goes a long time without filling a gap.
+     * @param threads the number of searches to run in parallel, eg. the number of cores
+     */
+    public RosterPlan solve(long timeBudgetMillis, int threads) throws InterruptedException {
+        long deadline = System.nanoTime() + timeBudgetMillis * 1000000;
+        AtomicBoolean solved = new AtomicBoolean();
+        List<Search> searches = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            searches.add(new Search(new Random(_seed + i), deadline, solved));
+        }
+
+        if (threads == 1) {
+            searches.get(0).run();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>(threads);
+                for (Search search : searches) {
+                    futures.add(executor.submit(search));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Roster search failed", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        Search best = searches.get(0);
+        for (Search search : searches) {
+            if (search._cost < best._cost) {
+                best = search;
+            }
+        }
+        return best.toPlan();
+    }
+
+    /**
+     * One search for a plan, with its own copy of the state of the roster. A gap to fill is a slot: the index of the
+     * shift shifted left by one, with the lowest bit set if the slot is for the manager of the shift.
+     */
+    private class Search implements Runnable {
+        private final Random _random;
+        private final long _deadline;
+        private final AtomicBoolean _solved;
+        private final int[] _minutesLeft;
+        private final int[] _manager; // id of the manager given to each shift, -1 if none
+        private final int[][] _workers; // ids of the workers given to each shift
+        private final int[] _workerCount;
+        private final IntList[] _given; // slots given to each employee, null if none yet
+        private final IntList _gaps; // shifts with a gap that may be filled
+        private final int[] _gapIndex; // index of each shift in _gaps, -1 if it is not there
+        private int _cost; // number of missing workers, plus MANAGER_WEIGHT for each missing manager
+
+        private Search(Random random, long deadline, AtomicBoolean solved) {
+            _random = random;
+            _deadline = deadline;
+            _solved = solved;
+            _minutesLeft = RosterSolver.this._minutesLeft.clone();
+            _manager = new int[_shifts.length];
+            _workers = new int[_shifts.length][];
+            _workerCount = new int[_shifts.length];
+            _given = new IntList[_staff.length];
+            _gaps = new IntList();
+            _gapIndex = new int[_shifts.length];
+            for (int s = 0; s < _shifts.length; s++) {
+                _manager[s] = -1;
+                _workers[s] = new int[_workersNeeded[s]];
+                _gapIndex[s] = -1;
+                _cost += (_needsManager[s] ? MANAGER_WEIGHT : 0) + _workersNeeded[s];
+                if (_anyTime.length + _available[s].length > 0) { // no one can fill the gaps of a shift no one is available for
+                    updateGap(s);
+                }
+            }
+        }
+
+        public void run() {
+            long staleLimit = MIN_STALE_STEPS + 10L * _shifts.length;
+            long stale = 0;
+            for (int step = 0; !_gaps.isEmpty() && stale < staleLimit; step++) {
+                if ((step & 0xFF) == 0 && (System.nanoTime() - _deadline > 0 || _solved.get())) {
+                    return;
+                }
+                stale = step() ? 0 : stale + 1;
+            }
+            if (_gaps.isEmpty()) {
+                _solved.set(true);
+            }
+        }
+
+        /**
+         * Tries to fill a gap picked at random
+         * @return true if the gap was filled
+         */
+        private boolean step() {
+            int shift = _gaps.get(_random.nextInt(_gaps.size()));
+            int slot = gapSlot(shift);
+            int blocked = -1; // one of the staff tried who could take the gap if freed from another shift
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                int employee = pickAvailable(shift);
+                if (isOn(employee, shift)) {
+                    continue;
+                }
+                if (_minutesLeft[employee] >= _lengths[shift]) {
+                    give(employee, slot);
+                    return true;
+                }
+                if (_given[employee] != null && !_given[employee].isEmpty()) {
+                    blocked = employee;
+                }
+            }
+            return blocked >= 0 && moveToGap(blocked, slot);
+        }
+
+        /**
+         * Frees the employee from one of the slots given to them and gives them the gap instead, as long as that frees
+         * enough of their time and either someone else can take over their old slot, or the gap is a manager's slot
+         * and the old slot is a worker's, so that the roster is still better off
+         * @return true if the gap was filled
+         */
+        private boolean moveToGap(int employee, int slot) {
+            IntList given = _given[employee];
+            int oldSlot = given.get(_random.nextInt(given.size()));
+            int oldShift = oldSlot >> 1;
+            if (_minutesLeft[employee] + _lengths[oldShift] < _lengths[slot >> 1]) {
+                return false;
+            }
+
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                int other = pickAvailable(oldShift);
+                if (other != employee && !isOn(other, oldShift) && _minutesLeft[other] >= _lengths[oldShift]) {
+                    take(employee, oldSlot);
+                    give(other, oldSlot);
+                    give(employee, slot);
+                    return true;
+                }
+            }
+            if ((slot & 1) > (oldSlot & 1)) {
+                take(employee, oldSlot);
+                give(employee, slot);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the id of a staff member picked at random from those available for the shift
+         */
+        private int pickAvailable(int shift) {
+            int[] available = _available[shift];
+            int index = _random.nextInt(available.length + _anyTime.length);
+            return index < available.length ? available[index] : _anyTime[index - available.length];
+        }
+
+        /**
+         * @return the slot of the shift to fill next, the manager before the workers, or -1 if the shift has no gap
+         */
+        private int gapSlot(int shift) {
+            if (_needsManager[shift] && _manager[shift] < 0) {
+                return shift << 1 | 1;
+            } else if (_workerCount[shift] < _workersNeeded[shift]) {
+                return shift << 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Checks if the employee is already assigned to the shift, in the roster or by this search
+         */
+        private boolean isOn(int employee, int shift) {
+            if (_manager[shift] == employee) {
+                return true;
+            }
+            for (int id : _currentStaff[shift]) {
+                if (id == employee) {
+                    return true;
+                }
+            }
+            int[] workers = _workers[shift];
+            for (int i = 0; i < _workerCount[shift]; i++) {
+                if (workers[i] == employee) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void give(int employee, int slot) {
+            int shift = slot >> 1;
+            if ((slot & 1) != 0) {
+                _manager[shift] = employee;
+                _cost -= MANAGER_WEIGHT;
+            } else {
+                _workers[shift][_workerCount[shift]++] = employee;
+                _cost--;
+            }
+            _minutesLeft[employee] -= _lengths[shift];
+            if (_given[employee] == null) {
+                _given[employee] = new IntList();
+            }
+            _given[employee].add(slot);
+            updateGap(shift);
+        }
+
+        private void take(int employee, int slot) {
+            int shift = slot >> 1;
+            if ((slot & 1) != 0) {
+                _manager[shift] = -1;
+                _cost += MANAGER_WEIGHT;
+            } else {
+                int[] workers = _workers[shift];
+                int last = --_workerCount[shift];
+                for (int i = 0; i < last; i++) {
+                    if (workers[i] == employee) {
+                        workers[i] = workers[last];
+                        break;
+                    }
+                }
+                _cost++;
+            }
+            _minutesLeft[employee] += _lengths[shift];
+            _given[employee].remove(slot);
+            updateGap(shift);
+        }
+
+        /**
+         * Adds the shift to the gaps or removes it, depending on whether it has a gap now
+         */
+        private void updateGap(int shift) {
+            boolean hasGap = gapSlot(shift) >= 0;
+            int index = _gapIndex[shift];
+            if (hasGap && index < 0) {
+                _gapIndex[shift] = _gaps.size();
+                _gaps.add(shift);
+            } else if (!hasGap && index >= 0) {
+                int moved = _gaps.removeAt(index);
+                if (moved != shift) {
+                    _gapIndex[moved] = index;
+                }
+                _gapIndex[shift] = -1;
+            }
+        }
+
+        private RosterPlan toPlan() {
+            List<String[]> assignments = new ArrayList<>();
+            int shiftsWithoutManager = 0;
+            int workersMissing = 0;
+            for (int s = 0; s < _shifts.length; s++) {
+                if (_manager[s] >= 0) {
+                    assignments.add(toRow(_shifts[s], _staff[_manager[s]], true));
+                } else if (_needsManager[s]) {
+                    shiftsWithoutManager++;
+                }
+                for (int i = 0; i < _workerCount[s]; i++) {
+                    assignments.add(toRow(_shifts[s], _staff[_workers[s][i]], false));
+                }
+                workersMissing += _workersNeeded[s] - _workerCount[s];
+            }
+            return new RosterPlan(assignments, shiftsWithoutManager, workersMissing);
+        }
+
+        private String[] toRow(Shift shift, Employee employee, boolean isManager) {
+            return new String[] { shift.getDay().toString(), shift.getStartTime().toString(), shift.getEndTime().toString(),
+                    employee.getGivenName(), employee.getFamilyName(), Boolean.toString(isManager) };
+        }
+    }
+
+    /**
+     * A growable list of ints, without boxing
+     */
+    private static class IntList {
+        private int[] _values = new int[4];
+        private int _size;
+
+        private void add(int value) {
+            if (_size == _values.length) {
+                int[] larger = new int[_size * 2];
+                System.arraycopy(_values, 0, larger, 0, _size);
+                _values = larger;
+            }
+            _values[_size++] = value;
+        }
+
+        private int get(int index) {
+            return _values[index];
+        }
+
+        private int size() {
+            return _size;
+        }
+
+        private boolean isEmpty() {
+            return _size == 0;
+        }
+
+        /**
+         * Removes the value at the index by moving the last value into its place
+         * @return the value moved into the index, which is the value removed if it was the last
+         */
+        private int removeAt(int index) {
+            int last = _values[--_size];
+            _values[index] = last;
+            return last;
+        }
+
+        /**
+         * Removes the first occurrence of the value, without keeping the order of the other values
+         */
+        private void remove(int value) {
+            for (int i = 0; i < _size; i++) {
+                if (_values[i] == value) {
+                    removeAt(i);
+                    return;
+                }
+            }
+        }
+
+        private int[] toArray() {
+            int[] values = new int[_size];
+            System.arraycopy(_values, 0, values, 0, _size);
+            return values;
+        }
+    }
+}
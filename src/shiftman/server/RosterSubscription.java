@@ -0,0 +1,78 @@
+package shiftman.server;
+
+import java.util.List;
+
+/**
+ * A subscription to the changes made to the roster of a server, see {@link ShiftManServer#subscribe()}. The
+ * subscription starts with a snapshot of the roster, and its events are the changes made after that snapshot, in
+ * order of version, so a subscriber can keep its own copy of the roster up to date by applying the events rather
+ * than querying the whole roster again.
+ * <p>
+ * The events are kept in a bounded ring buffer shared by all subscribers, and each subscription only has its own
+ * cursor: the version of the last change it has received in full. A subscriber that falls more than the size of the
+ * buffer behind, or whose roster is replaced by a new roster, must subscribe again and start over from a new snapshot.
+ * A subscription must only be polled by one thread at a time.
+ */
+public class RosterSubscription {
+    private final ShiftManServer _server;
+    private final Roster _roster;
+    private final RosterEventRing _events;
+    private final RosterSnapshot _snapshot;
+    private long _cursor; // version of the last change received in full
+    private int _received; // number of events of the next change already received
+    private boolean _ended;
+
+    RosterSubscription(ShiftManServer server, Roster roster, RosterEventRing events, RosterSnapshot snapshot) {
+        _server = server;
+        _roster = roster;
+        _events = events;
+        _snapshot = snapshot;
+        _cursor = snapshot.getVersion();
+    }
+
+    /**
+     * @return the roster as it was when the subscription started. The first event follows on from this version.
+     */
+    public RosterSnapshot getSnapshot() {
+        return _snapshot;
+    }
+
+    /**
+     * Adds the events published since the last poll to the list, in order of version. Never blocks.
+     * @param maxEvents the most events to add
+     * @return the number of events added, or -1 if the subscription has ended because the subscriber fell too far
+     *         behind or the roster was replaced, in which case the subscriber must subscribe again
+     */
+    public int poll(List<RosterEvent> events, int maxEvents) {
+        if (_ended || _server.roster != _roster) {
+            _ended = true;
+            return -1;
+        }
+
+        long published = _roster.getPublishedVersion();
+        int count = 0;
+        while (_cursor < published && count < maxEvents) {
+            RosterEvent[] change = _events.get(_cursor + 1);
+            if (change == null) { // overwritten by a later change
+                _ended = true;
+                return -1;
+            }
+            while (_received < change.length && count < maxEvents) {
+                events.add(change[_received++]);
+                count++;
+            }
+            if (_received == change.length) {
+                _cursor++;
+                _received = 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of changes published that have not been received in full yet
+     */
+    public long getPending() {
+        return _roster.getPublishedVersion() - _cursor;
+    }
+}
@@ -0,0 +1,187 @@
+package shiftman.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes rosters to a channel in a compact binary format, to move them between processes or archive them.
+ * It is a {@link RosterListener}, so a whole roster is written with {@link Roster#replayTo(RosterListener)}, see
+ * {@link #write(Roster)}. Several rosters can be written one after the other to the same channel, eg. one per week.
+ * <p>
+ * Each roster starts with a header: magic number (int) and format version (short). The header is followed by records,
+ * each of which is the record type (byte) followed by its values, and the roster ends with an END record.
+ * Employees and shifts are numbered from 0 in the order their records are written, and assignments refer to them by
+ * those numbers rather than repeating their names and times. Time periods are written as the packed int of
+ * {@link TimePeriod#getKey()}, numbers as variable-length ints (7 bits per byte, lowest bits first), and strings as
+ * the number of UTF-8 bytes followed by the bytes.
+ * <p>
+ * Records are buffered and written to the channel whenever the buffer is full, so the size of a roster does not affect
+ * the memory used to write it.
+ */
+public class RosterWriter implements RosterListener {
+    static final int MAGIC = 0x52535458; // "RSTX"
+    static final short VERSION = 1;
+
+    static final byte END = 0;
+    static final byte SHOP = 1; // shop name
+    static final byte WORKING_HOURS = 2; // period
+    static final byte EMPLOYEE = 3; // given name, family name
+    static final byte SHIFT = 4; // period, minimum workers
+    static final byte MANAGER = 5; // shift number, employee number
+    static final byte WORKER = 6; // shift number, employee number
+
+    private static final int MAX_VAR_INT_SIZE = 5;
+
+    private final WritableByteChannel _channel;
+    private final ByteBuffer _buffer;
+    private final Map<Employee, Integer> _employeeNumbers; // employees of the current roster, by number
+    private final Map<Shift, Integer> _shiftNumbers; // shifts of the current roster, by number
+    private IOException _failure; // set if writing to the channel failed, after which nothing more is written
+
+    public RosterWriter(WritableByteChannel channel) {
+        _channel = channel;
+        _buffer = ByteBuffer.allocate(64 * 1024);
+        _employeeNumbers = new HashMap<>();
+        _shiftNumbers = new HashMap<>();
+    }
+
+    /**
+     * Writes the latest version of the given roster and then flushes it to the channel. The roster may change while it
+     * is written, see {@link Roster#snapshot()}.
+     */
+    public void write(Roster roster) throws IOException {
+        write(roster.snapshot());
+    }
+
+    /**
+     * Writes the whole of the given snapshot of a roster and then flushes it to the channel
+     */
+    public void write(RosterSnapshot snapshot) throws IOException {
+        try {
+            snapshot.replayTo(this);
+        } catch (ShiftManException e) {
+            throw new IOException("Roster could not be written: " + e.getMessage(), e);
+        }
+        end();
+        flush();
+    }
+
+    /**
+     * Starts a new roster, so that the numbering of employees and shifts starts again
+     */
+    @Override
+    public void rosterCreated(String shopName) {
+        _employeeNumbers.clear();
+        _shiftNumbers.clear();
+        ensureRoom(4 + 2 + 1);
+        _buffer.putInt(MAGIC).putShort(VERSION).put(SHOP);
+        putString(shopName);
+    }
+
+    @Override
+    public void workingHoursSet(TimePeriod workingHours) {
+        ensureRoom(1 + 4);
+        _buffer.put(WORKING_HOURS).putInt(workingHours.getKey());
+    }
+
+    @Override
+    public void staffRegistered(Employee employee) {
+        _employeeNumbers.put(employee, _employeeNumbers.size());
+        ensureRoom(1);
+        _buffer.put(EMPLOYEE);
+        putString(employee.getGivenName());
+        putString(employee.getFamilyName());
+    }
+
+    @Override
+    public void shiftAdded(Shift shift) {
+        _shiftNumbers.put(shift, _shiftNumbers.size());
+        ensureRoom(1 + 4 + MAX_VAR_INT_SIZE);
+        _buffer.put(SHIFT).putInt(shift.getKey());
+        putVarInt(shift.getMinWorkers());
+    }
+
+    @Override
+    public void staffAssigned(Shift shift, Employee employee, boolean isManager) throws ShiftManException {
+        Integer shiftNumber = _shiftNumbers.get(shift);
+        Integer employeeNumber = _employeeNumbers.get(employee);
+        if (shiftNumber == null || employeeNumber == null) {
+            throw new ShiftManException("ERROR: " + employee + " is assigned to " + shift + " before both are written");
+        }
+
+        ensureRoom(1 + 2 * MAX_VAR_INT_SIZE);
+        _buffer.put(isManager ? MANAGER : WORKER);
+        putVarInt(shiftNumber);
+        putVarInt(employeeNumber);
+    }
+
+    /**
+     * Ends the current roster
+     */
+    public void end() {
+        ensureRoom(1);
+        _buffer.put(END);
+    }
+
+    /**
+     * Writes everything buffered so far to the channel
+     * @throws IOException if writing to the channel failed, now or at any earlier time
+     */
+    public void flush() throws IOException {
+        drain();
+        if (_failure != null) {
+            throw _failure;
+        }
+    }
+
+    private void putVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            _buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        _buffer.put((byte) value);
+    }
+
+    /**
+     * Puts a string into the buffer. Long strings are written to the channel in parts as the buffer fills up.
+     */
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureRoom(MAX_VAR_INT_SIZE);
+        putVarInt(bytes.length);
+
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensureRoom(1);
+            int length = Math.min(_buffer.remaining(), bytes.length - offset);
+            _buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensureRoom(int bytes) {
+        if (_buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffer to the channel. Listener methods cannot throw an IOException, so a failure is kept and thrown
+     * by the next {@link #flush()}.
+     */
+    private void drain() {
+        _buffer.flip();
+        try {
+            while (_failure == null && _buffer.hasRemaining()) {
+                _channel.write(_buffer);
+            }
+        } catch (IOException e) {
+            _failure = e;
+        }
+        _buffer.clear();
+    }
+}
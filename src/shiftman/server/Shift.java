@@ -1,37 +1,82 @@
 package shiftman.server;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class Shift extends TimePeriod {
-    private Employee _manager;
-    private EmployeeRepository _workers;
-    private int _minWorkers;
+    private volatile Staffing _staffing; // replaced whenever the manager or workers of the shift change
+    private final int _minWorkers;
+    private long _version; // version of the roster the shift was added in, see Roster#snapshot()
 
     /**
      * Creates a new shift with the given parameters. Calls the parent class to set the time period of the shift
      */
     public Shift(String dayOfWeek, String startTime, String endTime, String minimumWorkers) {
         super(dayOfWeek, startTime, endTime);
-        _workers = new EmployeeRepository();
+        _staffing = new Staffing(null, Collections.<Employee>emptyList());
+        _minWorkers = Integer.parseInt(minimumWorkers);
+    }
+
+    /**
+     * Creates a new shift for a time period that has already been parsed, eg. shared by the rows of a batch
+     */
+    Shift(TimePeriod period, String minimumWorkers) {
+        super(period);
+        _staffing = new Staffing(null, Collections.<Employee>emptyList());
         _minWorkers = Integer.parseInt(minimumWorkers);
     }
 
+    public int getMinWorkers() {
+        return _minWorkers;
+    }
+
+    /**
+     * @return the version of the roster in which the shift was added. Snapshots of earlier versions do not include
+     *         the shift.
+     */
+    public long getVersion() {
+        return _version;
+    }
+
+    public void setVersion(long version) {
+        _version = version;
+    }
+
     public void setManager(Employee manager) {
-        _manager = manager;
+        _staffing = new Staffing(manager, _staffing._workers);
     }
 
     public Employee getManager() {
-        return _manager;
+        return _staffing._manager;
     }
 
+    /**
+     * Adds a worker to the shift. The workers are copied into a new list rather than changed in place, so that
+     * anyone reading the workers of the shift at the same time sees a consistent list.
+     */
     public void assignWorker(Employee worker) {
-        _workers.add(worker);
+        Staffing staffing = _staffing;
+        List<Employee> workers = new ArrayList<>(staffing._workers.size() + 1);
+        workers.addAll(staffing._workers);
+
+        int index = workers.size();
+        while (index > 0 && workers.get(index - 1).compareTo(worker) > 0) { // insert after workers with the same name
+            index--;
+        }
+        workers.add(index, worker);
+        _staffing = new Staffing(staffing._manager, Collections.unmodifiableList(workers));
     }
 
     public boolean hasWorkers() {
-        return _workers.size() != 0;
+        return !_staffing._workers.isEmpty();
     }
 
-    public EmployeeRepository getWorkers() {
-        return _workers;
+    /**
+     * @return an unmodifiable list of the workers assigned to the shift, sorted by family name and then given name
+     */
+    public List<Employee> getWorkers() {
+        return _staffing._workers;
     }
 
     /**
@@ -42,6 +87,63 @@ public class Shift extends TimePeriod {
      *         Negative number means the shift is overstaffed
      */
     public int workersNeeded() {
-        return _minWorkers - _workers.size();
+        return _minWorkers - _staffing._workers.size();
+    }
+
+    /**
+     * Gets the line describing the shift in the roster for a day, in the format described by
+     * {@link ShiftMan#getRosterForDay(String)}. The line is built once and reused until the staff of the shift change.
+     */
+    public String getRosterLine() {
+        Staffing staffing = _staffing;
+        String rosterLine = staffing._rosterLine;
+        if (rosterLine == null) {
+            rosterLine = buildRosterLine(staffing._manager, staffing._workers);
+            staffing._rosterLine = rosterLine;
+        }
+        return rosterLine;
+    }
+
+    /**
+     * Builds the roster line of the shift with the given staff, which may be the staff of the shift at an earlier
+     * version of the roster
+     * @param manager the manager, or null if the shift has no manager
+     * @param workers the workers, sorted by family name and then given name
+     */
+    public String buildRosterLine(Employee manager, List<Employee> workers) {
+        String managerName;
+        if (manager != null) {
+            managerName = " Manager:" + manager.getFamilyFirstName();
+        } else {
+            managerName = " [No manager assigned]";
+        }
+
+        if (!workers.isEmpty()) {
+            return this + managerName + " " + workers;
+        } else {
+            return this + managerName + " " + "[No workers assigned]";
+        }
+    }
+
+    /**
+     * Discards the cached roster line, to save memory while the roster is not being used
+     */
+    public void clearCachedRosterLine() {
+        _staffing._rosterLine = null;
+    }
+
+    /**
+     * The manager and workers of a shift at one point in time. Never changed once created, apart from caching the
+     * roster line, so that the manager and workers are always read consistently with each other.
+     */
+    private static class Staffing {
+        private final Employee _manager;
+        private final List<Employee> _workers;
+        private String _rosterLine; // built on first use
+
+        private Staffing(Employee manager, List<Employee> workers) {
+            _manager = manager;
+            _workers = workers;
+        }
     }
 }
@@ -1,11 +1,22 @@
 package shiftman.server;
 
 /**
- * Exception class for generic errors in the Shift Manager
+ * Exception class for generic errors in the Shift Manager. Each error has the {@link ErrorCategory} it was raised
+ * with, so that it can be counted without parsing its message.
  */
 public class ShiftManException extends Exception {
+    private final ErrorCategory _category;
 
     public ShiftManException(String message) {
+        this(ErrorCategory.INVALID_INPUT, message);
+    }
+
+    public ShiftManException(ErrorCategory category, String message) {
         super(message);
+        _category = category;
+    }
+
+    public ErrorCategory getCategory() {
+        return _category;
     }
 }
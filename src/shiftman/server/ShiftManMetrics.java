@@ -0,0 +1,162 @@
+package shiftman.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the requests made to a ShiftMan server: the number of calls to each operation, the number that failed in
+ * each {@link ErrorCategory}, and a histogram of how long they took. The size of the roster is read from the server
+ * whenever it is asked for. The metrics are recorded by {@link InstrumentedShiftMan}, and can be read either through
+ * {@link #getOperations()} or over JMX once {@link #register(String)} has been called.
+ */
+public class ShiftManMetrics implements ShiftManMetricsMXBean {
+
+    /**
+     * The operations of {@link ShiftMan}, named after its methods
+     */
+    public enum Operation {
+        newRoster, setWorkingHours, addShift, registerStaff, assignStaff, getRegisteredStaff, getUnassignedStaff,
+        shiftsWithoutManagers, understaffedShifts, overstaffedShifts, getRosterForDay, getRosterForWorker,
+        getShiftsManagedBy, reportRosterIssues, displayRoster
+    }
+
+    private final ShiftManServer _server;
+    private final Map<Operation, OperationMetrics> _operations; // never changed after construction
+    private volatile boolean _enabled;
+    private ObjectName _objectName; // null if not registered with JMX, guarded by this
+
+    public ShiftManMetrics(ShiftManServer server) {
+        _server = server;
+        _operations = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            _operations.put(operation, new OperationMetrics());
+        }
+        _enabled = true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    /**
+     * Records a call to an operation
+     * @param startNanos the value of System.nanoTime() when the call started
+     * @param error the category of the error the call failed with, or null if it succeeded
+     */
+    public void record(Operation operation, long startNanos, ErrorCategory error) {
+        long nanos = System.nanoTime() - startNanos;
+        OperationMetrics metrics = _operations.get(operation);
+        metrics._calls.increment();
+        if (error != null) {
+            metrics._errors[error.ordinal()].increment();
+        }
+        metrics._latency.record(nanos);
+    }
+
+    @Override
+    public int getStaffCount() {
+        return _server.getStaffCount();
+    }
+
+    @Override
+    public int getShiftCount() {
+        return _server.getShiftCount();
+    }
+
+    @Override
+    public int getAssignmentCount() {
+        return _server.getAssignmentCount();
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> operations = new ArrayList<>(_operations.size());
+        for (Map.Entry<Operation, OperationMetrics> entry : _operations.entrySet()) {
+            operations.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        return operations;
+    }
+
+    /**
+     * @return the metrics of one operation
+     */
+    public OperationStats getOperation(Operation operation) {
+        return _operations.get(operation).snapshot(operation);
+    }
+
+    /**
+     * Clears the counts and latencies of all the operations. Calls in progress may be recorded before or after the reset.
+     */
+    @Override
+    public void reset() {
+        for (OperationMetrics metrics : _operations.values()) {
+            metrics._calls.reset();
+            for (LongAdder errors : metrics._errors) {
+                errors.reset();
+            }
+            metrics._latency.reset();
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, as shiftman:type=ShiftManMetrics,name=(name)
+     * @param name the name of the server, eg. the name of the shop
+     */
+    public synchronized void register(String name) throws JMException {
+        if (_objectName != null) {
+            throw new IllegalStateException("Already registered as " + _objectName);
+        }
+        ObjectName objectName = new ObjectName("shiftman:type=ShiftManMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        _objectName = objectName;
+    }
+
+    public synchronized void unregister() throws JMException {
+        if (_objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(_objectName);
+            _objectName = null;
+        }
+    }
+
+    /**
+     * The metrics of one operation, updated by many threads at once
+     */
+    private static class OperationMetrics {
+        private final LongAdder _calls;
+        private final LongAdder[] _errors; // indexed by the ordinal of the category
+        private final LatencyHistogram _latency;
+
+        private OperationMetrics() {
+            _calls = new LongAdder();
+            _errors = new LongAdder[ErrorCategory.values().length];
+            for (int i = 0; i < _errors.length; i++) {
+                _errors[i] = new LongAdder();
+            }
+            _latency = new LatencyHistogram();
+        }
+
+        private OperationStats snapshot(Operation operation) {
+            Map<String, Long> errors = new LinkedHashMap<>();
+            for (ErrorCategory category : ErrorCategory.values()) {
+                long count = _errors[category.ordinal()].sum();
+                if (count > 0) {
+                    errors.put(category.name(), count);
+                }
+            }
+            return new OperationStats(operation.name(), _calls.sum(), errors, _latency.snapshot());
+        }
+    }
+}
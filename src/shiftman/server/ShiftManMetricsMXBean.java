@@ -0,0 +1,32 @@
+package shiftman.server;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link ShiftManMetrics}, through which the metrics of a ShiftMan can be read over JMX
+ */
+public interface ShiftManMetricsMXBean {
+
+    boolean isEnabled();
+
+    /**
+     * Turns recording on or off. While off, requests are passed straight to the server and not timed.
+     */
+    void setEnabled(boolean enabled);
+
+    int getStaffCount();
+
+    int getShiftCount();
+
+    int getAssignmentCount();
+
+    /**
+     * @return the metrics of each operation, in the order the operations are declared in {@link ShiftMan}
+     */
+    List<OperationStats> getOperations();
+
+    /**
+     * Clears the counts and latencies of all the operations
+     */
+    void reset();
+}
@@ -0,0 +1,229 @@
+package shiftman.server;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary protocol spoken between {@link ShiftManService} and its clients.
+ * <p>
+ * Every message is a frame: the length of the rest of the frame (int), the request id (int), and then the body. The
+ * body of a request is the operation (byte) followed by its arguments. The body of a response is the kind of result
+ * (byte), {@link #STATUS} or {@link #LIST}, followed by the status string or the list of strings. Strings are
+ * the number of UTF-8 bytes (varint) followed by the bytes, lists are the number of strings (varint) followed by the
+ * strings, and booleans are one byte. The rows of a batch are the number of rows (varint) and then each row as a list.
+ * <p>
+ * A client may send any number of requests without waiting for the responses (pipelining). The responses to the
+ * requests sent on one connection come back in the order the requests were sent, each with the id of its request.
+ */
+public final class ShiftManProtocol {
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    public static final int FRAME_HEADER_SIZE = 4 + 4; // length, request id
+
+    // operations, with their arguments
+    public static final byte NEW_ROSTER = 1; // shop name
+    public static final byte SET_WORKING_HOURS = 2; // day, start time, end time
+    public static final byte ADD_SHIFT = 3; // day, start time, end time, minimum workers
+    public static final byte REGISTER_STAFF = 4; // given name, family name
+    public static final byte ASSIGN_STAFF = 5; // day, start time, end time, given name, family name, is manager (boolean)
+    public static final byte GET_REGISTERED_STAFF = 6;
+    public static final byte GET_UNASSIGNED_STAFF = 7;
+    public static final byte SHIFTS_WITHOUT_MANAGERS = 8;
+    public static final byte UNDERSTAFFED_SHIFTS = 9;
+    public static final byte OVERSTAFFED_SHIFTS = 10;
+    public static final byte GET_ROSTER_FOR_DAY = 11; // day
+    public static final byte GET_ROSTER_FOR_WORKER = 12; // worker name
+    public static final byte GET_SHIFTS_MANAGED_BY = 13; // manager name
+    public static final byte REPORT_ROSTER_ISSUES = 14;
+    public static final byte DISPLAY_ROSTER = 15;
+    public static final byte ADD_SHIFTS_BATCH = 16; // rows
+    public static final byte REGISTER_STAFF_BATCH = 17; // rows
+    public static final byte ASSIGN_STAFF_BATCH = 18; // rows
+
+    // kinds of result
+    public static final byte STATUS = 0;
+    public static final byte LIST = 1;
+
+    private ShiftManProtocol() {
+    }
+
+    /**
+     * Starts a frame in the buffer, leaving space for its length
+     * @return the position of the start of the frame, to pass to {@link #endFrame(ByteBuffer, int)}
+     */
+    public static int beginFrame(ByteBuffer buffer, int requestId) {
+        int start = buffer.position();
+        buffer.putInt(0).putInt(requestId);
+        return start;
+    }
+
+    /**
+     * Fills in the length of the frame that starts at the given position
+     */
+    public static void endFrame(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    /**
+     * Checks if the buffer holds a whole frame, starting at its position
+     * @return the length of the frame, not counting the length itself, or -1 if the frame is not complete
+     * @throws IOException if the frame is too long or too short
+     */
+    public static int frameLength(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 4) {
+            return -1;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < 4 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        return buffer.remaining() - 4 >= length ? length : -1;
+    }
+
+    /**
+     * Gets a buffer with room for the given number of bytes after its position, copying the buffer into a larger one
+     * if there is not enough room
+     */
+    public static ByteBuffer ensureRoom(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * @return the most bytes the given string can take when written by {@link #putString(ByteBuffer, String)}
+     */
+    public static int maxSize(String value) {
+        return 5 + value.length() * 3;
+    }
+
+    public static int maxSize(List<String> values) {
+        int size = 5;
+        for (String value : values) {
+            size += maxSize(value);
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes the given string takes when written by {@link #putString(ByteBuffer, String)}
+     */
+    public static long size(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++; // written as '?'
+            } else {
+                length += 3;
+            }
+        }
+        return varIntSize(length) + length;
+    }
+
+    /**
+     * @return the number of bytes the given strings take when written by {@link #putStrings(ByteBuffer, List)}
+     */
+    public static long size(List<String> values) {
+        long size = varIntSize(values.size());
+        for (String value : values) {
+            size += size(value);
+        }
+        return size;
+    }
+
+    private static int varIntSize(long value) {
+        int size = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static void putStrings(ByteBuffer buffer, List<String> values) {
+        putVarInt(buffer, values.size());
+        for (String value : values) {
+            putString(buffer, value);
+        }
+    }
+
+    public static int getVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    /**
+     * @throws BufferUnderflowException if the string runs past the end of the buffer
+     */
+    public static String getString(ByteBuffer buffer) throws IOException {
+        int length = getVarInt(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public static List<String> getStrings(ByteBuffer buffer) throws IOException {
+        int count = getVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) { // each string takes at least one byte
+            throw new BufferUnderflowException();
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(getString(buffer));
+        }
+        return values;
+    }
+
+    public static List<String[]> getRows(ByteBuffer buffer) throws IOException {
+        int count = getVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        List<String[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<String> row = getStrings(buffer);
+            rows.add(row.toArray(new String[row.size()]));
+        }
+        return rows;
+    }
+}
@@ -1,189 +1,792 @@
 package shiftman.server;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ShiftManServer implements ShiftMan {
-    Roster roster;
+    private static final ThreadLocal<ErrorCategory[]> ERROR_RECORDER = new ThreadLocal<>(); // see recordErrors()
+
+    volatile Roster roster;
+    private final EmployeeTable _employeeTable;
+    private volatile RosterListener _rosterListener; // null if there is no listener
+    private volatile RosterIssueReport _issueReport; // report of the last roster analysed, null if none yet
+
+    public ShiftManServer() {
+        this(new EmployeeTable());
+    }
+
+    /**
+     * Creates a server that creates its employees from the given table, which may be shared with other servers
+     */
+    ShiftManServer(EmployeeTable employeeTable) {
+        _employeeTable = employeeTable;
+    }
+
+    /**
+     * Sets the listener to be told about every change made to the rosters of this server from now on
+     * @param listener the listener, or null to remove the current listener
+     */
+    void setRosterListener(RosterListener listener) {
+        _rosterListener = listener;
+        Roster current = roster;
+        if (current != null) {
+            current.setListener(listener);
+        }
+    }
 
     public String newRoster(String shopName) {
         if (shopName == null || shopName.isEmpty()) {
-            return "ERROR: Cannot create a new roster due to invalid shop name.";
+            return error(ErrorCategory.INVALID_INPUT, "ERROR: Cannot create a new roster due to invalid shop name.");
+        }
+
+        return installRoster(new Roster(shopName));
+    }
+
+    /**
+     * Replaces the current roster with the given roster. The listener, if any, is told about the whole of the new
+     * roster, as if it had been created from scratch.
+     * @return an empty string, or an error if the listener rejected the roster
+     */
+    String installRoster(Roster newRoster) {
+        RosterListener listener = _rosterListener;
+        try {
+            if (listener != null) {
+                newRoster.replayTo(listener);
+            }
+        } catch (ShiftManException e) {
+            return error(e);
+        }
+        newRoster.setListener(listener);
+        roster = newRoster;
+        return "";
+    }
+
+    /**
+     * Takes a snapshot of the current roster, which can be queried without locks and always gives the same results
+     * however the roster changes afterwards, see {@link RosterSnapshot}
+     * @return the snapshot, or null if no roster has been created
+     */
+    public RosterSnapshot getSnapshot() {
+        Roster current = roster;
+        return current != null ? current.snapshot() : null;
+    }
+
+    /**
+     * Subscribes to the changes made to the current roster from now on, so that a copy of the roster can be kept up
+     * to date from the changes instead of querying the whole roster again, see {@link RosterSubscription}
+     * @return the subscription, starting with a snapshot of the roster, or null if no roster has been created
+     */
+    public RosterSubscription subscribe() {
+        Roster current = roster;
+        if (current == null) {
+            return null;
         }
-        roster = new Roster(shopName);
+        RosterSnapshot snapshot = current.startEvents();
+        return new RosterSubscription(this, current, current.getEvents(), snapshot);
+    }
+
+    /**
+     * Writes the current roster to the given channel in the binary format of {@link RosterWriter}. The roster is
+     * written as of one version, see {@link Roster#snapshot()}, so changes made while it is written are left out.
+     * @return an empty string, or an error if no roster has been created
+     * @throws IOException if the roster cannot be written to the channel
+     */
+    public String exportRoster(WritableByteChannel channel) throws IOException {
+        Roster current = roster;
+        if (current == null) {
+            return error(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        new RosterWriter(channel).write(current);
         return "";
     }
 
+    /**
+     * Reads a roster written by {@link #exportRoster(WritableByteChannel)} from the given channel and makes it the
+     * current roster. The roster is rebuilt and checked before it replaces the current roster, so the current roster
+     * is kept if the roster cannot be read.
+     * @return an empty string, or an error if the channel holds no roster
+     * @throws IOException if the channel cannot be read or does not hold a valid roster
+     */
+    public String importRoster(ReadableByteChannel channel) throws IOException {
+        ShiftManServer imported = new ShiftManServer(_employeeTable);
+        if (!new RosterReader(channel).readTo(imported)) {
+            return error(ErrorCategory.NO_ROSTER, "ERROR: No roster to import");
+        }
+        return installRoster(imported.roster);
+    }
+
     public String setWorkingHours(String dayOfWeek, String startTime, String endTime) {
-        if (roster == null) {
-            return "ERROR: no roster has been created";
+        Roster current = roster;
+        if (current == null) {
+            return error(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
         try {
             TimePeriod workingHours = new TimePeriod(dayOfWeek, startTime, endTime);
-            roster.setWorkingHours(workingHours);
+            current.setWorkingHours(workingHours);
             return "";
         } catch (IllegalArgumentException | ShiftManException e) {
-            return e.getMessage();
+            return error(e);
         }
     }
 
     public String addShift(String dayOfWeek, String startTime, String endTime, String minimumWorkers) {
-        if (roster == null) {
-            return "ERROR: no roster has been created";
+        Roster current = roster;
+        if (current == null) {
+            return error(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
         try {
             Shift shift = new Shift(dayOfWeek, startTime, endTime, minimumWorkers);
-            roster.addShift(shift);
+            current.addShift(shift);
             return "";
         } catch (IllegalArgumentException | ShiftManException e) {
-            return e.getMessage();
+            return error(e);
         }
     }
 
     public String registerStaff(String givenName, String familyName) {
-        if (roster == null) {
-            return "ERROR: no roster has been created";
+        Roster current = roster;
+        if (current == null) {
+            return error(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
         if (givenName == null || familyName == null || givenName.isEmpty() || familyName.isEmpty()) {
-            return "ERROR: Invalid name given.";
+            return error(ErrorCategory.INVALID_INPUT, "ERROR: Invalid name given.");
         }
 
         try {
-            Employee employee = new Employee(givenName, familyName);
-            roster.addEmployee(employee); // ShiftManException is thrown if staff is already registered
+            Employee employee = _employeeTable.newEmployee(givenName, familyName);
+            current.addEmployee(employee); // ShiftManException is thrown if staff is already registered
+            _employeeTable.register(employee);
             return "";
         } catch (ShiftManException e) {
-            return e.getMessage();
+            return error(e);
         }
     }
 
     public String assignStaff(String dayOfWeek, String startTime, String endTime, String givenName, String familyName, boolean isManager) {
-        if (roster == null) {
-            return "ERROR: no roster has been created";
+        Roster current = roster;
+        if (current == null) {
+            return error(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
         String fullName = givenName + " " + familyName;
-        Employee employee = roster.getEmployeeByName(fullName);
+        Employee employee = current.getEmployeeByName(fullName);
         if (employee == null) {
-            return "ERROR: \"" + fullName + "\" is not registered.";
+            return error(ErrorCategory.NOT_FOUND, "ERROR: \"" + fullName + "\" is not registered.");
         }
 
         try {
-            Shift shift = roster.getShiftByPeriod(dayOfWeek, startTime, endTime); // may throw IllegalArgumentException if invalid inputs
+            Shift shift = current.getShiftByPeriod(dayOfWeek, startTime, endTime); // may throw IllegalArgumentException if invalid inputs
             if (shift == null) {
-                return "ERROR: Shift given does not exist";
+                return error(ErrorCategory.NOT_FOUND, "ERROR: Shift given does not exist");
             }
-            roster.assignStaff(shift, employee, isManager);
+            current.assignStaff(shift, employee, isManager);
             return "";
         } catch (IllegalArgumentException | ShiftManException e) {
-            return e.getMessage();
+            return error(e);
+        }
+    }
+
+    /**
+     * Adds many shifts in one request. Each row is the values of one call to
+     * {@link #addShift(String, String, String, String)}: day of week, start time, end time, minimum workers.
+     * All the rows are checked first, each against the roster and the shifts of the rows before it, and then the
+     * shifts that pass are added as one change, so snapshots and subscribers see all of them or none of them.
+     * Each distinct period is only parsed once for the whole batch.
+     * @return the status of each row, in the same order as the rows. If no roster has been created, then return
+     *         a list containing only the error.
+     */
+    public List<String> addShiftsBatch(List<String[]> shifts) {
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        Map<String, TimePeriod> periods = new HashMap<>(); // periods already parsed, by "day start-end"
+        List<String> statuses = new ArrayList<>(shifts.size());
+        List<Shift> resolved = new ArrayList<>(shifts.size());
+        List<Integer> resolvedRows = new ArrayList<>(shifts.size()); // index of the row of each resolved shift
+        for (String[] row : shifts) {
+            if (!isValidRow(row, 4)) {
+                statuses.add(error(ErrorCategory.INVALID_INPUT, invalidRowError(4)));
+                continue;
+            }
+
+            try {
+                String key = row[0] + " " + row[1] + "-" + row[2];
+                TimePeriod period = periods.get(key);
+                if (period == null) {
+                    period = new TimePeriod(row[0], row[1], row[2]);
+                    periods.put(key, period);
+                }
+                resolved.add(new Shift(period, row[3]));
+                resolvedRows.add(statuses.size());
+                statuses.add("");
+            } catch (IllegalArgumentException e) {
+                statuses.add(error(e));
+            }
+        }
+        setStatuses(statuses, resolvedRows, current.addShifts(resolved));
+        return statuses;
+    }
+
+    /**
+     * Registers many staff in one request. Each row is the given name and family name of one staff member, as for
+     * {@link #registerStaff(String, String)}. All the rows are checked first, each against the staff and the rows
+     * before it, and then the staff that pass are registered as one change. Each distinct name is only looked up in
+     * the employee table once for the whole batch.
+     * @return the status of each row, in the same order as the rows. If no roster has been created, then return
+     *         a list containing only the error.
+     */
+    public List<String> registerStaffBatch(List<String[]> staff) {
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        Map<String, Employee> employees = new HashMap<>(); // employees already created, by "givenName\0familyName"
+        List<String> statuses = new ArrayList<>(staff.size());
+        List<Employee> resolved = new ArrayList<>(staff.size());
+        List<Integer> resolvedRows = new ArrayList<>(staff.size()); // index of the row of each resolved employee
+        for (String[] row : staff) {
+            if (!isValidRow(row, 2)) {
+                statuses.add(error(ErrorCategory.INVALID_INPUT, invalidRowError(2)));
+            } else if (row[0].isEmpty() || row[1].isEmpty()) {
+                statuses.add(error(ErrorCategory.INVALID_INPUT, "ERROR: Invalid name given."));
+            } else {
+                String key = row[0] + '\0' + row[1];
+                Employee employee = employees.get(key);
+                if (employee == null) {
+                    employee = _employeeTable.newEmployee(row[0], row[1]);
+                    employees.put(key, employee);
+                }
+                resolved.add(employee);
+                resolvedRows.add(statuses.size());
+                statuses.add("");
+            }
+        }
+
+        List<String> resolvedStatuses = current.addEmployees(resolved);
+        for (int i = 0; i < resolved.size(); i++) {
+            if (resolvedStatuses.get(i).isEmpty()) {
+                _employeeTable.register(resolved.get(i));
+            }
+        }
+        setStatuses(statuses, resolvedRows, resolvedStatuses);
+        return statuses;
+    }
+
+    /**
+     * Assigns many staff to shifts in one request. Each row is the values of one call to
+     * {@link #assignStaff(String, String, String, String, String, boolean)}: day of week, start time, end time,
+     * given name, family name, and "true" or "false" for whether the staff member is to be the manager.
+     * All the rows are checked first, each against the roster and the assignments of the rows before it, and then
+     * the assignments that pass are made as one change. Each distinct staff name and shift is only looked up once for
+     * the whole batch.
+     * @return the status of each row, in the same order as the rows. If no roster has been created, then return
+     *         a list containing only the error.
+     */
+    public List<String> assignStaffBatch(List<String[]> assignments) {
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        Map<String, Employee> employees = new HashMap<>(); // staff already looked up, by full name
+        Map<String, Shift> shifts = new HashMap<>(); // shifts already looked up, by "day start-end"
+        List<String> statuses = new ArrayList<>(assignments.size());
+        List<Roster.Assignment> resolved = new ArrayList<>(assignments.size());
+        List<Integer> resolvedRows = new ArrayList<>(assignments.size()); // row of each resolved assignment
+        for (String[] row : assignments) {
+            try {
+                resolved.add(resolveAssignment(current, row, employees, shifts));
+                resolvedRows.add(statuses.size());
+                statuses.add("");
+            } catch (IllegalArgumentException | ShiftManException e) {
+                statuses.add(error(e));
+            }
+        }
+        setStatuses(statuses, resolvedRows, current.assignStaff(resolved));
+        return statuses;
+    }
+
+    /**
+     * Looks up the shift and staff member of a row of {@link #assignStaffBatch(List)}
+     * @throws IllegalArgumentException if the period of the shift is invalid
+     * @throws ShiftManException if the row is invalid, or the shift or staff member do not exist
+     */
+    private Roster.Assignment resolveAssignment(Roster current, String[] row, Map<String, Employee> employees,
+                                                Map<String, Shift> shifts) throws ShiftManException {
+        if (!isValidRow(row, 6)) {
+            throw new ShiftManException(ErrorCategory.INVALID_INPUT, invalidRowError(6));
+        }
+        if (!row[5].equals("true") && !row[5].equals("false")) {
+            throw new ShiftManException(ErrorCategory.INVALID_INPUT,
+                    "ERROR: Manager flag given (" + row[5] + ") is invalid.");
+        }
+
+        String fullName = row[3] + " " + row[4];
+        Employee employee = employees.get(fullName);
+        if (employee == null) {
+            employee = current.getEmployeeByName(fullName);
+            if (employee == null) {
+                throw new ShiftManException(ErrorCategory.NOT_FOUND, "ERROR: \"" + fullName + "\" is not registered.");
+            }
+            employees.put(fullName, employee);
+        }
+
+        String period = row[0] + " " + row[1] + "-" + row[2];
+        Shift shift = shifts.get(period);
+        if (shift == null) {
+            shift = current.getShiftByPeriod(row[0], row[1], row[2]); // may throw IllegalArgumentException if invalid inputs
+            if (shift == null) {
+                throw new ShiftManException(ErrorCategory.NOT_FOUND, "ERROR: Shift given does not exist");
+            }
+            shifts.put(period, shift);
+        }
+        return new Roster.Assignment(shift, employee, row[5].equals("true"));
+    }
+
+    /**
+     * Sets the statuses of the rows of a batch that were passed on to the roster
+     * @param rows the index of the row of each status
+     */
+    private static void setStatuses(List<String> statuses, List<Integer> rows, List<String> rowStatuses) {
+        for (int i = 0; i < rows.size(); i++) {
+            statuses.set(rows.get(i), rowStatuses.get(i));
+        }
+    }
+
+    /**
+     * Plans assignments of staff to fill the shifts without a manager and the understaffed shifts of the current
+     * roster, see {@link RosterSolver}. The roster is not changed.
+     * @param constraints the most hours and the availability of the staff
+     * @param timeBudgetMillis the most time to spend planning
+     * @return the plan, or null if no roster has been created
+     */
+    public RosterPlan planRoster(StaffConstraints constraints, long timeBudgetMillis) throws InterruptedException {
+        Roster current = roster;
+        if (current == null) {
+            return null;
+        }
+
+        RosterSolver solver = new RosterSolver(current, constraints, System.nanoTime());
+        return solver.solve(timeBudgetMillis, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Plans assignments as for {@link #planRoster(StaffConstraints, long)} and makes them with
+     * {@link #assignStaffBatch(List)}. Any planned assignment that conflicts with a change made to the roster while
+     * planning is rejected.
+     * @return a line for each planned assignment, eg. "Monday[09:00-12:00] Worker:Smith, John", followed by the error
+     *         if the assignment was rejected. If no roster has been created or planning is interrupted, then return
+     *         a list containing only the error.
+     */
+    public List<String> fillRoster(StaffConstraints constraints, long timeBudgetMillis) {
+        RosterPlan plan;
+        try {
+            plan = planRoster(constraints, timeBudgetMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return listError(ErrorCategory.INTERRUPTED, "ERROR: Planning the roster was interrupted");
+        }
+        if (plan == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        List<String[]> assignments = plan.getAssignments();
+        List<String> statuses = assignStaffBatch(assignments);
+        List<String> results = new ArrayList<>(assignments.size());
+        for (int i = 0; i < assignments.size(); i++) {
+            String[] row = assignments.get(i);
+            String status = statuses.get(i);
+            results.add(row[0] + "[" + row[1] + "-" + row[2] + "] " + (row[5].equals("true") ? "Manager:" : "Worker:")
+                    + row[4] + ", " + row[3] + (status.isEmpty() ? "" : " " + status));
+        }
+        return results;
+    }
+
+    /**
+     * Checks that a row of a batch request has the expected number of values, none of which are null
+     */
+    private boolean isValidRow(String[] row, int length) {
+        if (row == null || row.length != length) {
+            return false;
+        }
+        for (String value : row) {
+            if (value == null) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private String invalidRowError(int length) {
+        return "ERROR: Invalid row, expected " + length + " values.";
     }
 
     public List<String> getRegisteredStaff() {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
-        return roster.getRegisteredStaff();
+        return current.getRegisteredStaff();
     }
 
     public List<String> getUnassignedStaff() {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
-        return roster.getUnassignedStaff();
+        return current.getUnassignedStaff();
+    }
+
+    /**
+     * Gets a page of the registered staff, in the same order as {@link #getRegisteredStaff()}. The pages are fetched
+     * one after another by giving the last name of each page as the cursor of the next page. Staff registered in the
+     * meantime appear on a later page if they sort after the cursor.
+     * @param after the last name of the previous page, in the format "givenName familyName", or null for the first page
+     * @param limit the most names in the page, at least 1
+     * @return the page, which has fewer than limit names if it is the last page, or an error if the cursor is not a
+     *         registered staff member
+     */
+    public List<String> getRegisteredStaff(String after, int limit) {
+        return getStaffPage(after, limit, false);
+    }
+
+    /**
+     * Gets a page of the unassigned staff, in the same order as {@link #getUnassignedStaff()}. The cursor is the last
+     * name of the previous page, as for {@link #getRegisteredStaff(String, int)}, and need not still be unassigned.
+     */
+    public List<String> getUnassignedStaff(String after, int limit) {
+        return getStaffPage(after, limit, true);
+    }
+
+    /**
+     * Searches the registered staff by name as it is typed, ignoring case and allowing one typing mistake in the last
+     * word, eg. "jo smtih" finds John Smith, see {@link StaffSearchIndex#search(String, int)}
+     * @param query the start of the given or family name, or the start of both separated by a space
+     * @param limit the most names to find, at least 1
+     * @return the full names found, best match first, or an error if no roster has been created
+     */
+    public List<String> searchStaff(String query, int limit) {
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        if (limit < 1) {
+            return listError(ErrorCategory.INVALID_INPUT,
+                    "ERROR: Number of results (" + limit + ") must be at least 1");
+        }
+        return current.searchStaff(query, limit);
+    }
+
+    private List<String> getStaffPage(String after, int limit, boolean unassignedOnly) {
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        if (limit < 1) {
+            return listError(ErrorCategory.INVALID_INPUT, "ERROR: Page size (" + limit + ") must be at least 1");
+        }
+
+        Employee cursor = null;
+        if (after != null) {
+            cursor = current.getEmployeeByName(after);
+            if (cursor == null) {
+                return listError(ErrorCategory.NOT_FOUND, "ERROR: \"" + after + "\" is not registered.");
+            }
+        }
+        return unassignedOnly ? current.getUnassignedStaff(cursor, limit) : current.getRegisteredStaff(cursor, limit);
     }
 
     public List<String> shiftsWithoutManagers() {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
-        return roster.getShiftList(true, false, false);
+        return current.getShiftList(true, false, false);
     }
 
     public List<String> understaffedShifts() {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
-        return roster.getShiftList(false, true, false);
+        return current.getShiftList(false, true, false);
     }
 
     public List<String> overstaffedShifts() {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
-        return roster.getShiftList(false, false, true);
+        return current.getShiftList(false, false, true);
     }
 
     public List<String> getRosterForDay(String dayOfWeek) {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
         if (!DayOfWeek.isValidDay(dayOfWeek)) {
-            return listError("ERROR: Day given (" + dayOfWeek + ") is invalid.");
+            return listError(ErrorCategory.INVALID_INPUT, "ERROR: Day given (" + dayOfWeek + ") is invalid.");
         }
 
-        return roster.getRosterForDay(dayOfWeek);
+        return current.getRosterForDay(dayOfWeek);
     }
 
     public List<String> getRosterForWorker(String workerName) {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
-        Employee worker = roster.getEmployeeByName(workerName);
+        Employee worker = current.getEmployeeByName(workerName);
         if (worker == null) {
-            return listError("ERROR: \"" + workerName + "\" is not registered.");
+            return listError(ErrorCategory.NOT_FOUND, "ERROR: \"" + workerName + "\" is not registered.");
         }
 
-        return roster.getShiftsForEmployee(worker, false);
+        return current.getShiftsForEmployee(worker, false);
     }
 
     public List<String> getShiftsManagedBy(String managerName) {
-        if (roster == null) {
-            return listError("ERROR: no roster has been created");
+        Roster current = roster;
+        if (current == null) {
+            return listError(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
         }
 
-        Employee manager = roster.getEmployeeByName(managerName);
+        Employee manager = current.getEmployeeByName(managerName);
         if (manager == null) {
-            return listError("ERROR: \"" + managerName + "\" is not registered.");
+            return listError(ErrorCategory.NOT_FOUND, "ERROR: \"" + managerName + "\" is not registered.");
         }
 
-        return roster.getShiftsForEmployee(manager, true);
+        return current.getShiftsForEmployee(manager, true);
     }
 
+    /**
+     * Reports the shifts without a manager, understaffed shifts, overstaffed shifts and unassigned staff, all as of
+     * the same version of the roster, see {@link RosterIssueReport}. The report is kept until the roster next changes,
+     * so asking for it again is cheap.
+     */
     public String reportRosterIssues() {
-        return "";
+        Roster current = roster;
+        if (current == null) {
+            return error(ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+        }
+
+        RosterIssueReport report = _issueReport;
+        if (report == null || !report.isCurrent(current)) {
+            report = RosterIssueReport.analyze(current);
+            _issueReport = report;
+        }
+        return report.toString();
     }
 
     public String displayRoster() {
         StringBuilder sb = new StringBuilder();
-        for (DayOfWeek day : DayOfWeek.values()) {
-            List<String> list = getRosterForDay(day.toString());
-            sb.append(day.toString() + "\n");
+        try {
+            writeRoster(sb);
+        } catch (IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws IOException
+        }
+        return sb.toString();
+    }
 
-            if (list.size() == 0 || roster.getWorkingHours(day.toString()) == null) {
-                sb.append("\t(no shifts) \n");
-            }
-            for (int i = 0; i < list.size(); i++) {
-                if (i != 0) {
-                    sb.append("\t" + list.get(i) + "\n");
-                }
+    /*
+     * The following methods write the same lines as the queries above, each followed by a new line, straight to
+     * an Appendable such as a Writer, eg. one from Channels.newWriter() for a file or socket channel. No list of lines
+     * is built, so writing a large roster takes no more memory than writing a small one. Errors are written as the
+     * only line.
+     */
+
+    /**
+     * Writes the roster of every day in the format of {@link #displayRoster()}
+     */
+    public void writeRoster(Appendable out) throws IOException {
+        Roster current = roster;
+        if (current == null) {
+            writeError(out, ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+            return;
+        }
+
+        for (DayOfWeek day : DayOfWeek.values()) {
+            out.append(day.toString()).append('\n');
+            if (current.hasRosterForDay(day)) {
+                current.writeRosterForDay(day, out, "\t");
+            } else {
+                out.append("\t(no shifts) \n");
             }
         }
-        return sb.toString();
     }
 
-    private List<String> listError(String message) {
-        return Collections.singletonList(message);
+    public void writeRosterForDay(String dayOfWeek, Appendable out) throws IOException {
+        Roster current = roster;
+        if (current == null) {
+            writeError(out, ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+            return;
+        }
+
+        DayOfWeek day = DayOfWeek.fromString(dayOfWeek);
+        if (day == null) {
+            writeError(out, ErrorCategory.INVALID_INPUT, "ERROR: Day given (" + dayOfWeek + ") is invalid.");
+            return;
+        }
+
+        if (current.hasRosterForDay(day)) {
+            out.append(current.getShopName()).append('\n');
+            current.writeRosterForDay(day, out, "");
+        }
+    }
+
+    public void writeRosterForWorker(String workerName, Appendable out) throws IOException {
+        writeShiftsForEmployee(workerName, false, out);
+    }
+
+    public void writeShiftsManagedBy(String managerName, Appendable out) throws IOException {
+        writeShiftsForEmployee(managerName, true, out);
+    }
+
+    private void writeShiftsForEmployee(String name, boolean asManager, Appendable out) throws IOException {
+        Roster current = roster;
+        if (current == null) {
+            writeError(out, ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+            return;
+        }
+
+        Employee employee = current.getEmployeeByName(name);
+        if (employee == null) {
+            writeError(out, ErrorCategory.NOT_FOUND, "ERROR: \"" + name + "\" is not registered.");
+            return;
+        }
+
+        current.writeShiftsForEmployee(employee, asManager, out);
+    }
+
+    public void writeShiftsWithoutManagers(Appendable out) throws IOException {
+        writeShiftList(true, false, false, out);
+    }
+
+    public void writeUnderstaffedShifts(Appendable out) throws IOException {
+        writeShiftList(false, true, false, out);
+    }
+
+    public void writeOverstaffedShifts(Appendable out) throws IOException {
+        writeShiftList(false, false, true, out);
+    }
+
+    private void writeShiftList(boolean noManager, boolean understaffed, boolean overstaffed, Appendable out) throws IOException {
+        Roster current = roster;
+        if (current == null) {
+            writeError(out, ErrorCategory.NO_ROSTER, "ERROR: no roster has been created");
+            return;
+        }
+
+        current.writeShiftList(noManager, understaffed, overstaffed, out);
+    }
+
+    private void writeError(Appendable out, ErrorCategory category, String message) throws IOException {
+        out.append(error(category, message)).append('\n');
+    }
+
+    /**
+     * @return the number of staff registered with the current roster, or 0 if no roster has been created
+     */
+    public int getStaffCount() {
+        Roster current = roster;
+        return current == null ? 0 : current.getStaffCount();
+    }
+
+    /**
+     * @return the number of shifts in the current roster, or 0 if no roster has been created
+     */
+    public int getShiftCount() {
+        Roster current = roster;
+        return current == null ? 0 : current.getShiftCount();
+    }
+
+    /**
+     * @return the number of assignments of staff to shifts in the current roster, counting managers and workers,
+     *         or 0 if no roster has been created
+     */
+    public int getAssignmentCount() {
+        Roster current = roster;
+        return current == null ? 0 : current.getAssignmentCount();
+    }
+
+    /**
+     * Discards cached data of the current roster that can be rebuilt when needed
+     */
+    void trimCaches() {
+        Roster current = roster;
+        if (current != null) {
+            current.trimCaches();
+        }
+    }
+
+    /**
+     * Notes the category of an error that a request is about to return, if errors are being recorded on the current
+     * thread, see {@link #recordErrors()}
+     * @return the message
+     */
+    static String error(ErrorCategory category, String message) {
+        ErrorCategory[] recorder = ERROR_RECORDER.get();
+        if (recorder != null) {
+            recorder[0] = category;
+        }
+        return message;
+    }
+
+    /**
+     * Notes the category of the exception that a request failed with, as for {@link #error(ErrorCategory, String)}.
+     * Exceptions other than ShiftManException come from parsing the input of the request.
+     * @return the message of the exception
+     */
+    static String error(Exception e) {
+        ErrorCategory category = ErrorCategory.INVALID_INPUT;
+        if (e instanceof ShiftManException) {
+            category = ((ShiftManException) e).getCategory();
+        }
+        return error(category, e.getMessage());
+    }
+
+    private static List<String> listError(ErrorCategory category, String message) {
+        return Collections.singletonList(error(category, message));
+    }
+
+    /**
+     * Starts recording the category of the errors returned by requests on the current thread. Must be followed by
+     * {@link #stopRecordingErrors()}, so that nothing is left behind on a thread that is reused.
+     * @return the recorder, whose only element is set to the category of the last error returned, or left null if
+     *         no request has failed
+     */
+    static ErrorCategory[] recordErrors() {
+        ErrorCategory[] recorder = new ErrorCategory[1];
+        ERROR_RECORDER.set(recorder);
+        return recorder;
+    }
+
+    /**
+     * Stops recording errors on the current thread, see {@link #recordErrors()}
+     */
+    static void stopRecordingErrors() {
+        ERROR_RECORDER.remove();
     }
 }
@@ -0,0 +1,483 @@
+package shiftman.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves a ShiftMan server over the network, using the protocol of {@link ShiftManProtocol}.
+ * <p>
+ * Connections are spread over a fixed number of I/O threads, each with its own selector, which only read requests and
+ * write responses. The requests are run by a pool of worker threads, so a slow request, eg. one waiting for its change
+ * to be saved, does not hold up the other connections of its I/O thread. All the complete requests read from a
+ * connection are handed to a worker together and run in order, and their responses are written back together, so a
+ * client that pipelines its requests needs few system calls per request. The server must be safe to use from several
+ * threads if there is more than one worker thread, see {@link ConcurrentShiftManServer}. While the requests of a
+ * connection are running, or the client is not reading its responses, no more of its requests are read.
+ * <p>
+ * A response that would be longer than {@link ShiftManProtocol#MAX_FRAME_LENGTH} is replaced by an error, as the
+ * client could not read it.
+ * <p>
+ * Usage: java shiftman.server.ShiftManService port [threads] [directory]. With a directory the roster is saved there,
+ * see {@link PersistentShiftManServer}.
+ */
+public class ShiftManService implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ShiftManServer _server;
+    private final ServerSocketChannel _serverChannel;
+    private final IoThread[] _ioThreads;
+    private final ExecutorService _workers;
+    private int _nextIoThread; // used only by the first I/O thread, which accepts the connections
+
+    /**
+     * Starts serving the given server, with as many worker threads as I/O threads
+     * @param address the address to listen on, eg. new InetSocketAddress(port), or port 0 for any free port
+     * @param threads the number of I/O threads
+     */
+    public ShiftManService(ShiftManServer server, InetSocketAddress address, int threads) throws IOException {
+        this(server, address, threads, threads);
+    }
+
+    /**
+     * Starts serving the given server
+     * @param address the address to listen on, eg. new InetSocketAddress(port), or port 0 for any free port
+     * @param ioThreads the number of I/O threads
+     * @param workerThreads the number of threads that run the requests
+     */
+    public ShiftManService(ShiftManServer server, InetSocketAddress address, int ioThreads, int workerThreads)
+            throws IOException {
+        _server = server;
+        _serverChannel = ServerSocketChannel.open();
+        _ioThreads = new IoThread[ioThreads];
+        _workers = Executors.newFixedThreadPool(workerThreads, new ThreadFactory() {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "ShiftManService-worker-" + _count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            _serverChannel.bind(address);
+            _serverChannel.configureBlocking(false);
+            for (int i = 0; i < ioThreads; i++) {
+                _ioThreads[i] = new IoThread("ShiftManService-" + i);
+            }
+            _serverChannel.register(_ioThreads[0]._selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (IoThread thread : _ioThreads) {
+            thread.start();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java shiftman.server.ShiftManService port [threads] [directory]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ShiftManServer server;
+        if (args.length > 2) {
+            server = new PersistentShiftManServer(Paths.get(args[2]));
+        } else {
+            server = new ConcurrentShiftManServer();
+        }
+        ShiftManService service = new ShiftManService(server, new InetSocketAddress(port), threads);
+        System.out.println("Serving ShiftMan on " + service.getAddress());
+    }
+
+    /**
+     * @return the address the service is listening on
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) _serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stops serving and closes all connections. Requests already running are left to finish, but their responses are
+     * not sent. The server itself is not closed.
+     */
+    public void close() throws IOException {
+        _serverChannel.close();
+        for (IoThread thread : _ioThreads) {
+            if (thread != null) {
+                thread.shutDown();
+            }
+        }
+        _workers.shutdown();
+    }
+
+    /**
+     * Runs one request
+     * @param request the body of the request frame, from the operation to the end of the frame
+     * @param response the buffer to write the result to
+     * @return the buffer holding the response, which is a new, larger buffer if the result did not fit
+     */
+    private ByteBuffer handle(ByteBuffer request, ByteBuffer response) throws IOException {
+        Object result;
+        try {
+            result = run(request);
+        } catch (BufferUnderflowException e) {
+            result = "ERROR: Invalid request";
+        } catch (RuntimeException e) { // a bug in the server should not close the connection of every client
+            e.printStackTrace(); // the details are for the server, the client is only told that the request failed
+            result = "ERROR: The server failed to run the request";
+        }
+
+        long size = 1 + (result instanceof String ? ShiftManProtocol.size((String) result)
+                : ShiftManProtocol.size(castToList(result)));
+        if (ShiftManProtocol.FRAME_HEADER_SIZE - 4 + size > ShiftManProtocol.MAX_FRAME_LENGTH) {
+            result = "ERROR: The response is too large to send (" + size + " bytes)";
+            size = 1 + ShiftManProtocol.size((String) result);
+        }
+
+        response = ShiftManProtocol.ensureRoom(response, (int) size);
+        if (result instanceof String) {
+            response.put(ShiftManProtocol.STATUS);
+            ShiftManProtocol.putString(response, (String) result);
+        } else {
+            response.put(ShiftManProtocol.LIST);
+            ShiftManProtocol.putStrings(response, castToList(result));
+        }
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> castToList(Object result) {
+        return (List<String>) result;
+    }
+
+    /**
+     * @return the status or list returned by the server
+     */
+    private Object run(ByteBuffer request) throws IOException {
+        byte operation = request.get();
+        switch (operation) {
+            case ShiftManProtocol.NEW_ROSTER:
+                return _server.newRoster(ShiftManProtocol.getString(request));
+            case ShiftManProtocol.SET_WORKING_HOURS: {
+                String day = ShiftManProtocol.getString(request);
+                String startTime = ShiftManProtocol.getString(request);
+                return _server.setWorkingHours(day, startTime, ShiftManProtocol.getString(request));
+            }
+            case ShiftManProtocol.ADD_SHIFT: {
+                String day = ShiftManProtocol.getString(request);
+                String startTime = ShiftManProtocol.getString(request);
+                String endTime = ShiftManProtocol.getString(request);
+                return _server.addShift(day, startTime, endTime, ShiftManProtocol.getString(request));
+            }
+            case ShiftManProtocol.REGISTER_STAFF: {
+                String givenName = ShiftManProtocol.getString(request);
+                return _server.registerStaff(givenName, ShiftManProtocol.getString(request));
+            }
+            case ShiftManProtocol.ASSIGN_STAFF: {
+                String day = ShiftManProtocol.getString(request);
+                String startTime = ShiftManProtocol.getString(request);
+                String endTime = ShiftManProtocol.getString(request);
+                String givenName = ShiftManProtocol.getString(request);
+                String familyName = ShiftManProtocol.getString(request);
+                return _server.assignStaff(day, startTime, endTime, givenName, familyName, request.get() != 0);
+            }
+            case ShiftManProtocol.GET_REGISTERED_STAFF:
+                return _server.getRegisteredStaff();
+            case ShiftManProtocol.GET_UNASSIGNED_STAFF:
+                return _server.getUnassignedStaff();
+            case ShiftManProtocol.SHIFTS_WITHOUT_MANAGERS:
+                return _server.shiftsWithoutManagers();
+            case ShiftManProtocol.UNDERSTAFFED_SHIFTS:
+                return _server.understaffedShifts();
+            case ShiftManProtocol.OVERSTAFFED_SHIFTS:
+                return _server.overstaffedShifts();
+            case ShiftManProtocol.GET_ROSTER_FOR_DAY:
+                return _server.getRosterForDay(ShiftManProtocol.getString(request));
+            case ShiftManProtocol.GET_ROSTER_FOR_WORKER:
+                return _server.getRosterForWorker(ShiftManProtocol.getString(request));
+            case ShiftManProtocol.GET_SHIFTS_MANAGED_BY:
+                return _server.getShiftsManagedBy(ShiftManProtocol.getString(request));
+            case ShiftManProtocol.REPORT_ROSTER_ISSUES:
+                return _server.reportRosterIssues();
+            case ShiftManProtocol.DISPLAY_ROSTER:
+                return _server.displayRoster();
+            case ShiftManProtocol.ADD_SHIFTS_BATCH:
+                return _server.addShiftsBatch(ShiftManProtocol.getRows(request));
+            case ShiftManProtocol.REGISTER_STAFF_BATCH:
+                return _server.registerStaffBatch(ShiftManProtocol.getRows(request));
+            case ShiftManProtocol.ASSIGN_STAFF_BATCH:
+                return _server.assignStaffBatch(ShiftManProtocol.getRows(request));
+            default:
+                return "ERROR: Unknown operation " + operation;
+        }
+    }
+
+    /**
+     * A thread that reads the requests of its connections, hands them to the workers and writes the responses back
+     */
+    private class IoThread extends Thread {
+        private final Selector _selector;
+        private final Queue<SocketChannel> _newConnections; // accepted by the first thread, to be registered by this one
+        private final Queue<Connection> _finishedConnections; // whose requests the workers have finished running
+        private volatile boolean _running;
+
+        private IoThread(String name) throws IOException {
+            super(name);
+            setDaemon(true);
+            _selector = Selector.open();
+            _newConnections = new ConcurrentLinkedQueue<>();
+            _finishedConnections = new ConcurrentLinkedQueue<>();
+            _running = true;
+        }
+
+        private void addConnection(SocketChannel channel) {
+            _newConnections.add(channel);
+            _selector.wakeup();
+        }
+
+        /**
+         * Called by a worker once it has run the requests of a connection
+         */
+        private void requestsFinished(Connection connection) {
+            _finishedConnections.add(connection);
+            _selector.wakeup();
+        }
+
+        private void shutDown() {
+            _running = false;
+            _selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (_running) {
+                    _selector.select();
+                    registerNewConnections();
+                    writeFinishedResponses();
+                    for (SelectionKey key : _selector.selectedKeys()) {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            try {
+                                if (key.isWritable()) {
+                                    connection.write();
+                                }
+                                if (key.isValid() && key.isReadable()) {
+                                    connection.read();
+                                }
+                            } catch (IOException e) { // the client has gone or sent a bad frame, drop only that client
+                                connection.close();
+                            }
+                        }
+                    }
+                    _selector.selectedKeys().clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // the selector failed, so the connections of this thread are dropped below
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = _serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                _ioThreads[_nextIoThread].addConnection(channel);
+                _nextIoThread = (_nextIoThread + 1) % _ioThreads.length;
+            }
+        }
+
+        private void registerNewConnections() throws IOException {
+            SocketChannel channel;
+            while ((channel = _newConnections.poll()) != null) {
+                SelectionKey key = channel.register(_selector, SelectionKey.OP_READ);
+                key.attach(new Connection(this, channel, key));
+            }
+        }
+
+        private void writeFinishedResponses() {
+            Connection connection;
+            while ((connection = _finishedConnections.poll()) != null) {
+                try {
+                    connection.requestsFinished();
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void closeAll() {
+            List<SelectionKey> keys = new ArrayList<>(_selector.keys());
+            for (SelectionKey key : keys) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+            try {
+                _selector.close();
+            } catch (IOException e) {
+                // nothing more can be done
+            }
+        }
+    }
+
+    /**
+     * A client connection, used by the I/O thread it belongs to and, while its requests are running, by one worker
+     */
+    private class Connection implements Runnable {
+        private final IoThread _ioThread;
+        private final SocketChannel _channel;
+        private final SelectionKey _key;
+        private ByteBuffer _in; // bytes read but not yet handled, ready to be read into
+        private ByteBuffer _out; // responses not yet written, ready to be added to. Used by the worker while running.
+        private ByteBuffer _requests; // the requests being run by a worker, null if none
+        private IOException _failure; // thrown while running the requests, if any
+
+        private Connection(IoThread ioThread, SocketChannel channel, SelectionKey key) {
+            _ioThread = ioThread;
+            _channel = channel;
+            _key = key;
+            _in = ByteBuffer.allocate(BUFFER_SIZE);
+            _out = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * Reads what the client has sent and hands every complete request to a worker. Only called while no requests
+         * are running and all responses have been written.
+         */
+        private void read() throws IOException {
+            if (_channel.read(_in) < 0) {
+                close();
+                return;
+            }
+
+            _in.flip();
+            int start = _in.position();
+            int length;
+            while ((length = ShiftManProtocol.frameLength(_in)) >= 0) {
+                _in.position(_in.position() + 4 + length);
+            }
+            if (_in.position() > start) {
+                ByteBuffer requests = _in.duplicate();
+                requests.limit(_in.position()).position(start);
+                _requests = ByteBuffer.allocate(requests.remaining());
+                _requests.put(requests).flip();
+                _workers.execute(this);
+            }
+
+            _in.compact();
+            if (!_in.hasRemaining()) { // the next request is larger than the buffer, its length was checked above
+                ByteBuffer larger = ByteBuffer.allocate(4 + _in.getInt(0));
+                _in.flip();
+                larger.put(_in);
+                _in = larger;
+            } else if (_in.position() == 0 && _in.capacity() > BUFFER_SIZE) { // give back the memory of a large request
+                _in = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+            updateInterestOps();
+        }
+
+        /**
+         * Runs the requests handed over by {@link #read()} in order, on a worker thread, adding their responses to the
+         * responses to be written
+         */
+        @Override
+        public void run() {
+            try {
+                int length;
+                while ((length = ShiftManProtocol.frameLength(_requests)) >= 0) {
+                    int frameEnd = _requests.position() + 4 + length;
+                    int requestId = _requests.getInt(_requests.position() + 4);
+                    ByteBuffer request = _requests.duplicate();
+                    request.position(_requests.position() + ShiftManProtocol.FRAME_HEADER_SIZE);
+                    request.limit(frameEnd);
+
+                    _out = ShiftManProtocol.ensureRoom(_out, ShiftManProtocol.FRAME_HEADER_SIZE);
+                    int start = ShiftManProtocol.beginFrame(_out, requestId);
+                    _out = handle(request.slice(), _out);
+                    ShiftManProtocol.endFrame(_out, start);
+                    _requests.position(frameEnd);
+                }
+            } catch (IOException e) {
+                _failure = e;
+            } finally {
+                _ioThread.requestsFinished(this);
+            }
+        }
+
+        /**
+         * Writes the responses of the requests a worker has finished running
+         */
+        private void requestsFinished() throws IOException {
+            _requests = null;
+            if (_failure != null) {
+                throw _failure;
+            }
+            if (_key.isValid()) {
+                write();
+            }
+        }
+
+        /**
+         * Writes as many of the responses as the client will take. If some are left, then stops reading requests
+         * until they have been written.
+         */
+        private void write() throws IOException {
+            _out.flip();
+            _channel.write(_out);
+            _out.compact();
+            if (_out.position() == 0 && _out.capacity() > BUFFER_SIZE) { // give back the memory of a large response
+                _out = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+            updateInterestOps();
+        }
+
+        private void updateInterestOps() {
+            if (_requests != null) { // the worker owns the responses until it has finished
+                _key.interestOps(0);
+            } else if (_out.position() > 0) {
+                _key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                _key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void close() {
+            _key.cancel();
+            try {
+                _channel.close();
+            } catch (IOException e) {
+                // the connection is dropped anyway
+            }
+        }
+    }
+}
@@ -1,26 +1,89 @@
 package shiftman.server;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.ArrayList;
-
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Repository of the shifts in a roster. The shifts are indexed by day and start time, so they are always kept
+ * in chronological order and never need to be sorted when read. The queries can safely run concurrently with
+ * shifts being added or updated, as long as the shifts of any one day are only changed by one thread at a time.
+ */
 public class ShiftRepository {
-    private final List<Shift> _shifts;
+    private final Map<DayOfWeek, NavigableMap<Time, Shift>> _shiftsByDay; // shifts of each day, keyed by start time
+    private final NavigableSet<Shift> _shiftsWithoutManager;
+    private final NavigableSet<Shift> _understaffedShifts;
+    private final NavigableSet<Shift> _overstaffedShifts;
+    private final AtomicInteger _size; // number of shifts on all days
 
     public ShiftRepository() {
-        _shifts = new ArrayList<>();
+        _shiftsWithoutManager = new ConcurrentSkipListSet<>(TimePeriod.CHRONOLOGICAL_ORDER);
+        _understaffedShifts = new ConcurrentSkipListSet<>(TimePeriod.CHRONOLOGICAL_ORDER);
+        _overstaffedShifts = new ConcurrentSkipListSet<>(TimePeriod.CHRONOLOGICAL_ORDER);
+        _size = new AtomicInteger();
+        _shiftsByDay = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            _shiftsByDay.put(day, new ConcurrentSkipListMap<Time, Shift>());
+        }
     }
 
     public void add(Shift shift) {
-        _shifts.add(shift);
+        _shiftsByDay.get(shift.getDay()).put(shift.getStartTime(), shift);
+        updateStaffingStatus(shift);
+        _size.incrementAndGet();
+    }
+
+    public int size() {
+        return _size.get();
+    }
+
+    /**
+     * Updates which of the staffing status sets (without manager, understaffed, overstaffed) the shift belongs to.
+     * Must be called whenever the manager or workers of a shift in the repository change.
+     */
+    public void updateStaffingStatus(Shift shift) {
+        updateMembership(_shiftsWithoutManager, shift, shift.getManager() == null);
+        updateMembership(_understaffedShifts, shift, shift.workersNeeded() > 0);
+        updateMembership(_overstaffedShifts, shift, shift.workersNeeded() < 0);
+    }
+
+    private void updateMembership(NavigableSet<Shift> shifts, Shift shift, boolean isMember) {
+        if (isMember) {
+            shifts.add(shift);
+        } else {
+            shifts.remove(shift);
+        }
     }
 
     public boolean contains(Shift shift) {
-        return _shifts.contains(shift);
+        return getShiftByPeriod(shift) != null;
     }
 
-    private void sort() {
-        Collections.sort(_shifts, new TimePeriod.PeriodComparator());
+    /**
+     * Checks if the given period overlaps with any existing shift on the same day. As the existing shifts of a day
+     * never overlap each other, only the shifts starting immediately before and after the period need to be checked.
+     * @param period the period to check
+     * @return true if an existing shift overlaps the period, otherwise false
+     */
+    public boolean overlapsExistingShift(TimePeriod period) {
+        NavigableMap<Time, Shift> shifts = _shiftsByDay.get(period.getDay());
+
+        Map.Entry<Time, Shift> before = shifts.floorEntry(period.getStartTime());
+        if (before != null && period.overlaps(before.getValue())) {
+            return true;
+        }
+        Map.Entry<Time, Shift> after = shifts.ceilingEntry(period.getStartTime());
+        return after != null && period.overlaps(after.getValue());
     }
 
     /**
@@ -29,60 +92,45 @@ public class ShiftRepository {
      * @return the shift if an existing shift matches the period, otherwise null
      */
     public Shift getShiftByPeriod(TimePeriod period) {
-        for (Shift shift : _shifts) {
-            if (shift.equals(period)) {
-                return shift;
-            }
+        Shift shift = _shiftsByDay.get(period.getDay()).get(period.getStartTime());
+        if (shift != null && shift.equals(period)) {
+            return shift;
         }
         return null;
     }
 
     /**
-     * Gets a list of shifts that are on the specified day
+     * Gets a list of shifts that are on the specified day, in order of start time
      * @return an unmodifiable list of shifts for the day
      */
     public List<Shift> getShiftsForDay(DayOfWeek day) {
-        List<Shift> shiftList = new ArrayList<>();
-        for (Shift shift : _shifts) {
-            if (shift.getDay().equals(day)) {
-                shiftList.add(shift);
-            }
-        }
-
-        Collections.sort(shiftList, new TimePeriod.PeriodComparator());
-        return Collections.unmodifiableList(shiftList);
+        return Collections.unmodifiableList(new ArrayList<>(_shiftsByDay.get(day).values()));
     }
 
     /**
-     * Gets all the shifts assigned to the employee as a list of strings. You can either get the shifts where
-     * the employee is a manager or where the employee is a worker.
-     * @param employee the employee to get the shifts for
-     * @param asManager true if you want to get shifts where the employee is a manager.
-     *                  false if you want the shifts where the employee is a worker.
-     * @return the list of shifts assigned to the employee (either as manager or worker).
+     * @return a list of all shifts, in chronological order
      */
-    public List<String> getShiftsForEmployee(Employee employee, boolean asManager) {
-        List<String> list = new ArrayList<>();
-        sort();
-
-        if (asManager) { // get shifts for manager
-            for (Shift shift : _shifts) {
-                if (shift.getManager() != null && shift.getManager().equals(employee)) {
-                    list.add(shift.toString());
-                }
-            }
-        } else { // get shifts for worker
-            for (Shift shift : _shifts) {
-                if (shift.hasWorkers() && shift.getWorkers().contains(employee)) { // if employee is working in that shift
-                    list.add(shift.toString());
-                }
-            }
+    public List<Shift> getAllShifts() {
+        List<Shift> shifts = new ArrayList<>();
+        for (NavigableMap<Time, Shift> shiftsOfDay : _shiftsByDay.values()) { // EnumMap iterates the days in order
+            shifts.addAll(shiftsOfDay.values());
         }
+        return shifts;
+    }
 
-        if (!list.isEmpty()) {
-            list.add(0, employee.getFamilyName() + ", " + employee.getGivenName());
-        }
-        return list;
+    /**
+     * Gets all the shifts of the given day as an unmodifiable live view, in order of start time. Shifts added while the
+     * view is being iterated may or may not be seen.
+     */
+    public Collection<Shift> getShiftsOnDay(DayOfWeek day) {
+        return Collections.unmodifiableCollection(shiftsOn(day));
+    }
+
+    /**
+     * Gets all the shifts of the given day as a live view, in order of start time
+     */
+    private Collection<Shift> shiftsOn(DayOfWeek day) {
+        return _shiftsByDay.get(day).values();
     }
 
     /**
@@ -94,36 +142,88 @@ public class ShiftRepository {
      */
     public List<String> getShiftList(boolean noManager, boolean understaffed, boolean overstaffed) {
         List<String> list = new ArrayList<>();
-        sort();
-
-        for (Shift shift : _shifts) {
-            if ((noManager && shift.getManager() == null) || (understaffed && shift.workersNeeded() > 0) ||
-                    (overstaffed && shift.workersNeeded() < 0)) {
-                list.add(shift.toString());
-            }
+        for (Shift shift : selectShifts(noManager, understaffed, overstaffed)) {
+            list.add(shift.toString());
         }
         return list;
     }
 
-    public List<String> getRosterForDay(DayOfWeek dayOfWeek) {
-        List<String> roster = new ArrayList<>();
-        String managerName;
+    /**
+     * Writes the same shifts as {@link #getShiftList(boolean, boolean, boolean)}, one per line
+     */
+    public void writeShiftList(boolean noManager, boolean understaffed, boolean overstaffed, Appendable out) throws IOException {
+        for (Shift shift : selectShifts(noManager, understaffed, overstaffed)) {
+            out.append(shift.toString()).append('\n');
+        }
+    }
 
-        for (Shift shift : getShiftsForDay(dayOfWeek)) {
-            Employee manager = shift.getManager();
-            if (manager != null) {
-                managerName = " Manager:" + manager.getFamilyName() + ", " + manager.getGivenName();
-            } else {
-                managerName = " [No manager assigned]";
-            }
+    /**
+     * Gets the shifts in any of the selected staffing status sets, in chronological order. If only one set is
+     * selected, then that set is returned as is, otherwise the selected sets are merged.
+     */
+    private Collection<Shift> selectShifts(boolean noManager, boolean understaffed, boolean overstaffed) {
+        if (noManager && !understaffed && !overstaffed) {
+            return _shiftsWithoutManager;
+        } else if (!noManager && understaffed && !overstaffed) {
+            return _understaffedShifts;
+        } else if (!noManager && !understaffed && overstaffed) {
+            return _overstaffedShifts;
+        }
 
-            if (shift.hasWorkers()) {
-                roster.add(shift + managerName + " " + shift.getWorkers().getAllStaff());
-            } else {
-                roster.add(shift + managerName + " " + "[No workers assigned]");
-            }
+        NavigableSet<Shift> shifts = new TreeSet<>(TimePeriod.CHRONOLOGICAL_ORDER);
+        if (noManager) {
+            addEach(shifts, _shiftsWithoutManager);
+        }
+        if (understaffed) {
+            addEach(shifts, _understaffedShifts);
+        }
+        if (overstaffed) {
+            addEach(shifts, _overstaffedShifts);
+        }
+        return shifts;
+    }
+
+    /**
+     * Adds the shifts one at a time. TreeSet.addAll cannot be used as it assumes the size of a sorted set does not
+     * change while it is being copied, which is not the case for a set that is being updated concurrently.
+     */
+    private void addEach(NavigableSet<Shift> shifts, Collection<Shift> toAdd) {
+        for (Shift shift : toAdd) {
+            shifts.add(shift);
         }
+    }
+
+    public boolean hasShiftsOn(DayOfWeek day) {
+        return !shiftsOn(day).isEmpty();
+    }
 
-        return roster;
+    /**
+     * Adds the roster lines of the shifts of the given day to the list, in order of start time
+     */
+    public void addRosterLines(DayOfWeek dayOfWeek, List<String> roster) {
+        for (Shift shift : shiftsOn(dayOfWeek)) {
+            roster.add(shift.getRosterLine());
+        }
+    }
+
+    /**
+     * Writes the roster lines of the shifts of the given day, in order of start time
+     * @param linePrefix written at the start of each line, eg. to indent the lines
+     */
+    public void writeRosterLines(DayOfWeek dayOfWeek, Appendable out, String linePrefix) throws IOException {
+        for (Shift shift : shiftsOn(dayOfWeek)) {
+            out.append(linePrefix).append(shift.getRosterLine()).append('\n');
+        }
+    }
+
+    /**
+     * Discards the cached roster lines of all shifts
+     */
+    public void clearCachedRosterLines() {
+        for (NavigableMap<Time, Shift> shifts : _shiftsByDay.values()) {
+            for (Shift shift : shifts.values()) {
+                shift.clearCachedRosterLine();
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Limits on the shifts each staff member can be given by a {@link RosterSolver}: the most hours they can work in the
+ * week, and the periods of the week they are available. Staff without limits of their own can be given shifts at any
+ * time, up to the default maximum hours. Staff are identified by their full name, "givenName familyName", ignoring case
+ * as for the rest of the roster.
+ */
+public class StaffConstraints {
+    private static final int HOURS_IN_WEEK = 7 * 24;
+
+    private int _defaultMaxMinutes;
+    private final Map<String, Integer> _maxMinutes; // normalized full name -> most minutes in the week
+    private final Map<String, List<TimePeriod>> _availability; // normalized full name -> periods available
+
+    /**
+     * Creates constraints with no limits: staff can work any number of hours at any time
+     */
+    public StaffConstraints() {
+        _defaultMaxMinutes = Integer.MAX_VALUE;
+        _maxMinutes = new HashMap<>();
+        _availability = new HashMap<>();
+    }
+
+    /**
+     * Sets the most hours in the week for staff without a maximum of their own
+     * @return the status of the request. Possible problems include: the hours are negative or more than the hours in
+     *         a week.
+     */
+    public String setDefaultMaxHours(int hours) {
+        if (hours < 0 || hours > HOURS_IN_WEEK) {
+            return "ERROR: Maximum hours given (" + hours + ") is invalid.";
+        }
+        _defaultMaxMinutes = hours * 60;
+        return "";
+    }
+
+    /**
+     * Sets the most hours in the week for the staff member, including the shifts they are already assigned to
+     * @return the status of the request. Possible problems include: the name is null, or the hours are negative or
+     *         more than the hours in a week.
+     */
+    public String setMaxHours(String fullName, int hours) {
+        if (fullName == null) {
+            return "ERROR: Invalid name given.";
+        }
+        if (hours < 0 || hours > HOURS_IN_WEEK) {
+            return "ERROR: Maximum hours given (" + hours + ") is invalid.";
+        }
+        _maxMinutes.put(Employee.normalizeName(fullName), hours * 60);
+        return "";
+    }
+
+    /**
+     * Adds a period the staff member is available to work. Once a staff member has a period, they can only be given
+     * shifts that are within one of their periods.
+     * @return the status of the request. Possible problems include: the name is null, the day is invalid, or the
+     *         times are invalid or not in order.
+     */
+    public String addAvailability(String fullName, String dayOfWeek, String startTime, String endTime) {
+        if (fullName == null) {
+            return "ERROR: Invalid name given.";
+        }
+
+        try {
+            TimePeriod period = new TimePeriod(dayOfWeek, startTime, endTime);
+            String name = Employee.normalizeName(fullName);
+            List<TimePeriod> periods = _availability.get(name);
+            if (periods == null) {
+                periods = new ArrayList<>();
+                _availability.put(name, periods);
+            }
+            periods.add(period);
+            return "";
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * @return the most minutes the employee can work in the week
+     */
+    int getMaxMinutes(Employee employee) {
+        Integer maxMinutes = _maxMinutes.get(employee.getNameKey());
+        return maxMinutes != null ? maxMinutes : _defaultMaxMinutes;
+    }
+
+    /**
+     * @return the periods the employee is available, or null if the employee is available at any time
+     */
+    List<TimePeriod> getAvailability(Employee employee) {
+        return _availability.get(employee.getNameKey());
+    }
+}
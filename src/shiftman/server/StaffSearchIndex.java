@@ -0,0 +1,233 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Search index of the names of the staff in a roster, for type-ahead search, see {@link #search(String, int)}. Each
+ * word of the given and family names of each employee is kept in a trie of lower case characters, so finding the
+ * names that start with a prefix, or come within one edit of starting with it, only visits the nodes along the prefix
+ * and those just off it, however many staff there are.
+ * <p>
+ * Searches can safely run concurrently with an employee being added: the children and employees of a node are never
+ * changed in place, only replaced by copies. Adding employees must not be done concurrently.
+ */
+public class StaffSearchIndex {
+    private static final int MIN_ONE_EDIT_LENGTH = 3; // shorter prefixes are within one edit of most names
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+    private static final Employee[] NO_EMPLOYEES = new Employee[0];
+
+    private final Node _root = new Node();
+
+    public void add(Employee employee) {
+        for (String word : employee.getNameWords()) { // distinct, as a node holds each employee once
+            Node node = _root;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.getOrAddChild(word.charAt(i));
+            }
+            node.addEmployee(employee);
+        }
+    }
+
+    /**
+     * Finds the staff whose names match the query, ignoring case. The last word of the query is the one being typed,
+     * and matches a name word that starts with it, or, once it has at least three characters, starts within one edit
+     * of it (a character added, removed or changed, or two adjacent characters swapped). Any other words of the query
+     * must each be the start of a word of the name, eg. "john smi" finds John Smith.
+     * @param limit the most employees to find
+     * @return the employees found, best first: those with a name word equal to the last word of the query, then those
+     *         with a name word starting with it, and then those within one edit. Within each, they are in order of
+     *         the matching word and then by name.
+     */
+    public List<Employee> search(String query, int limit) {
+        List<String> words = getWords(Employee.normalizeName(query));
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String prefix = words.get(words.size() - 1);
+        List<String> otherWords = words.subList(0, words.size() - 1);
+
+        Set<Employee> found = new LinkedHashSet<>();
+        Node node = _root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.getChild(prefix.charAt(i));
+        }
+        if (node != null) {
+            collect(node, otherWords, found, limit);
+        }
+        if (found.size() < limit && prefix.length() >= MIN_ONE_EDIT_LENGTH) {
+            Map<String, Node> oneEditAway = new TreeMap<>(); // by word, so the staff are found in order of word
+            findOneEditAway(_root, prefix, 0, false, new StringBuilder(), oneEditAway);
+            for (Node nearby : oneEditAway.values()) {
+                if (found.size() >= limit) {
+                    break;
+                }
+                collect(nearby, otherWords, found, limit);
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Adds the employees of the node and then of its descendants in order of label, ie. in order of name word, until
+     * the limit is reached
+     */
+    private static void collect(Node node, List<String> otherWords, Set<Employee> found, int limit) {
+        for (Employee employee : node._employees) {
+            if (found.size() >= limit) {
+                return;
+            }
+            if (otherWords.isEmpty() || startsAllWords(employee, otherWords)) {
+                found.add(employee);
+            }
+        }
+        for (Node child : node._children._nodes) {
+            if (found.size() >= limit) {
+                return;
+            }
+            collect(child, otherWords, found, limit);
+        }
+    }
+
+    /**
+     * Finds the nodes reached by following the prefix from the given character on, with exactly one edit
+     * @param edited true if an edit has already been made on the way to the node
+     * @param word the word of the node, ie. the labels on the way to it. Restored before returning.
+     * @param found the nodes found, by word
+     */
+    private static void findOneEditAway(Node node, String prefix, int index, boolean edited, StringBuilder word,
+            Map<String, Node> found) {
+        if (index == prefix.length()) {
+            if (edited) {
+                found.put(word.toString(), node);
+            }
+            return;
+        }
+
+        int length = word.length();
+        char next = prefix.charAt(index);
+        Node child = node.getChild(next);
+        if (child != null) {
+            findOneEditAway(child, prefix, index + 1, edited, word.append(next), found);
+            word.setLength(length);
+        }
+        if (edited) {
+            return;
+        }
+
+        findOneEditAway(node, prefix, index + 1, true, word, found); // character removed from the name
+        Children children = node._children;
+        for (int i = 0; i < children._labels.length; i++) {
+            if (children._labels[i] != next) {
+                word.append(children._labels[i]);
+                findOneEditAway(children._nodes[i], prefix, index + 1, true, word, found); // character changed
+                findOneEditAway(children._nodes[i], prefix, index, true, word, found); // character added to the name
+                word.setLength(length);
+            }
+        }
+        if (index + 1 < prefix.length() && prefix.charAt(index + 1) != next) { // adjacent characters swapped
+            Node swapped = node.getChild(prefix.charAt(index + 1));
+            swapped = swapped != null ? swapped.getChild(next) : null;
+            if (swapped != null) {
+                findOneEditAway(swapped, prefix, index + 2, true, word.append(prefix.charAt(index + 1)).append(next),
+                        found);
+                word.setLength(length);
+            }
+        }
+    }
+
+    private static boolean startsAllWords(Employee employee, List<String> prefixes) {
+        String[] words = employee.getNameWords();
+        for (String prefix : prefixes) {
+            boolean matched = false;
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the distinct words of a normalized name, in order, see {@link Employee#getNameWords()}
+     */
+    static String[] getDistinctWords(String name) {
+        Set<String> words = new LinkedHashSet<>(getWords(name));
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * @return the words of a normalized name or query, in order
+     */
+    private static List<String> getWords(String name) {
+        String trimmed = name.trim();
+        return trimmed.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(trimmed.split("\\s+"));
+    }
+
+    private static class Node {
+        volatile Children _children = new Children(NO_LABELS, NO_NODES);
+        volatile Employee[] _employees = NO_EMPLOYEES; // staff with a name word ending at this node, sorted by name
+
+        Node getChild(char label) {
+            Children children = _children;
+            int index = Arrays.binarySearch(children._labels, label);
+            return index >= 0 ? children._nodes[index] : null;
+        }
+
+        Node getOrAddChild(char label) {
+            Children children = _children;
+            int index = Arrays.binarySearch(children._labels, label);
+            if (index >= 0) {
+                return children._nodes[index];
+            }
+
+            index = -index - 1;
+            int size = children._labels.length;
+            char[] labels = new char[size + 1];
+            Node[] nodes = new Node[size + 1];
+            System.arraycopy(children._labels, 0, labels, 0, index);
+            System.arraycopy(children._nodes, 0, nodes, 0, index);
+            System.arraycopy(children._labels, index, labels, index + 1, size - index);
+            System.arraycopy(children._nodes, index, nodes, index + 1, size - index);
+            labels[index] = label;
+            nodes[index] = new Node();
+            _children = new Children(labels, nodes);
+            return nodes[index];
+        }
+
+        void addEmployee(Employee employee) {
+            Employee[] employees = _employees;
+            int index = -Arrays.binarySearch(employees, employee) - 1; // registered staff never have the same name
+            Employee[] added = new Employee[employees.length + 1];
+            System.arraycopy(employees, 0, added, 0, index);
+            System.arraycopy(employees, index, added, index + 1, employees.length - index);
+            added[index] = employee;
+            _employees = added;
+        }
+    }
+
+    /**
+     * The children of a node, sorted by label. Replaced as a whole so that the labels and nodes always match.
+     */
+    private static class Children {
+        final char[] _labels;
+        final Node[] _nodes;
+
+        Children(char[] labels, Node[] nodes) {
+            _labels = labels;
+            _nodes = nodes;
+        }
+    }
+}
@@ -1,47 +1,81 @@
 package shiftman.server;
 
-public class Time {
-    private int _hour;
-    private int _minute;
+public class Time implements Comparable<Time> {
+    private final short _minutes; // minute of the day, 0 to 1439
 
     public Time(String time) {
         if (!validFormat(time)) {
             throw new IllegalArgumentException("ERROR: Start/end time format is invalid");
         }
-        _hour = Integer.parseInt(time.substring(0, 2));
-        _minute = Integer.parseInt(time.substring(3, 5));
+        int hour = digit(time, 0) * 10 + digit(time, 1);
+        int minute = digit(time, 3) * 10 + digit(time, 4);
 
-        if (_hour > 23 || _hour < 0 || _minute > 59 || _minute < 0) {
+        if (hour > 23 || minute > 59) {
             throw new IllegalArgumentException("ERROR: Start/end time is invalid");
         }
+        _minutes = (short) (hour * 60 + minute);
     }
 
     /**
-     * @return the time converted to minutes
+     * @return the time converted to minutes since the start of the day
      */
-    private int getTotalMins() {
-        return _hour * 60 + _minute;
+    public int getTotalMins() {
+        return _minutes;
     }
 
     public boolean isBefore(Time other) {
-        return getTotalMins() < other.getTotalMins();
+        return _minutes < other._minutes;
+    }
+
+    /**
+     * Implementing comparable so that times can be ordered chronologically, eg. as keys of a sorted map
+     */
+    @Override
+    public int compareTo(Time other) {
+        return Integer.compare(_minutes, other._minutes);
     }
 
     /**
      * Checks if the time is in the correct format. The correct format should be hh:mm
      */
     private boolean validFormat(String time) {
-        return time.matches("\\d{2}:\\d{2}");
+        return time.length() == 5 && isDigit(time.charAt(0)) && isDigit(time.charAt(1)) && time.charAt(2) == ':' &&
+                isDigit(time.charAt(3)) && isDigit(time.charAt(4));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int digit(String time, int index) {
+        return time.charAt(index) - '0';
     }
 
     @Override
-    public String toString() { // Not sure if needed due to Shift and OpeningHours class
-        return String.format("%02d:%02d", _hour, _minute);
+    public String toString() {
+        return format(_minutes);
+    }
+
+    /**
+     * Formats a time given as minutes since the start of the day as hh:mm
+     */
+    public static String format(int totalMins) {
+        int hour = totalMins / 60;
+        int minute = totalMins % 60;
+        char[] chars = { (char) ('0' + hour / 10), (char) ('0' + hour % 10), ':', (char) ('0' + minute / 10), (char) ('0' + minute % 10) };
+        return new String(chars);
     }
 
     @Override
     public boolean equals(Object obj) {
-        Time other = (Time)obj;
-        return _hour == other._hour && _minute == other._minute;
+        if (obj instanceof Time) {
+            return _minutes == ((Time) obj)._minutes;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return _minutes;
     }
 }
\ No newline at end of file
@@ -3,16 +3,23 @@ package shiftman.server;
 import java.util.Comparator;
 
 public class TimePeriod {
-    private DayOfWeek _dayOfWeek;
-    private Time _startTime;
-    private Time _endTime;
+    /**
+     * Shared comparator for sorted collections of time periods. See {@link PeriodComparator}
+     */
+    public static final Comparator<TimePeriod> CHRONOLOGICAL_ORDER = new PeriodComparator();
+
+    private final DayOfWeek _dayOfWeek;
+    private final Time _startTime;
+    private final Time _endTime;
+    private final int _key; // day, start and end packed into one int, see packKey()
+    private String _timePeriod; // cached result of getTimePeriod()
+    private String _string; // cached result of toString()
 
     public TimePeriod(String dayOfWeek, String startTime, String endTime) {
-        if (!DayOfWeek.isValidDay(dayOfWeek)) {
+        _dayOfWeek = DayOfWeek.fromString(dayOfWeek);
+        if (_dayOfWeek == null) {
             throw new IllegalArgumentException("ERROR: Day given (" + dayOfWeek + ") is invalid.");
         }
-
-        _dayOfWeek = DayOfWeek.valueOf(dayOfWeek);
         _startTime = new Time(startTime);
         _endTime = new Time(endTime);
 
@@ -22,17 +29,63 @@ public class TimePeriod {
         if (_startTime.equals(_endTime)) {
             throw new IllegalArgumentException("ERROR: Start time cannot be the same as the end time");
         }
+        _key = packKey(_dayOfWeek, _startTime, _endTime);
+    }
+
+    /**
+     * Creates a time period with the same day, start time and end time as the given one, which has already been checked
+     */
+    TimePeriod(TimePeriod period) {
+        _dayOfWeek = period._dayOfWeek;
+        _startTime = period._startTime;
+        _endTime = period._endTime;
+        _key = period._key;
+    }
+
+    /**
+     * Packs the period into an int, with the day in the highest bits, then the start time and then the end time in
+     * minutes (11 bits each, as there are fewer than 2048 minutes in a day). Comparing keys orders the periods
+     * chronologically by day, then start time, then end time.
+     */
+    private static int packKey(DayOfWeek day, Time startTime, Time endTime) {
+        return (day.ordinal() << 22) | (startTime.getTotalMins() << 11) | endTime.getTotalMins();
+    }
+
+    /**
+     * @return the day, start time and end time of the period packed into an int, see {@link #packKey}. Used to store
+     *         the period compactly, eg. in a roster export
+     */
+    public int getKey() {
+        return _key;
+    }
+
+    /**
+     * @return the day and start time of the period, packed so that they can be compared as a single int
+     */
+    private int getDayAndStart() {
+        return _key >>> 11;
     }
 
     public DayOfWeek getDay() {
         return _dayOfWeek;
     }
 
+    public Time getStartTime() {
+        return _startTime;
+    }
+
+    public Time getEndTime() {
+        return _endTime;
+    }
+
     /**
      * Gets the time period without the day as a string. eg. "08:00-12:00"
      */
     public String getTimePeriod() {
-        return _startTime + "-" + _endTime;
+        if (_timePeriod == null) {
+            _timePeriod = _startTime + "-" + _endTime;
+        }
+        return _timePeriod;
     }
 
     /**
@@ -41,9 +94,9 @@ public class TimePeriod {
      * @return true if the time periods overlap, otherwise false
      */
     public boolean overlaps(TimePeriod other) {
-        if (_dayOfWeek.equals(other._dayOfWeek)) {
-            return (_startTime.isBefore(other._endTime) && other._startTime.isBefore(_endTime)) ||
-                    _startTime.equals(other._endTime) || _endTime.equals(other._startTime);
+        if (_dayOfWeek == other._dayOfWeek) { // shifts that touch are also treated as overlapping
+            return _startTime.getTotalMins() <= other._endTime.getTotalMins() &&
+                    other._startTime.getTotalMins() <= _endTime.getTotalMins();
         }
         return false;
     }
@@ -56,28 +109,34 @@ public class TimePeriod {
      * @return true if this time period is within the other time period, otherwise false
      */
     public boolean isWithin(TimePeriod other) {
-        if (_dayOfWeek.equals(other._dayOfWeek)) {
-            return (other._startTime.isBefore(_startTime) || _startTime.equals(other._startTime)) &&
-                    (_endTime.isBefore(other._endTime) || _endTime.equals(other._endTime));
+        if (_dayOfWeek == other._dayOfWeek) {
+            return other._startTime.getTotalMins() <= _startTime.getTotalMins() &&
+                    _endTime.getTotalMins() <= other._endTime.getTotalMins();
         }
         return false;
     }
 
     @Override
     public String toString() {
-        return _dayOfWeek + "[" + _startTime + "-" + _endTime + "]";
+        if (_string == null) {
+            _string = _dayOfWeek + "[" + getTimePeriod() + "]";
+        }
+        return _string;
     }
 
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof TimePeriod) {
-            TimePeriod other = (TimePeriod) obj;
-            return _dayOfWeek.equals(other._dayOfWeek) && _startTime.toString().equals(other._startTime.toString()) &&
-                    _endTime.toString().equals(other._endTime.toString());
+            return _key == ((TimePeriod) obj)._key;
         }
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return _key;
+    }
+
     /**
      * Comparator class to compare time periods, allowing time periods to be sorted.
      */
@@ -90,21 +149,9 @@ public class TimePeriod {
          *         1 if first time period is after the second
          */
         public int compare(TimePeriod o1, TimePeriod o2) {
-            DayOfWeek day1 = o1.getDay();
-            DayOfWeek day2 = o2.getDay();
-
-            // compare the order of the days to the order of the DayOfWeek enum. ie. should to sorted from Monday-Sunday
-            if (day1.ordinal() > day2.ordinal()) {
-                return 1;
-            } else if (day1.ordinal() < day2.ordinal()) {
-                return -1;
-            }
-            // if same day, then compare start times
-            if (o1._startTime.isBefore(o2._startTime)) {
-                return -1;
-            } else if (o2._startTime.isBefore(o1._startTime)) {
-                return 1;
-            } else return 0;
+            // the day is packed above the start time, so days are ordered as in the DayOfWeek enum ie. Monday-Sunday,
+            // and periods on the same day are ordered by start time
+            return Integer.compare(o1.getDayAndStart(), o2.getDayAndStart());
         }
     }
 }
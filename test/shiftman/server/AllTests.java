@@ -0,0 +1,28 @@
+package shiftman.server;
+
+/**
+ * Runs all the tests of the server. Each test class can also be run on its own. The tests are in the same package as
+ * the server, so that they can also check the parts of the server that are not public, and are run with the server
+ * classes on the class path, eg.
+ * <pre>
+ * javac -encoding UTF-8 -d out src/shiftman/server/*.java src/shiftman/client/*.java test/shiftman/server/*.java
+ * java -cp out shiftman.server.AllTests
+ * </pre>
+ * A test that fails throws an AssertionError, so the run stops with the first failure.
+ */
+public class AllTests {
+    public static void main(String[] args) throws Exception {
+        BatchTest.main(args);
+        RecoveryTest.main(args);
+        ExportImportTest.main(args);
+        ShiftManMetricsTest.main(args);
+        ShiftManServiceTest.main(args);
+        RosterSolverTest.main(args);
+        RosterSnapshotTest.main(args);
+        RosterSubscriptionTest.main(args);
+        RosterIssueReportTest.main(args);
+        StaffPagingTest.main(args);
+        StaffSearchIndexTest.main(args);
+        System.out.println("All tests passed");
+    }
+}
@@ -0,0 +1,174 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests of the batch requests of {@link ShiftManServer}: every row is checked against the roster and the rows before
+ * it before any row is applied, the rows that pass are all applied, and a batch is applied as a whole, without the
+ * changes of other requests interleaved with its rows
+ */
+public class BatchTest {
+    private static final int BATCHES = 200;
+
+    public static void main(String[] args) throws Exception {
+        addsShiftsThatPass();
+        registersStaffThatPass();
+        assignsStaffThatPass();
+        changesNothingWhenNoRowPasses();
+        refusesBatchWithoutRoster();
+        appliesBatchesWhole();
+        System.out.println("BatchTest OK");
+    }
+
+    private static void addsShiftsThatPass() {
+        ShiftManServer server = makeRoster();
+        List<String> statuses = server.addShiftsBatch(Arrays.asList(
+                new String[] { "Monday", "13:00", "15:00", "1" },
+                new String[] { "Monday", "10:00", "12:00", "1" }, // overlaps a shift of the roster
+                new String[] { "Monday", "14:00", "16:00", "2" }, // overlaps the first row
+                new String[] { "Monday", "15:00", "17:00", "2" }, // touches the first row
+                new String[] { "Monday", "15:30", "17:00", "2" },
+                new String[] { "Funday", "09:00", "12:00", "1" },
+                new String[] { "Tuesday", "09:00", "12:00", "1" }, // outside the working hours
+                new String[] { "Monday", "09:00", "12:00" },
+                null));
+        String overlaps = "ERROR: Given shift overlaps with an existing shift";
+        Check.equal(Arrays.asList("", overlaps, overlaps, overlaps, "", "ERROR: Day given (Funday) is invalid.",
+                "ERROR: Given shift is not within the working hours", "ERROR: Invalid row, expected 4 values.",
+                "ERROR: Invalid row, expected 4 values."), statuses, "statuses of the rows");
+        Check.equal(Arrays.asList("Monday[09:00-12:00]", "Monday[13:00-15:00]", "Monday[15:30-17:00]"),
+                server.understaffedShifts(), "shifts of the roster");
+    }
+
+    private static void registersStaffThatPass() {
+        ShiftManServer server = makeRoster();
+        List<String> statuses = server.registerStaffBatch(Arrays.asList(
+                new String[] { "Hari", "Seldon" },
+                new String[] { "Bayta", "Darell" }, // already registered
+                new String[] { "hari", "SELDON" }, // the first row, in another case
+                new String[] { "Ebling", "" },
+                new String[] { "Ebling" },
+                new String[] { "Ebling", "Mis" }));
+        Check.equal(Arrays.asList("", "ERROR: \"Bayta Darell\" is already registered",
+                "ERROR: \"hari SELDON\" is already registered", "ERROR: Invalid name given.",
+                "ERROR: Invalid row, expected 2 values.", ""), statuses, "statuses of the rows");
+        Check.equal(Arrays.asList("Bayta Darell", "Ebling Mis", "Hari Seldon"), server.getRegisteredStaff(),
+                "staff of the roster");
+    }
+
+    private static void assignsStaffThatPass() {
+        ShiftManServer server = makeRoster();
+        server.registerStaff("Hari", "Seldon");
+        server.registerStaff("Ebling", "Mis");
+        List<String> statuses = server.assignStaffBatch(Arrays.asList(
+                new String[] { "Monday", "09:00", "12:00", "Hari", "Seldon", "true" },
+                new String[] { "Monday", "09:00", "12:00", "Bayta", "Darell", "true" }, // second manager
+                new String[] { "Monday", "09:00", "12:00", "Hari", "Seldon", "false" }, // already the manager
+                new String[] { "Monday", "09:00", "12:00", "Bayta", "Darell", "false" },
+                new String[] { "Monday", "09:00", "12:00", "Gaal", "Dornick", "false" },
+                new String[] { "Monday", "13:00", "15:00", "Ebling", "Mis", "false" },
+                new String[] { "Monday", "09:00", "12:00", "Ebling", "Mis", "maybe" },
+                new String[] { "Monday", "09:00", "12:00", "Ebling", "Mis", "false" }));
+        Check.equal(Arrays.asList("", "ERROR: A manager is already assigned to this shift",
+                "ERROR: Hari Seldon is already assigned to this shift", "",
+                "ERROR: \"Gaal Dornick\" is not registered.", "ERROR: Shift given does not exist",
+                "ERROR: Manager flag given (maybe) is invalid.", ""), statuses, "statuses of the rows");
+        Check.equal(Arrays.asList("Corner Shop", "Monday 09:00-17:00",
+                "Monday[09:00-12:00] Manager:Seldon, Hari [Bayta Darell, Ebling Mis]"),
+                server.getRosterForDay("Monday"), "roster of the day");
+    }
+
+    private static void changesNothingWhenNoRowPasses() {
+        ShiftManServer server = makeRoster();
+        String before = describe(server);
+        server.addShiftsBatch(Arrays.asList(new String[] { "Monday", "08:00", "10:00", "1" },
+                new String[] { "Sunday", "09:00", "10:00", "1" }));
+        server.registerStaffBatch(Arrays.asList(new String[] { "Bayta", "Darell" }, new String[] { "", "Seldon" }));
+        server.assignStaffBatch(Collections.singletonList(
+                new String[] { "Monday", "09:00", "12:00", "Hari", "Seldon", "true" }));
+        server.addShiftsBatch(Collections.<String[]>emptyList());
+        Check.equal(before, describe(server), "roster after batches whose rows all failed");
+    }
+
+    private static void refusesBatchWithoutRoster() {
+        ShiftManServer server = new ShiftManServer();
+        List<String> error = Arrays.asList("ERROR: no roster has been created");
+        List<String[]> rows = Arrays.asList(new String[] { "Monday", "09:00", "12:00", "1" },
+                new String[] { "Monday", "13:00", "15:00", "1" });
+        Check.equal(error, server.addShiftsBatch(rows), "shifts added without a roster");
+        Check.equal(error, server.registerStaffBatch(Collections.singletonList(new String[] { "Hari", "Seldon" })),
+                "staff registered without a roster");
+        Check.equal(error, server.assignStaffBatch(Collections.singletonList(
+                new String[] { "Monday", "09:00", "12:00", "Hari", "Seldon", "true" })),
+                "staff assigned without a roster");
+    }
+
+    /**
+     * Two threads add the same batches of shifts, one shift on each of several days, at the same time. Whichever
+     * adds a batch first must add all of its shifts, so the other finds all of them already there.
+     */
+    private static void appliesBatchesWhole() throws InterruptedException {
+        final ConcurrentShiftManServer server = new ConcurrentShiftManServer();
+        server.newRoster("Corner Shop");
+        final String[] days = { "Monday", "Wednesday", "Friday" };
+        for (String day : days) {
+            server.setWorkingHours(day, "00:00", "23:59");
+        }
+        final List<List<String[]>> batches = new ArrayList<>();
+        for (int i = 0; i < BATCHES; i++) {
+            List<String[]> batch = new ArrayList<>();
+            for (String day : days) {
+                batch.add(new String[] { day, getTime(i * 6), getTime(i * 6 + 5), "1" });
+            }
+            batches.add(batch);
+        }
+
+        final List<List<String>> statuses = Collections.synchronizedList(new ArrayList<List<String>>());
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (List<String[]> batch : batches) {
+                        statuses.add(server.addShiftsBatch(batch));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int added = 0;
+        for (List<String> batchStatuses : statuses) {
+            boolean first = batchStatuses.get(0).isEmpty();
+            for (String status : batchStatuses) {
+                Check.equal(first, status.isEmpty(), "status of a row like that of the first row: " + status);
+            }
+            added += first ? 1 : 0;
+        }
+        Check.equal(BATCHES, added, "batches added");
+        Check.equal(BATCHES * days.length, server.understaffedShifts().size(), "shifts added");
+    }
+
+    private static ShiftManServer makeRoster() {
+        ShiftManServer server = new ShiftManServer();
+        Check.equal("", server.newRoster("Corner Shop"), "newRoster");
+        Check.equal("", server.setWorkingHours("Monday", "09:00", "17:00"), "setWorkingHours");
+        Check.equal("", server.addShift("Monday", "09:00", "12:00", "2"), "addShift");
+        Check.equal("", server.registerStaff("Bayta", "Darell"), "registerStaff");
+        return server;
+    }
+
+    private static String describe(ShiftManServer server) {
+        return server.getRegisteredStaff() + "\n" + server.displayRoster();
+    }
+
+    private static String getTime(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
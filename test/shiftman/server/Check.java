@@ -0,0 +1,24 @@
+package shiftman.server;
+
+import java.util.Objects;
+
+/**
+ * The checks made by the tests, see {@link AllTests}. A check that fails throws an AssertionError saying what was
+ * checked, which stops the test.
+ */
+final class Check {
+    private Check() {
+    }
+
+    static void isTrue(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    static void equal(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package shiftman.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+/**
+ * Tests of exporting a roster with {@link ShiftManServer#exportRoster} and importing it again with
+ * {@link ShiftManServer#importRoster}, see {@link RosterWriter} and {@link RosterReader}
+ */
+public class ExportImportTest {
+    private static final String[][] STAFF = {
+            { "Bayta", "Darell" },
+            { "Hari", "Seldon" },
+            { "Zoë", "Ångström" }, // not ASCII
+            { "Gaal", "Dornick" },
+            { "Salvor", "Hardin" } // never assigned
+    };
+
+    public static void main(String[] args) throws Exception {
+        importsWhatWasExported();
+        importedRosterCanBeChanged();
+        keepsRosterWhenNothingToImport();
+        keepsRosterWhenExportIsCutShort();
+        refusesStringLongerThanAnyName();
+        refusesExportWithoutRoster();
+        System.out.println("ExportImportTest OK");
+    }
+
+    private static void importsWhatWasExported() throws IOException {
+        ShiftManServer server = new ShiftManServer();
+        makeRoster(server);
+        byte[] exported = export(server);
+
+        ShiftManServer imported = new ShiftManServer();
+        Check.equal("", importRoster(imported, exported), "importRoster");
+        Check.equal(describe(server), describe(imported), "imported roster");
+        Check.isTrue(Arrays.equals(exported, export(imported)), "roster exported again is the same");
+    }
+
+    private static void importedRosterCanBeChanged() throws IOException {
+        ShiftManServer server = new ShiftManServer();
+        makeRoster(server);
+        ShiftManServer imported = new ShiftManServer();
+        importRoster(imported, export(server));
+
+        Check.equal("ERROR: \"Hari Seldon\" is already registered", imported.registerStaff("Hari", "Seldon"),
+                "registering imported staff again");
+        Check.equal("ERROR: A manager is already assigned to this shift",
+                imported.assignStaff("Monday", "09:00", "12:00", "Salvor", "Hardin", true),
+                "assigning a second manager to an imported shift");
+        Check.equal("", imported.assignStaff("Monday", "09:00", "12:00", "Salvor", "Hardin", false),
+                "assigning imported staff to an imported shift");
+        Check.equal(Arrays.asList("Hardin, Salvor", "Monday[09:00-12:00]"),
+                imported.getRosterForWorker("Salvor Hardin"), "roster for imported staff");
+    }
+
+    private static void keepsRosterWhenNothingToImport() throws IOException {
+        ShiftManServer server = new ShiftManServer();
+        makeRoster(server);
+        String before = describe(server);
+
+        Check.equal("ERROR: No roster to import", importRoster(server, new byte[0]), "importing nothing");
+        Check.equal(before, describe(server), "roster after importing nothing");
+    }
+
+    private static void keepsRosterWhenExportIsCutShort() throws IOException {
+        ShiftManServer server = new ShiftManServer();
+        makeRoster(server);
+        byte[] exported = export(server);
+        ShiftManServer other = new ShiftManServer();
+        Check.equal("", other.newRoster("Other Shop"), "newRoster");
+        String before = describe(other);
+
+        try {
+            importRoster(other, Arrays.copyOf(exported, exported.length - 3));
+            throw new AssertionError("roster cut short was imported");
+        } catch (IOException e) {
+            // expected
+        }
+        Check.equal(before, describe(other), "roster after import failed");
+    }
+
+    /**
+     * The length of a string is checked before space is allocated for it, as a corrupt length could be up to 2 GiB
+     */
+    private static void refusesStringLongerThanAnyName() {
+        ByteBuffer exported = ByteBuffer.allocate(16);
+        exported.putInt(RosterWriter.MAGIC).putShort(RosterWriter.VERSION).put(RosterWriter.SHOP);
+        exported.put(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 }); // shop name length
+        exported.put(new byte[] { 'S', 'h', 'o', 'p' });
+        try {
+            importRoster(new ShiftManServer(), exported.array());
+            throw new AssertionError("shop name of 2 GiB was imported");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void refusesExportWithoutRoster() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Check.equal("ERROR: no roster has been created", new ShiftManServer().exportRoster(Channels.newChannel(out)),
+                "exporting without a roster");
+        Check.equal(0, out.size(), "bytes exported without a roster");
+    }
+
+    private static void makeRoster(ShiftManServer server) {
+        Check.equal("", server.newRoster("eScooters R Us"), "newRoster");
+        for (String[] staff : STAFF) {
+            Check.equal("", server.registerStaff(staff[0], staff[1]), "registerStaff");
+        }
+        for (String day : new String[] { "Monday", "Wednesday", "Sunday" }) {
+            Check.equal("", server.setWorkingHours(day, "09:00", "17:00"), "setWorkingHours");
+            Check.equal("", server.addShift(day, "09:00", "12:00", "1"), "addShift");
+            Check.equal("", server.addShift(day, "13:00", "17:00", "2"), "addShift");
+            Check.equal("", server.assignStaff(day, "09:00", "12:00", "Bayta", "Darell", true), "assignStaff");
+            Check.equal("", server.assignStaff(day, "09:00", "12:00", "Zoë", "Ångström", false), "assignStaff");
+        }
+        Check.equal("", server.assignStaff("Monday", "13:00", "17:00", "Hari", "Seldon", true), "assignStaff");
+        Check.equal("", server.assignStaff("Monday", "13:00", "17:00", "Gaal", "Dornick", false), "assignStaff");
+        Check.equal("", server.assignStaff("Sunday", "09:00", "12:00", "Gaal", "Dornick", false), "assignStaff");
+    }
+
+    private static String describe(ShiftManServer server) {
+        StringBuilder sb = new StringBuilder(server.displayRoster());
+        sb.append(server.getRegisteredStaff()).append(server.getUnassignedStaff());
+        sb.append(server.shiftsWithoutManagers()).append(server.understaffedShifts());
+        sb.append(server.overstaffedShifts());
+        for (String[] staff : STAFF) {
+            String name = staff[0] + " " + staff[1];
+            sb.append(server.getRosterForWorker(name)).append(server.getShiftsManagedBy(name));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] export(ShiftManServer server) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Check.equal("", server.exportRoster(Channels.newChannel(out)), "exportRoster");
+        return out.toByteArray();
+    }
+
+    private static String importRoster(ShiftManServer server, byte[] exported) throws IOException {
+        return server.importRoster(Channels.newChannel(new ByteArrayInputStream(exported)));
+    }
+}
@@ -0,0 +1,324 @@
+package shiftman.server;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Tests of {@link PersistentShiftManServer} recovering the roster saved in its directory: from the journal alone,
+ * from a snapshot and the journal that follows it, and after the process stopped part way through writing. A
+ * damaged snapshot or journal must stop the server being created, and leave the files as they were.
+ */
+public class RecoveryTest {
+    private static final String SNAPSHOT_FILE = "roster.snapshot";
+    private static final String JOURNAL_FILE = "roster.journal";
+    private static final int JOURNAL_HEADER_SIZE = 4 + 2 + 8;
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final byte STAFF_REGISTERED = 3;
+
+    public static void main(String[] args) throws Exception {
+        recoversFromJournal();
+        recoversFromSnapshotAndJournal();
+        recoversWhenStoppedBeforeNewJournal();
+        discardsPartlyWrittenRecord();
+        startsOverWhenJournalHeaderWasNotWritten();
+        refusesDamagedSnapshot();
+        refusesIncompleteSnapshot();
+        refusesDamagedJournalHeader();
+        refusesDamagedRecordBeforeIntactOnes();
+        refusesRecordWithInvalidStringLength();
+        refusesJournalWithoutItsSnapshot();
+        System.out.println("RecoveryTest OK");
+    }
+
+    private static void recoversFromJournal() throws IOException {
+        Path directory = Files.createTempDirectory("shiftman");
+        try {
+            PersistentShiftManServer server = new PersistentShiftManServer(directory, 0);
+            makeRoster(server);
+            String expected = describe(server);
+            server.close();
+
+            Check.equal(expected, describe(reopen(directory)), "roster recovered from the journal");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void recoversFromSnapshotAndJournal() throws IOException {
+        Path directory = Files.createTempDirectory("shiftman");
+        try {
+            PersistentShiftManServer server = new PersistentShiftManServer(directory, 0);
+            makeRoster(server);
+            server.snapshot();
+            makeMoreChanges(server);
+            String expected = describe(server);
+            server.close();
+
+            PersistentShiftManServer recovered = new PersistentShiftManServer(directory, 0);
+            Check.equal(expected, describe(recovered), "roster recovered from the snapshot and journal");
+            Check.equal("", recovered.registerStaff("Late", "Starter"), "change after recovery");
+            expected = describe(recovered);
+            recovered.close();
+            Check.equal(expected, describe(reopen(directory)), "change after recovery recovered");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * The process stopped once the new snapshot was in place but before the new journal was started, so the journal
+     * is the one the snapshot was taken from. All its changes are in the snapshot, so it must not be replayed again.
+     */
+    private static void recoversWhenStoppedBeforeNewJournal() throws IOException {
+        Path directory = Files.createTempDirectory("shiftman");
+        try {
+            PersistentShiftManServer server = new PersistentShiftManServer(directory, 0);
+            makeRoster(server);
+            Path journalFile = directory.resolve(JOURNAL_FILE);
+            Path oldJournal = Files.copy(journalFile, directory.resolve(JOURNAL_FILE + ".old"));
+            server.snapshot();
+            String expected = describe(server);
+            server.close();
+            Files.move(oldJournal, journalFile, StandardCopyOption.REPLACE_EXISTING);
+
+            PersistentShiftManServer recovered = new PersistentShiftManServer(directory, 0);
+            Check.equal(expected, describe(recovered), "roster recovered from the snapshot and the old journal");
+            makeMoreChanges(recovered);
+            expected = describe(recovered);
+            recovered.close();
+            Check.equal(expected, describe(reopen(directory)), "changes saved in the new journal");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void discardsPartlyWrittenRecord() throws IOException {
+        Path directory = Files.createTempDirectory("shiftman");
+        try {
+            PersistentShiftManServer server = new PersistentShiftManServer(directory, 0);
+            makeRoster(server);
+            String expected = describe(server);
+            server.close();
+            Path journalFile = directory.resolve(JOURNAL_FILE);
+            try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+                file.seek(file.length());
+                file.write(new byte[] { 0, 0, 0, 40, 1, 2 }); // the start of a record, cut short
+            }
+
+            PersistentShiftManServer recovered = new PersistentShiftManServer(directory, 0);
+            Check.equal(expected, describe(recovered), "roster recovered without the partly written record");
+            makeMoreChanges(recovered);
+            expected = describe(recovered);
+            recovered.close();
+            Check.equal(expected, describe(reopen(directory)), "changes saved after the partly written record");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * The process stopped while the very first journal was being created, before anything was saved in it
+     */
+    private static void startsOverWhenJournalHeaderWasNotWritten() throws IOException {
+        Path directory = Files.createTempDirectory("shiftman");
+        try {
+            new PersistentShiftManServer(directory, 0).close();
+            truncate(directory.resolve(JOURNAL_FILE), 5);
+
+            PersistentShiftManServer recovered = new PersistentShiftManServer(directory, 0);
+            Check.equal(Arrays.asList("ERROR: no roster has been created"), recovered.getRegisteredStaff(),
+                    "no roster recovered");
+            makeRoster(recovered);
+            String expected = describe(recovered);
+            recovered.close();
+            Check.equal(expected, describe(reopen(directory)), "roster saved in the new journal");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void refusesDamagedSnapshot() throws IOException {
+        Path directory = makeSavedRoster();
+        try {
+            overwrite(directory.resolve(SNAPSHOT_FILE), 0, (byte) 0);
+            checkRefused(directory, "snapshot with a damaged header");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void refusesIncompleteSnapshot() throws IOException {
+        Path directory = makeSavedRoster();
+        try {
+            Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            truncate(snapshotFile, Files.size(snapshotFile) - 2);
+            checkRefused(directory, "snapshot missing its end");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void refusesDamagedJournalHeader() throws IOException {
+        Path directory = makeSavedRoster();
+        try {
+            overwrite(directory.resolve(JOURNAL_FILE), 0, (byte) 0);
+            checkRefused(directory, "journal with a damaged header");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Only the last record can have been left incomplete when the process stopped, so a damaged record followed by
+     * intact records means the journal itself is damaged, and the changes after it must not be discarded
+     */
+    private static void refusesDamagedRecordBeforeIntactOnes() throws IOException {
+        Path directory = makeSavedRoster();
+        try {
+            Path journalFile = directory.resolve(JOURNAL_FILE);
+            byte[] journal = Files.readAllBytes(journalFile);
+            int payload = JOURNAL_HEADER_SIZE + RECORD_HEADER_SIZE;
+            overwrite(journalFile, payload + 1, (byte) (journal[payload + 1] + 1)); // the first record after its type
+            checkRefused(directory, "journal with a damaged record before intact ones");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * A record with a valid checksum whose content is invalid, eg. written by a different version of the server
+     */
+    private static void refusesRecordWithInvalidStringLength() throws IOException {
+        Path directory = makeSavedRoster();
+        try {
+            ByteBuffer payload = ByteBuffer.allocate(1 + 4);
+            payload.put(STAFF_REGISTERED).putInt(-1).flip(); // given name of -1 bytes
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.remaining());
+            record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload);
+            try (RandomAccessFile file = new RandomAccessFile(directory.resolve(JOURNAL_FILE).toFile(), "rw")) {
+                file.seek(file.length());
+                file.write(record.array());
+            }
+            checkRefused(directory, "journal with a record with a negative string length");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * The journal follows a snapshot that is missing, so the changes in that snapshot are lost if the journal is
+     * replayed on its own, or replaced by an empty one
+     */
+    private static void refusesJournalWithoutItsSnapshot() throws IOException {
+        Path directory = makeSavedRoster();
+        try {
+            Files.delete(directory.resolve(SNAPSHOT_FILE));
+            checkRefused(directory, "journal whose snapshot is missing");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Checks that a server cannot be created from the files in the directory, and that trying leaves them unchanged
+     */
+    private static void checkRefused(Path directory, String what) throws IOException {
+        Map<String, ByteBuffer> files = readFiles(directory);
+        try {
+            new PersistentShiftManServer(directory, 0).close();
+            throw new AssertionError(what + ": recovered");
+        } catch (IOException e) {
+            // expected
+        }
+        Check.equal(files, readFiles(directory), what + ": files after recovery failed");
+    }
+
+    /**
+     * @return a directory holding a roster saved in a snapshot and the journal that follows it
+     */
+    private static Path makeSavedRoster() throws IOException {
+        Path directory = Files.createTempDirectory("shiftman");
+        PersistentShiftManServer server = new PersistentShiftManServer(directory, 0);
+        makeRoster(server);
+        server.snapshot();
+        makeMoreChanges(server);
+        server.close();
+        return directory;
+    }
+
+    private static void makeRoster(ShiftManServer server) {
+        Check.equal("", server.newRoster("Corner Shop"), "newRoster");
+        Check.equal("", server.setWorkingHours("Monday", "09:00", "17:00"), "setWorkingHours");
+        Check.equal("", server.registerStaff("Bayta", "Darell"), "registerStaff");
+        Check.equal("", server.registerStaff("Hari", "Seldon"), "registerStaff");
+        Check.equal("", server.addShift("Monday", "09:00", "12:00", "1"), "addShift");
+        Check.equal("", server.assignStaff("Monday", "09:00", "12:00", "Bayta", "Darell", true), "assignStaff");
+        Check.equal(Arrays.asList("", "", "ERROR: \"Hari Seldon\" is already registered"),
+                server.registerStaffBatch(Arrays.asList(new String[] { "Ebling", "Mis" },
+                        new String[] { "Dors", "Venabili" }, new String[] { "Hari", "Seldon" })),
+                "registerStaffBatch");
+    }
+
+    private static void makeMoreChanges(ShiftManServer server) {
+        Check.equal("", server.setWorkingHours("Tuesday", "10:00", "16:00"), "setWorkingHours");
+        Check.equal("", server.addShift("Tuesday", "10:00", "13:00", "2"), "addShift");
+        Check.equal("", server.assignStaff("Tuesday", "10:00", "13:00", "Hari", "Seldon", false), "assignStaff");
+        Check.equal("", server.assignStaff("Tuesday", "10:00", "13:00", "Dors", "Venabili", true), "assignStaff");
+    }
+
+    /**
+     * @return a server recovered from the directory, already closed again so that it saves nothing more
+     */
+    private static PersistentShiftManServer reopen(Path directory) throws IOException {
+        PersistentShiftManServer server = new PersistentShiftManServer(directory, 0);
+        server.close();
+        return server;
+    }
+
+    private static String describe(ShiftManServer server) {
+        return server.getRegisteredStaff() + "\n" + server.displayRoster();
+    }
+
+    private static void overwrite(Path file, long position, byte value) throws IOException {
+        try (RandomAccessFile access = new RandomAccessFile(file.toFile(), "rw")) {
+            access.seek(position);
+            access.write(value);
+        }
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (RandomAccessFile access = new RandomAccessFile(file.toFile(), "rw")) {
+            access.setLength(length);
+        }
+    }
+
+    private static Map<String, ByteBuffer> readFiles(Path directory) throws IOException {
+        Map<String, ByteBuffer> files = new TreeMap<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (Path path : paths) {
+                files.put(path.getFileName().toString(), ByteBuffer.wrap(Files.readAllBytes(path)));
+            }
+        }
+        return files;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,142 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests of {@link ShiftManServer#reportRosterIssues()}, see {@link RosterIssueReport}: the report agrees with the
+ * queries for each kind of issue, is kept until the roster changes, and its issues all agree with each other while the
+ * roster is being changed
+ */
+public class RosterIssueReportTest {
+    private static final String[] HEADINGS = { "Shifts without a manager:", "Understaffed shifts:",
+            "Overstaffed shifts:", "Unassigned staff:" };
+    private static final int SHIFTS_PER_DAY = 40;
+
+    public static void main(String[] args) throws Exception {
+        reportsEveryKindOfIssue();
+        reportsNoIssues();
+        keepsReportUntilRosterChanges();
+        agreesWithItselfWhileChangesAreMade();
+        System.out.println("RosterIssueReportTest OK");
+    }
+
+    private static void reportsEveryKindOfIssue() {
+        ShiftManServer server = new ShiftManServer();
+        Check.equal("ERROR: no roster has been created", server.reportRosterIssues(), "report without a roster");
+        server.newRoster("Corner Shop");
+        for (String day : new String[] { "Monday", "Wednesday", "Sunday" }) {
+            server.setWorkingHours(day, "09:00", "17:00");
+        }
+        server.addShift("Sunday", "09:00", "12:00", "1");
+        server.addShift("Monday", "13:00", "15:00", "2");
+        server.addShift("Monday", "09:00", "12:00", "1");
+        server.addShift("Wednesday", "09:00", "12:00", "1");
+        for (String[] staff : new String[][] { { "Hari", "Seldon" }, { "Bayta", "Darell" }, { "Ebling", "Mis" },
+                { "Gaal", "Dornick" }, { "Salvor", "Hardin" }, { "Dors", "Venabili" } }) {
+            server.registerStaff(staff[0], staff[1]);
+        }
+        server.assignStaff("Monday", "09:00", "12:00", "Hari", "Seldon", true);
+        server.assignStaff("Monday", "09:00", "12:00", "Bayta", "Darell", false);
+        server.assignStaff("Monday", "13:00", "15:00", "Bayta", "Darell", false);
+        server.assignStaff("Wednesday", "09:00", "12:00", "Hari", "Seldon", true);
+        server.assignStaff("Wednesday", "09:00", "12:00", "Ebling", "Mis", false);
+        server.assignStaff("Wednesday", "09:00", "12:00", "Gaal", "Dornick", false);
+
+        String report = server.reportRosterIssues();
+        Check.equal("Shifts without a manager:\n\tMonday[13:00-15:00]\n\tSunday[09:00-12:00]\n"
+                + "Understaffed shifts:\n\tMonday[13:00-15:00]\n\tSunday[09:00-12:00]\n"
+                + "Overstaffed shifts:\n\tWednesday[09:00-12:00]\n"
+                + "Unassigned staff:\n\tSalvor Hardin\n\tDors Venabili\n", report, "report");
+        Check.equal(server.shiftsWithoutManagers(), getIssues(report, 0), "shifts without a manager");
+        Check.equal(server.understaffedShifts(), getIssues(report, 1), "understaffed shifts");
+        Check.equal(server.overstaffedShifts(), getIssues(report, 2), "overstaffed shifts");
+        Check.equal(server.getUnassignedStaff(), getIssues(report, 3), "unassigned staff");
+    }
+
+    private static void reportsNoIssues() {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        Check.equal("Shifts without a manager:\n\t(none)\nUnderstaffed shifts:\n\t(none)\n"
+                + "Overstaffed shifts:\n\t(none)\nUnassigned staff:\n\t(none)\n", server.reportRosterIssues(),
+                "report of an empty roster");
+    }
+
+    private static void keepsReportUntilRosterChanges() {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        server.registerStaff("Hari", "Seldon");
+        String report = server.reportRosterIssues();
+        Check.isTrue(report == server.reportRosterIssues(), "report made again while the roster is unchanged");
+
+        server.registerStaff("Bayta", "Darell");
+        String changed = server.reportRosterIssues();
+        Check.equal(Arrays.asList("Bayta Darell", "Hari Seldon"), getIssues(changed, 3), "staff once one is added");
+        server.registerStaff("Bayta", "Darell"); // rejected, so no change
+        Check.isTrue(changed == server.reportRosterIssues(), "report made again after a rejected change");
+
+        server.newRoster("Corner Shop");
+        Check.equal(new ArrayList<String>(), getIssues(server.reportRosterIssues(), 3), "staff of a new roster");
+    }
+
+    /**
+     * Assigns one worker to each shift, all of which need one worker, while reports are made. In every report, each
+     * understaffed shift must be matched by an unassigned staff member, as they were all seen at the same time.
+     */
+    private static void agreesWithItselfWhileChangesAreMade() throws InterruptedException {
+        final ConcurrentShiftManServer server = new ConcurrentShiftManServer();
+        server.newRoster("Corner Shop");
+        final List<String[]> shifts = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            server.setWorkingHours(day.toString(), "00:00", "23:59");
+            for (int i = 0; i < SHIFTS_PER_DAY; i++) {
+                String[] shift = { day.toString(), getTime(i * 30), getTime(i * 30 + 20) };
+                Check.equal("", server.addShift(shift[0], shift[1], shift[2], "1"), "addShift");
+                Check.equal("", server.registerStaff("Given" + shifts.size(), "Family"), "registerStaff");
+                shifts.add(shift);
+            }
+        }
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < shifts.size(); i++) {
+                    String[] shift = shifts.get(i);
+                    server.assignStaff(shift[0], shift[1], shift[2], "Given" + i, "Family", false);
+                }
+            }
+        });
+        writer.start();
+
+        int reports = 0;
+        while (writer.isAlive() || reports == 0) {
+            String report = server.reportRosterIssues();
+            Check.equal(getIssues(report, 1).size(), getIssues(report, 3).size(),
+                    "understaffed shifts and unassigned staff in the same report");
+            reports++;
+        }
+        writer.join();
+        Check.equal(new ArrayList<String>(), getIssues(server.reportRosterIssues(), 3), "staff left unassigned");
+    }
+
+    /**
+     * @return the issues under one of the headings of the report, in order
+     */
+    private static List<String> getIssues(String report, int heading) {
+        String text = report.substring(report.indexOf(HEADINGS[heading]) + HEADINGS[heading].length() + 1);
+        if (heading + 1 < HEADINGS.length) {
+            text = text.substring(0, text.indexOf(HEADINGS[heading + 1]));
+        }
+        List<String> issues = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (!line.isEmpty() && !line.equals("\t(none)")) {
+                issues.add(line.substring(1));
+            }
+        }
+        return issues;
+    }
+
+    private static String getTime(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,124 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests of reading a roster through a {@link RosterSnapshot}: a snapshot sees one version of the roster however the
+ * roster changes afterwards, a version is only seen once every earlier change is complete, and a snapshot taken while
+ * a batch is being made has all of its rows or none of them
+ */
+public class RosterSnapshotTest {
+    private static final int BATCH_SIZE = 4;
+    private static final int BATCHES = 500;
+
+    public static void main(String[] args) throws Exception {
+        ignoresLaterChanges();
+        waitsForEarlierChangesToComplete();
+        seesWholeBatchesWhileChangesAreMade();
+        System.out.println("RosterSnapshotTest OK");
+    }
+
+    private static void ignoresLaterChanges() {
+        ShiftManServer server = new ShiftManServer();
+        Check.isTrue(server.getSnapshot() == null, "snapshot without a roster");
+        server.newRoster("Corner Shop");
+        server.setWorkingHours("Monday", "09:00", "17:00");
+        server.addShift("Monday", "09:00", "12:00", "1");
+        server.registerStaff("Bayta", "Darell");
+        server.registerStaff("Hari", "Seldon");
+        server.assignStaff("Monday", "09:00", "12:00", "Hari", "Seldon", false);
+
+        RosterSnapshot snapshot = server.getSnapshot();
+        String before = describe(snapshot);
+        Check.equal(describe(server), before, "snapshot of the latest version");
+
+        server.setWorkingHours("Tuesday", "09:00", "17:00");
+        server.addShift("Monday", "13:00", "17:00", "1");
+        server.addShift("Tuesday", "09:00", "12:00", "2");
+        server.registerStaff("Ebling", "Mis");
+        server.assignStaff("Monday", "09:00", "12:00", "Bayta", "Darell", true);
+        server.assignStaff("Tuesday", "09:00", "12:00", "Ebling", "Mis", false);
+        server.registerStaffBatch(Arrays.asList(new String[] { "Dors", "Venabili" },
+                new String[] { "Gaal", "Dornick" }));
+
+        Check.equal(before, describe(snapshot), "snapshot after the roster changed");
+        Check.isTrue(!before.equals(describe(server)), "roster changed");
+        Check.equal(describe(server), describe(server.getSnapshot()), "snapshot of the changed roster");
+    }
+
+    /**
+     * A change that began later may complete first, eg. a change to another day in a
+     * {@link ConcurrentShiftManServer}. Its version must not be seen until the earlier change completes too.
+     */
+    private static void waitsForEarlierChangesToComplete() {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        server.registerStaff("Bayta", "Darell");
+        Roster roster = server.roster;
+        long published = roster.getPublishedVersion();
+
+        long earlier = roster.beginChange();
+        Check.equal("", server.registerStaff("Hari", "Seldon"), "change that began later");
+        Check.equal(published, roster.getPublishedVersion(), "version published while an earlier change is made");
+        RosterSnapshot snapshot = server.getSnapshot();
+        Check.equal(published, snapshot.getVersion(), "version of a snapshot taken while an earlier change is made");
+        Check.equal(Arrays.asList("Bayta Darell"), snapshot.getRegisteredStaff(), "staff seen by the snapshot");
+
+        roster.endChange(earlier);
+        Check.equal(earlier + 1, roster.getPublishedVersion(), "version published once the earlier change ended");
+        Check.equal(Arrays.asList("Bayta Darell", "Hari Seldon"), server.getSnapshot().getRegisteredStaff(),
+                "staff seen by a later snapshot");
+        Check.equal(Arrays.asList("Bayta Darell"), snapshot.getRegisteredStaff(), "staff seen by the first snapshot");
+    }
+
+    /**
+     * Batches of staff are registered while snapshots are taken and read. Every snapshot must have whole batches,
+     * give the same results each time it is read, and be of a version no earlier than the snapshot before it.
+     */
+    private static void seesWholeBatchesWhileChangesAreMade() throws InterruptedException {
+        final ConcurrentShiftManServer server = new ConcurrentShiftManServer();
+        server.newRoster("Corner Shop");
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < BATCHES; i++) {
+                    List<String[]> batch = new ArrayList<>();
+                    for (int j = 0; j < BATCH_SIZE; j++) {
+                        batch.add(new String[] { "Given" + j, "Family" + i });
+                    }
+                    server.registerStaffBatch(batch);
+                }
+            }
+        });
+        writer.start();
+
+        long lastVersion = 0;
+        int snapshots = 0;
+        while (writer.isAlive() || snapshots == 0) {
+            RosterSnapshot snapshot = server.getSnapshot();
+            List<String> staff = snapshot.getRegisteredStaff();
+            Check.equal(0, staff.size() % BATCH_SIZE, "staff seen by a snapshot taken during a batch");
+            Check.equal(staff, snapshot.getUnassignedStaff(), "unassigned staff seen by the same snapshot");
+            Check.equal(staff, snapshot.getRegisteredStaff(), "staff seen by the same snapshot again");
+            Check.isTrue(snapshot.getVersion() >= lastVersion, "snapshot of an earlier version than the last");
+            lastVersion = snapshot.getVersion();
+            snapshots++;
+        }
+        writer.join();
+        Check.equal(BATCHES * BATCH_SIZE, server.getSnapshot().getRegisteredStaff().size(), "staff registered");
+    }
+
+    private static String describe(RosterSnapshot snapshot) {
+        return snapshot.getRegisteredStaff() + "\n" + snapshot.getUnassignedStaff() + "\n"
+                + snapshot.shiftsWithoutManagers() + snapshot.understaffedShifts() + snapshot.overstaffedShifts()
+                + "\n" + snapshot.displayRoster();
+    }
+
+    private static String describe(ShiftManServer server) {
+        return server.getRegisteredStaff() + "\n" + server.getUnassignedStaff() + "\n"
+                + server.shiftsWithoutManagers() + server.understaffedShifts() + server.overstaffedShifts()
+                + "\n" + server.displayRoster();
+    }
+}
@@ -0,0 +1,176 @@
+package shiftman.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of filling the gaps of a roster with {@link ShiftManServer#planRoster} and {@link ShiftManServer#fillRoster},
+ * see {@link RosterSolver}: the gaps are filled when there are staff to fill them, the limits of
+ * {@link StaffConstraints} are kept, and the gaps that cannot be filled are reported
+ */
+public class RosterSolverTest {
+    private static final String[] DAYS = { "Monday", "Tuesday", "Wednesday", "Thursday", "Friday" };
+    private static final long TIME_BUDGET = 2000;
+
+    public static void main(String[] args) throws Exception {
+        fillsEveryGap();
+        keepsLimitsOfStaff();
+        reportsGapsThatCannotBeFilled();
+        plansWithoutChangingRoster();
+        refusesInvalidConstraints();
+        plansWhileStaffAreAssigned();
+        System.out.println("RosterSolverTest OK");
+    }
+
+    private static void fillsEveryGap() {
+        ShiftManServer server = makeRoster(8);
+        Check.equal("", server.assignStaff("Monday", "09:00", "13:00", "Given0", "Family", true), "assignStaff");
+        StaffConstraints constraints = new StaffConstraints();
+        Check.equal("", constraints.setDefaultMaxHours(20), "setDefaultMaxHours");
+
+        List<String> results = server.fillRoster(constraints, TIME_BUDGET);
+        Check.equal(9 + 15, results.size(), "assignments made"); // a manager for every shift but one, and workers
+        for (String result : results) {
+            Check.isTrue(!result.contains("ERROR"), "assignment rejected: " + result);
+        }
+        Check.equal(Collections.emptyList(), server.shiftsWithoutManagers(), "shifts without a manager");
+        Check.equal(Collections.emptyList(), server.understaffedShifts(), "understaffed shifts");
+        Check.equal(Collections.emptyList(), server.overstaffedShifts(), "overstaffed shifts");
+        Check.equal(Arrays.asList("Family, Given0", "Monday[09:00-13:00]"),
+                server.getShiftsManagedBy("Given0 Family").subList(0, 2), "assignment made before planning");
+        for (int i = 0; i < 8; i++) {
+            String name = "Given" + i + " Family";
+            int shifts = server.getRosterForWorker(name).size() - 1 + server.getShiftsManagedBy(name).size() - 1;
+            Check.isTrue(shifts <= 5, name + " given more than 20 hours: " + shifts + " shifts of 4 hours");
+        }
+    }
+
+    private static void keepsLimitsOfStaff() throws InterruptedException {
+        ShiftManServer server = makeRoster(8);
+        StaffConstraints constraints = new StaffConstraints();
+        Check.equal("", constraints.setMaxHours("given1 FAMILY", 4), "setMaxHours"); // ignoring case
+        Check.equal("", constraints.addAvailability("Given2 Family", "Monday", "09:00", "13:00"), "addAvailability");
+        Check.equal("", constraints.addAvailability("Given2 Family", "Friday", "12:00", "18:00"), "addAvailability");
+        Check.equal("", constraints.setMaxHours("Given3 Family", 0), "setMaxHours");
+
+        RosterPlan plan = server.planRoster(constraints, TIME_BUDGET);
+        Check.isTrue(plan.isComplete(), "plan fills every gap");
+        Map<String, Integer> shifts = new HashMap<>();
+        for (String[] row : plan.getAssignments()) {
+            String name = row[3] + " " + row[4];
+            shifts.put(name, shifts.containsKey(name) ? shifts.get(name) + 1 : 1);
+            if (name.equals("Given2 Family")) {
+                String shift = row[0] + " " + row[1];
+                Check.isTrue(shift.equals("Monday 09:00") || shift.equals("Friday 13:30"),
+                        "shift outside the availability given: " + shift);
+            }
+        }
+        Check.isTrue(!shifts.containsKey("Given1 Family") || shifts.get("Given1 Family") <= 1,
+                "more than 4 hours given");
+        Check.isTrue(!shifts.containsKey("Given3 Family"), "shift given to staff who can work no hours");
+    }
+
+    /**
+     * One shift needs a manager and three workers, and one worker is already assigned. The one other staff member is
+     * made the manager, as a missing manager counts for more than a missing worker.
+     */
+    private static void reportsGapsThatCannotBeFilled() throws InterruptedException {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        server.setWorkingHours("Monday", "09:00", "17:00");
+        server.addShift("Monday", "09:00", "13:00", "3");
+        server.registerStaff("Hari", "Seldon");
+        server.registerStaff("Bayta", "Darell");
+        server.assignStaff("Monday", "09:00", "13:00", "Hari", "Seldon", false);
+
+        RosterPlan plan = server.planRoster(new StaffConstraints(), TIME_BUDGET);
+        Check.isTrue(!plan.isComplete(), "plan fills every gap");
+        Check.equal(0, plan.getShiftsWithoutManager(), "shifts still without a manager");
+        Check.equal(2, plan.getWorkersMissing(), "workers still missing");
+        Check.equal(1, plan.getAssignments().size(), "assignments planned");
+        Check.equal(Arrays.asList("Monday", "09:00", "13:00", "Bayta", "Darell", "true"),
+                Arrays.asList(plan.getAssignments().get(0)), "assignment planned");
+    }
+
+    private static void plansWithoutChangingRoster() throws InterruptedException {
+        ShiftManServer server = makeRoster(8);
+        String before = server.displayRoster();
+        Check.isTrue(server.planRoster(new StaffConstraints(), TIME_BUDGET).isComplete(), "plan fills every gap");
+        Check.equal(before, server.displayRoster(), "roster after planning");
+
+        ShiftManServer empty = new ShiftManServer();
+        Check.isTrue(empty.planRoster(new StaffConstraints(), TIME_BUDGET) == null, "plan without a roster");
+        Check.equal(Arrays.asList("ERROR: no roster has been created"),
+                empty.fillRoster(new StaffConstraints(), TIME_BUDGET), "roster filled without a roster");
+    }
+
+    private static void refusesInvalidConstraints() {
+        StaffConstraints constraints = new StaffConstraints();
+        Check.equal("", constraints.setMaxHours("Hari Seldon", 7 * 24), "hours in a week");
+        Check.equal("ERROR: Maximum hours given (169) is invalid.", constraints.setMaxHours("Hari Seldon", 169),
+                "more than the hours in a week");
+        Check.equal("ERROR: Maximum hours given (-1) is invalid.", constraints.setMaxHours("Hari Seldon", -1),
+                "negative hours");
+        Check.equal("ERROR: Maximum hours given (" + Integer.MAX_VALUE + ") is invalid.",
+                constraints.setDefaultMaxHours(Integer.MAX_VALUE), "hours whose minutes do not fit an int");
+        Check.equal("ERROR: Invalid name given.", constraints.setMaxHours(null, 10), "no name");
+        Check.equal("ERROR: Day given (Funday) is invalid.",
+                constraints.addAvailability("Hari Seldon", "Funday", "09:00", "12:00"), "invalid day");
+    }
+
+    /**
+     * Plans again and again while staff are registered and assigned to shifts at the same time, so the staff of the
+     * shifts may not all be among the staff the solver has copied
+     */
+    private static void plansWhileStaffAreAssigned() throws InterruptedException {
+        final ConcurrentShiftManServer server = new ConcurrentShiftManServer();
+        server.newRoster("Corner Shop");
+        for (String day : DAYS) {
+            server.setWorkingHours(day, "00:00", "23:00");
+            for (int hour = 0; hour < 23; hour++) {
+                server.addShift(day, getTime(hour * 60), getTime(hour * 60 + 58), "3");
+            }
+        }
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 300; i++) {
+                    server.registerStaff("Given" + i, "Family");
+                    int start = i / DAYS.length % 23 * 60;
+                    server.assignStaff(DAYS[i % DAYS.length], getTime(start), getTime(start + 58), "Given" + i,
+                            "Family", false);
+                }
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            Check.isTrue(server.planRoster(new StaffConstraints(), 10) != null, "plan made");
+        }
+        writer.join();
+    }
+
+    /**
+     * @return a roster with two shifts on each of five days, of four hours each, one needing two workers and the
+     *         other one worker, and the given number of staff, none of whom is assigned
+     */
+    private static ShiftManServer makeRoster(int staff) {
+        ShiftManServer server = new ShiftManServer();
+        Check.equal("", server.newRoster("Corner Shop"), "newRoster");
+        for (String day : DAYS) {
+            Check.equal("", server.setWorkingHours(day, "09:00", "17:30"), "setWorkingHours");
+            Check.equal("", server.addShift(day, "09:00", "13:00", "2"), "addShift");
+            Check.equal("", server.addShift(day, "13:30", "17:30", "1"), "addShift"); // shifts that touch overlap
+        }
+        for (int i = 0; i < staff; i++) {
+            Check.equal("", server.registerStaff("Given" + i, "Family"), "registerStaff");
+        }
+        return server;
+    }
+
+    private static String getTime(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
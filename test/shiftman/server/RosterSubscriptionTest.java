@@ -0,0 +1,206 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests of following the changes to a roster through a {@link RosterSubscription}: the events follow on from the
+ * snapshot the subscription starts with, whatever changes are being made while it starts, and a subscriber that
+ * falls too far behind, or whose roster is replaced, is told to subscribe again rather than missing events
+ */
+public class RosterSubscriptionTest {
+    private static final int STAFF = 1000;
+    private static final int SHIFTS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        receivesChangesInOrder();
+        endsWhenLapped();
+        endsWhenRosterReplaced();
+        waitsForChangeInProgress();
+        followsOnWhileChangesAreMade();
+        System.out.println("RosterSubscriptionTest OK");
+    }
+
+    private static void receivesChangesInOrder() {
+        ShiftManServer server = new ShiftManServer();
+        Check.isTrue(server.subscribe() == null, "subscription without a roster");
+        server.newRoster("Corner Shop");
+        server.registerStaff("Bayta", "Darell");
+
+        RosterSubscription subscription = server.subscribe();
+        long version = subscription.getSnapshot().getVersion();
+        Check.equal(Arrays.asList("Bayta Darell"), subscription.getSnapshot().getRegisteredStaff(), "snapshot");
+        Check.equal(0, subscription.poll(new ArrayList<RosterEvent>(), 10), "events before any change");
+
+        server.setWorkingHours("Monday", "09:00", "17:00");
+        server.addShift("Monday", "09:00", "12:00", "1");
+        server.registerStaffBatch(Arrays.asList(new String[] { "Hari", "Seldon" }, new String[] { "Bayta", "Darell" },
+                new String[] { "Ebling", "Mis" }));
+        server.assignStaff("Monday", "09:00", "12:00", "Bayta", "Darell", true);
+        server.assignStaff("Monday", "09:00", "12:00", "Hari", "Seldon", false);
+        server.addShift("Monday", "11:00", "13:00", "1"); // rejected, so no change
+        Check.equal(5L, subscription.getPending(), "changes pending");
+
+        List<RosterEvent> events = new ArrayList<>();
+        Check.equal(3, subscription.poll(events, 3), "events of the first poll");
+        Check.equal(3L, subscription.getPending(), "changes pending part way through a batch");
+        Check.equal(3, subscription.poll(events, 10), "events of the second poll");
+        Check.equal(0L, subscription.getPending(), "changes pending once all are received");
+        Check.equal(0, subscription.poll(events, 10), "events of the third poll");
+
+        List<String> expected = Arrays.asList(
+                (version + 1) + " WORKING_HOURS_SET Monday[09:00-17:00]",
+                (version + 2) + " SHIFT_ADDED Monday[09:00-12:00] 1",
+                (version + 3) + " STAFF_REGISTERED Seldon, Hari",
+                (version + 3) + " STAFF_REGISTERED Mis, Ebling",
+                (version + 4) + " MANAGER_ASSIGNED Monday[09:00-12:00] Darell, Bayta",
+                (version + 5) + " WORKER_ASSIGNED Monday[09:00-12:00] Seldon, Hari");
+        Check.equal(expected, describe(events), "events");
+    }
+
+    private static void endsWhenLapped() {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+
+        RosterSubscription subscription = server.subscribe();
+        registerStaff(server, "Kept", Roster.EVENT_CAPACITY);
+        Check.equal(Roster.EVENT_CAPACITY, pollAll(subscription).size(), "events of as many changes as are kept");
+
+        RosterSubscription lapped = server.subscribe();
+        registerStaff(server, "Lost", Roster.EVENT_CAPACITY + 1);
+        Check.equal(-1, lapped.poll(new ArrayList<RosterEvent>(), 10), "poll by a subscriber that fell too far behind");
+        Check.equal(-1, lapped.poll(new ArrayList<RosterEvent>(), 10), "poll once the subscription has ended");
+        Check.equal(-1, subscription.poll(new ArrayList<RosterEvent>(), 10), "poll by the first subscriber");
+
+        RosterSubscription again = server.subscribe();
+        Check.equal(2 * Roster.EVENT_CAPACITY + 1, again.getSnapshot().getRegisteredStaff().size(),
+                "staff in the snapshot of a new subscription");
+        Check.equal(0, again.poll(new ArrayList<RosterEvent>(), 10), "events of a new subscription");
+    }
+
+    private static void endsWhenRosterReplaced() {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        RosterSubscription subscription = server.subscribe();
+        server.registerStaff("Bayta", "Darell");
+
+        server.newRoster("New Shop");
+        Check.equal(-1, subscription.poll(new ArrayList<RosterEvent>(), 10), "poll after the roster was replaced");
+    }
+
+    /**
+     * A change that began before the first subscription may not store its event, so the subscription must not start
+     * until that change is complete, and must start from a snapshot that includes it
+     */
+    private static void waitsForChangeInProgress() throws InterruptedException {
+        final ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        Roster roster = server.roster;
+        long version = roster.beginChange();
+
+        final RosterSubscription[] subscription = new RosterSubscription[1];
+        Thread subscriber = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                subscription[0] = server.subscribe();
+            }
+        });
+        subscriber.start();
+        subscriber.join(200);
+        Check.isTrue(subscriber.isAlive(), "subscribed while a change was in progress");
+
+        roster.endChange(version);
+        subscriber.join();
+        Check.equal(version, subscription[0].getSnapshot().getVersion(), "version of the snapshot subscribed to");
+        server.registerStaff("Bayta", "Darell");
+        Check.equal(Arrays.asList((version + 1) + " STAFF_REGISTERED Darell, Bayta"),
+                describe(pollAll(subscription[0])), "events after subscribing");
+    }
+
+    /**
+     * Subscribes again and again while staff are registered and shifts added to different days at the same time.
+     * The events of every subscription must follow on from its snapshot without a gap, so that the snapshot and the
+     * events together make up the whole roster.
+     */
+    private static void followsOnWhileChangesAreMade() throws InterruptedException {
+        final ConcurrentShiftManServer server = new ConcurrentShiftManServer();
+        server.newRoster("Corner Shop");
+        for (DayOfWeek day : DayOfWeek.values()) {
+            server.setWorkingHours(day.toString(), "06:00", "22:00");
+        }
+        Thread staffWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                registerStaff(server, "Staff", STAFF);
+            }
+        });
+        Thread shiftWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SHIFTS; i++) {
+                    int start = 6 * 60 + i / DayOfWeek.count() * 6; // shifts that touch overlap
+                    server.addShift(DayOfWeek.of(i % DayOfWeek.count()).toString(), getTime(start),
+                            getTime(start + 5), "1");
+                }
+            }
+        });
+        staffWriter.start();
+        shiftWriter.start();
+
+        List<RosterSubscription> subscriptions = new ArrayList<>();
+        while (staffWriter.isAlive() || shiftWriter.isAlive()) {
+            subscriptions.add(server.subscribe());
+            Thread.sleep(1);
+        }
+        staffWriter.join();
+        shiftWriter.join();
+        subscriptions.add(server.subscribe());
+
+        RosterSnapshot roster = server.getSnapshot();
+        Check.equal(STAFF, roster.getEmployeesByRegistration().size(), "staff registered");
+        Check.equal(SHIFTS, roster.getAllShifts().size(), "shifts added");
+        for (RosterSubscription subscription : subscriptions) {
+            RosterSnapshot snapshot = subscription.getSnapshot();
+            int staff = snapshot.getEmployeesByRegistration().size();
+            int shifts = snapshot.getAllShifts().size();
+            long version = snapshot.getVersion();
+            for (RosterEvent event : pollAll(subscription)) {
+                Check.equal(++version, event.getVersion(), "version of the next event");
+                staff += event.getType() == RosterEvent.Type.STAFF_REGISTERED ? 1 : 0;
+                shifts += event.getType() == RosterEvent.Type.SHIFT_ADDED ? 1 : 0;
+            }
+            Check.equal(roster.getVersion(), version, "version of the last event");
+            Check.equal(STAFF, staff, "staff in the snapshot and events");
+            Check.equal(SHIFTS, shifts, "shifts in the snapshot and events");
+        }
+    }
+
+    private static void registerStaff(ShiftManServer server, String familyName, int count) {
+        for (int i = 0; i < count; i++) {
+            Check.equal("", server.registerStaff("Given" + i, familyName), "registerStaff");
+        }
+    }
+
+    private static List<RosterEvent> pollAll(RosterSubscription subscription) {
+        List<RosterEvent> events = new ArrayList<>();
+        int count;
+        do {
+            count = subscription.poll(events, 100);
+            Check.isTrue(count >= 0, "subscription ended");
+        } while (count > 0);
+        return events;
+    }
+
+    private static List<String> describe(List<RosterEvent> events) {
+        List<String> descriptions = new ArrayList<>();
+        for (RosterEvent event : events) {
+            descriptions.add(event.toString());
+        }
+        return descriptions;
+    }
+
+    private static String getTime(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,150 @@
+package shiftman.server;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import shiftman.server.ShiftManMetrics.Operation;
+
+/**
+ * Tests of the metrics recorded by {@link InstrumentedShiftMan}: calls and their errors are counted under the
+ * operation and {@link ErrorCategory} they belong to, nothing is recorded while the metrics are disabled, and the
+ * percentiles of {@link LatencyHistogram} are within its stated accuracy
+ */
+public class ShiftManMetricsTest {
+    public static void main(String[] args) {
+        countsCallsAndErrorsByCategory();
+        recordsNothingWhileDisabled();
+        countsOnlyErrorsOfTheCallItself();
+        readsPercentilesOfSmallValuesExactly();
+        readsPercentilesWithinAccuracy();
+        readsNothingFromEmptyHistogram();
+        System.out.println("ShiftManMetricsTest OK");
+    }
+
+    private static void countsCallsAndErrorsByCategory() {
+        InstrumentedShiftMan shiftMan = new InstrumentedShiftMan(new ShiftManServer());
+        shiftMan.registerStaff("Hari", "Seldon");
+        shiftMan.newRoster("Corner Shop");
+        shiftMan.setWorkingHours("Monday", "09:00", "17:00");
+        shiftMan.setWorkingHours("Funday", "09:00", "17:00");
+        shiftMan.addShift("Monday", "09:00", "12:00", "1");
+        shiftMan.addShift("Monday", "11:00", "13:00", "1");
+        shiftMan.registerStaff("Hari", "Seldon");
+        shiftMan.registerStaff("Hari", "Seldon");
+        shiftMan.assignStaff("Monday", "09:00", "12:00", "Gaal", "Dornick", false);
+        shiftMan.getRosterForWorker("Hari Seldon");
+
+        ShiftManMetrics metrics = shiftMan.getMetrics();
+        checkCalls(metrics, Operation.newRoster, 1, Collections.<String, Long>emptyMap());
+        checkCalls(metrics, Operation.setWorkingHours, 2, errors(ErrorCategory.INVALID_INPUT, 1));
+        checkCalls(metrics, Operation.addShift, 2, errors(ErrorCategory.CONFLICT, 1));
+        Map<String, Long> registerErrors = errors(ErrorCategory.NO_ROSTER, 1);
+        registerErrors.putAll(errors(ErrorCategory.CONFLICT, 1));
+        checkCalls(metrics, Operation.registerStaff, 3, registerErrors);
+        checkCalls(metrics, Operation.assignStaff, 1, errors(ErrorCategory.NOT_FOUND, 1));
+        checkCalls(metrics, Operation.getRosterForWorker, 1, Collections.<String, Long>emptyMap());
+        checkCalls(metrics, Operation.displayRoster, 0, Collections.<String, Long>emptyMap());
+        Check.equal(1, metrics.getStaffCount(), "staff counted");
+        Check.equal(1, metrics.getShiftCount(), "shifts counted");
+
+        metrics.reset();
+        checkCalls(metrics, Operation.registerStaff, 0, Collections.<String, Long>emptyMap());
+        Check.equal(1, metrics.getStaffCount(), "staff counted after a reset");
+    }
+
+    private static void recordsNothingWhileDisabled() {
+        InstrumentedShiftMan shiftMan = new InstrumentedShiftMan(new ShiftManServer());
+        shiftMan.getMetrics().setEnabled(false);
+        Check.equal("ERROR: no roster has been created", shiftMan.registerStaff("Hari", "Seldon"),
+                "request while disabled");
+        checkCalls(shiftMan.getMetrics(), Operation.registerStaff, 0, Collections.<String, Long>emptyMap());
+
+        shiftMan.getMetrics().setEnabled(true);
+        Check.equal("", shiftMan.newRoster("Corner Shop"), "request once enabled again");
+        checkCalls(shiftMan.getMetrics(), Operation.newRoster, 1, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * An error returned by a request that was not recorded, eg. one made to the server directly, must not be counted
+     * against the next request that is recorded on the same thread
+     */
+    private static void countsOnlyErrorsOfTheCallItself() {
+        ShiftManServer server = new ShiftManServer();
+        InstrumentedShiftMan shiftMan = new InstrumentedShiftMan(server);
+        server.registerStaff("Hari", "Seldon");
+        shiftMan.getMetrics().setEnabled(false);
+        shiftMan.registerStaff("Hari", "Seldon");
+        shiftMan.getMetrics().setEnabled(true);
+
+        shiftMan.newRoster("Corner Shop");
+        shiftMan.getRegisteredStaff();
+        checkCalls(shiftMan.getMetrics(), Operation.newRoster, 1, Collections.<String, Long>emptyMap());
+        checkCalls(shiftMan.getMetrics(), Operation.getRegisteredStaff, 1, Collections.<String, Long>emptyMap());
+    }
+
+    private static void readsPercentilesOfSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 31; value >= 0; value--) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Check.equal(32L, snapshot.getCount(), "values recorded");
+        Check.equal(0L, snapshot.getValueAtPercentile(0), "minimum");
+        Check.equal(15L, snapshot.getValueAtPercentile(50), "median");
+        Check.equal(28L, snapshot.getValueAtPercentile(90), "90th percentile");
+        Check.equal(31L, snapshot.getValueAtPercentile(100), "maximum");
+        Check.equal(31L, snapshot.getMax(), "maximum recorded");
+    }
+
+    /**
+     * Every value from 1 to 100000 is recorded once, so the value at each percentile is known. The value read must be
+     * no less than it, and more by no more than the width of its bucket, 1/16 of the power of two it is in.
+     */
+    private static void readsPercentilesWithinAccuracy() {
+        int count = 100000;
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = count; value >= 1; value--) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        for (double percentile : new double[] { 1, 10, 50, 75, 90, 99, 99.9, 99.99 }) {
+            long expected = (long) Math.ceil(percentile / 100 * count);
+            long value = snapshot.getValueAtPercentile(percentile);
+            Check.isTrue(value >= expected && value <= expected + expected / 16,
+                    percentile + "th percentile " + value + " is not within 1/16 of " + expected);
+        }
+        Check.equal((long) count, snapshot.getValueAtPercentile(100), "maximum");
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        snapshot = histogram.snapshot();
+        Check.equal(count + 2L, snapshot.getCount(), "values recorded, including those out of range");
+        Check.equal(0L, snapshot.getValueAtPercentile(0), "negative value recorded as 0");
+        Check.isTrue(snapshot.getMax() < Long.MAX_VALUE && snapshot.getMax() > count, "largest value capped");
+
+        histogram.reset();
+        Check.equal(0L, histogram.snapshot().getCount(), "values recorded after a reset");
+    }
+
+    private static void readsNothingFromEmptyHistogram() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        Check.equal(0L, snapshot.getCount(), "values recorded");
+        Check.equal(0L, snapshot.getValueAtPercentile(50), "median");
+        Check.equal(0L, snapshot.getMax(), "maximum");
+    }
+
+    private static void checkCalls(ShiftManMetrics metrics, Operation operation, long calls,
+                                   Map<String, Long> errors) {
+        OperationStats stats = metrics.getOperation(operation);
+        Check.equal(calls, stats.getCalls(), "calls to " + operation);
+        Check.equal(errors, stats.getErrorsByCategory(), "errors of " + operation);
+        Check.equal(calls > 0, stats.getLatencyMax() > 0, "latency of " + operation + " recorded");
+    }
+
+    private static Map<String, Long> errors(ErrorCategory category, long count) {
+        Map<String, Long> errors = new LinkedHashMap<>();
+        errors.put(category.name(), count);
+        return errors;
+    }
+}
@@ -0,0 +1,198 @@
+package shiftman.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import shiftman.client.ShiftManClient;
+
+/**
+ * Tests of serving a ShiftMan server over the network: the framing of {@link ShiftManProtocol}, pipelined requests
+ * answered in order by {@link ShiftManService}, requests handed to the workers so that a slow request does not hold
+ * up other connections, and failed requests answered with an error
+ */
+public class ShiftManServiceTest {
+    private static final int REQUESTS = 500;
+
+    public static void main(String[] args) throws Exception {
+        readsWholeFramesOnly();
+        refusesInvalidFrames();
+        answersPipelinedRequestsInOrder();
+        servesOthersWhileRequestIsSlow();
+        answersFailedRequestsWithError();
+        System.out.println("ShiftManServiceTest OK");
+    }
+
+    private static void readsWholeFramesOnly() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        int start = ShiftManProtocol.beginFrame(buffer, 7);
+        buffer.put(ShiftManProtocol.REGISTER_STAFF);
+        buffer = ShiftManProtocol.ensureRoom(buffer, 64); // copied into a larger buffer
+        ShiftManProtocol.putString(buffer, "Zoë");
+        ShiftManProtocol.putStrings(buffer, Arrays.asList("Ångström", "", "Hari"));
+        ShiftManProtocol.endFrame(buffer, start);
+        Check.equal(1 + ShiftManProtocol.size("Zoë") + ShiftManProtocol.size(Arrays.asList("Ångström", "", "Hari")),
+                (long) buffer.position() - ShiftManProtocol.FRAME_HEADER_SIZE, "size of the body");
+        buffer.flip();
+
+        int frameSize = buffer.remaining();
+        for (int length = 0; length < frameSize; length++) {
+            ByteBuffer part = buffer.duplicate();
+            part.limit(length);
+            Check.equal(-1, ShiftManProtocol.frameLength(part), "length of a frame cut short at " + length);
+        }
+        Check.equal(frameSize - 4, ShiftManProtocol.frameLength(buffer), "length of the whole frame");
+
+        Check.equal(frameSize - 4, buffer.getInt(), "length");
+        Check.equal(7, buffer.getInt(), "request id");
+        Check.equal(ShiftManProtocol.REGISTER_STAFF, buffer.get(), "operation");
+        Check.equal("Zoë", ShiftManProtocol.getString(buffer), "string");
+        Check.equal(Arrays.asList("Ångström", "", "Hari"), ShiftManProtocol.getStrings(buffer), "strings");
+        Check.isTrue(!buffer.hasRemaining(), "bytes left after the frame");
+    }
+
+    private static void refusesInvalidFrames() throws IOException {
+        for (int length : new int[] { 3, -1, ShiftManProtocol.MAX_FRAME_LENGTH + 1 }) {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            buffer.putInt(length).putInt(0).flip();
+            try {
+                ShiftManProtocol.frameLength(buffer);
+                throw new AssertionError("frame of length " + length + " accepted");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        ShiftManProtocol.putVarInt(buffer, 10);
+        buffer.put(new byte[] { 'H', 'a', 'r', 'i' }).flip();
+        try {
+            ShiftManProtocol.getString(buffer);
+            throw new AssertionError("string longer than the frame read");
+        } catch (BufferUnderflowException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Sends many requests without waiting for their responses. The responses must come back in the order of the
+     * requests, and be those that the server gives when called directly.
+     */
+    private static void answersPipelinedRequestsInOrder() throws IOException {
+        ShiftManServer expected = new ShiftManServer();
+        ShiftManService service = new ShiftManService(new ConcurrentShiftManServer(), new InetSocketAddress(0), 2, 4);
+        try (ShiftManClient client = new ShiftManClient(service.getAddress())) {
+            List<Integer> ids = new ArrayList<>();
+            List<Object> results = new ArrayList<>();
+            ids.add(client.send(ShiftManProtocol.NEW_ROSTER, "Corner Shop"));
+            results.add(expected.newRoster("Corner Shop"));
+            ids.add(client.send(ShiftManProtocol.SET_WORKING_HOURS, "Monday", "09:00", "17:00"));
+            results.add(expected.setWorkingHours("Monday", "09:00", "17:00"));
+            ids.add(client.send(ShiftManProtocol.ADD_SHIFT, "Monday", "09:00", "12:00", "1"));
+            results.add(expected.addShift("Monday", "09:00", "12:00", "1"));
+            for (int i = 0; i < REQUESTS; i++) {
+                String givenName = "Given" + i % (REQUESTS / 2); // half are registered twice
+                ids.add(client.send(ShiftManProtocol.REGISTER_STAFF, givenName, "Family"));
+                results.add(expected.registerStaff(givenName, "Family"));
+                if (i % 50 == 0) {
+                    ids.add(client.sendAssignStaff("Monday", "09:00", "12:00", givenName, "Family", i == 0));
+                    results.add(expected.assignStaff("Monday", "09:00", "12:00", givenName, "Family", i == 0));
+                    ids.add(client.send(ShiftManProtocol.GET_UNASSIGNED_STAFF));
+                    results.add(expected.getUnassignedStaff());
+                }
+            }
+            ids.add(client.send(ShiftManProtocol.DISPLAY_ROSTER));
+            results.add(expected.displayRoster());
+            client.flush();
+
+            for (int i = 0; i < ids.size(); i++) {
+                ShiftManClient.Response response = client.receive();
+                Check.equal(ids.get(i), response.getRequestId(), "id of response " + i);
+                Check.equal(results.get(i), response.isList() ? response.getList() : response.getStatus(),
+                        "result of request " + i);
+            }
+            Check.equal(expected.getRegisteredStaff(), client.getRegisteredStaff(), "staff registered");
+        } finally {
+            service.close();
+        }
+    }
+
+    /**
+     * Makes a request that does not return until it is let go, on a service with one I/O thread. A request made on
+     * another connection, which is read by the same thread, must still be answered in the meantime.
+     */
+    private static void servesOthersWhileRequestIsSlow() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ShiftManServer server = new ConcurrentShiftManServer() {
+            @Override
+            public String displayRoster() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.displayRoster();
+            }
+        };
+        ShiftManService service = new ShiftManService(server, new InetSocketAddress(0), 1, 2);
+        try (ShiftManClient slow = new ShiftManClient(service.getAddress());
+             ShiftManClient other = new ShiftManClient(service.getAddress())) {
+            Check.equal("", other.newRoster("Corner Shop"), "newRoster");
+            slow.send(ShiftManProtocol.DISPLAY_ROSTER);
+            slow.flush();
+            started.await();
+
+            Check.equal("", other.registerStaff("Hari", "Seldon"), "request made while another is running");
+            Check.equal(Arrays.asList("Hari Seldon"), other.getRegisteredStaff(), "staff registered");
+            release.countDown();
+            ShiftManServer expected = new ShiftManServer();
+            expected.newRoster("Corner Shop");
+            Check.equal(expected.displayRoster(), slow.receive().getStatus(), "response to the slow request");
+        } finally {
+            release.countDown();
+            service.close();
+        }
+    }
+
+    /**
+     * A request that cannot be read, or that the server fails to run, is answered with an error, without the details
+     * of the failure, and the connection can still be used
+     */
+    private static void answersFailedRequestsWithError() throws IOException {
+        ShiftManServer server = new ShiftManServer() {
+            @Override
+            public String reportRosterIssues() {
+                throw new IllegalStateException("Report failed");
+            }
+        };
+        ShiftManService service = new ShiftManService(server, new InetSocketAddress(0), 1);
+        PrintStream err = System.err;
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try (ShiftManClient client = new ShiftManClient(service.getAddress())) {
+            client.send(ShiftManProtocol.REGISTER_STAFF, "Hari"); // the family name is missing
+            Check.equal("ERROR: Invalid request", client.receive().getStatus(), "request cut short");
+            client.send((byte) 99);
+            Check.equal("ERROR: Unknown operation 99", client.receive().getStatus(), "unknown operation");
+
+            System.setErr(new PrintStream(log, true));
+            Check.equal("ERROR: The server failed to run the request", client.reportRosterIssues(),
+                    "request the server failed to run");
+            System.setErr(err);
+            Check.isTrue(log.toString().contains("Report failed"), "failure logged by the service");
+
+            Check.equal("", client.newRoster("Corner Shop"), "request after the failures");
+        } finally {
+            System.setErr(err);
+            service.close();
+        }
+    }
+}
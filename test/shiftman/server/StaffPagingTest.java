@@ -0,0 +1,112 @@
+package shiftman.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests of fetching the staff a page at a time with {@link ShiftManServer#getRegisteredStaff(String, int)} and
+ * {@link ShiftManServer#getUnassignedStaff(String, int)}: the pages together are the whole list, in the same order,
+ * and paging carries on from the cursor however the staff change between pages
+ */
+public class StaffPagingTest {
+    private static final int STAFF = 25;
+
+    public static void main(String[] args) {
+        pagesThroughAllStaff();
+        pagesThroughUnassignedStaff();
+        carriesOnFromCursorAfterChanges();
+        refusesInvalidPages();
+        System.out.println("StaffPagingTest OK");
+    }
+
+    private static void pagesThroughAllStaff() {
+        ShiftManServer server = makeStaff();
+        List<String> staff = server.getRegisteredStaff();
+        Check.equal(STAFF, staff.size(), "staff registered");
+        Check.equal(Arrays.asList("Given0 Family0", "Given10 Family0", "Given15 Family0"), staff.subList(0, 3),
+                "staff in order of family name and then given name");
+
+        for (int limit : new int[] { 1, 7, STAFF, STAFF + 1 }) {
+            List<String> pages = new ArrayList<>();
+            String after = null;
+            List<String> page;
+            do {
+                page = server.getRegisteredStaff(after, limit);
+                Check.isTrue(page.size() <= limit, "page larger than the limit");
+                pages.addAll(page);
+                after = page.isEmpty() ? after : page.get(page.size() - 1);
+            } while (page.size() == limit);
+            Check.equal(staff, pages, "pages of " + limit);
+        }
+        Check.equal(Collections.emptyList(), server.getRegisteredStaff(staff.get(STAFF - 1), 10),
+                "page after the last");
+    }
+
+    private static void pagesThroughUnassignedStaff() {
+        ShiftManServer server = makeStaff();
+        server.setWorkingHours("Monday", "09:00", "17:00");
+        server.addShift("Monday", "09:00", "12:00", "20");
+        for (int i = 0; i < STAFF; i += 2) {
+            server.assignStaff("Monday", "09:00", "12:00", "Given" + i, "Family" + i % 5, false);
+        }
+
+        List<String> unassigned = server.getUnassignedStaff();
+        Check.equal(STAFF / 2, unassigned.size(), "unassigned staff");
+        List<String> pages = new ArrayList<>(server.getUnassignedStaff(null, 5));
+        pages.addAll(server.getUnassignedStaff(pages.get(4), 5));
+        pages.addAll(server.getUnassignedStaff(pages.get(9), 5));
+        Check.equal(unassigned, pages, "pages of unassigned staff");
+    }
+
+    /**
+     * Staff are registered, and the staff member at the cursor assigned, between fetching one page and the next
+     */
+    private static void carriesOnFromCursorAfterChanges() {
+        ShiftManServer server = makeStaff();
+        server.setWorkingHours("Monday", "09:00", "17:00");
+        server.addShift("Monday", "09:00", "12:00", "1");
+        List<String> first = server.getUnassignedStaff(null, 10);
+        String cursor = first.get(9);
+
+        server.registerStaff("Aaron", "Family0"); // sorts before the cursor
+        server.registerStaff("Zed", "Family4"); // sorts after the cursor
+        String[] name = cursor.split(" ");
+        Check.equal("", server.assignStaff("Monday", "09:00", "12:00", name[0], name[1], false), "assignStaff");
+
+        List<String> rest = new ArrayList<>();
+        String after = cursor;
+        List<String> page;
+        while (!(page = server.getUnassignedStaff(after, 10)).isEmpty()) {
+            rest.addAll(page);
+            after = page.get(page.size() - 1);
+        }
+        List<String> unassigned = server.getUnassignedStaff();
+        Check.equal(unassigned.subList(unassigned.indexOf(first.get(8)) + 1, unassigned.size()), rest,
+                "pages after the cursor");
+        Check.isTrue(rest.contains("Zed Family4") && !rest.contains("Aaron Family0"), "staff registered meanwhile");
+    }
+
+    private static void refusesInvalidPages() {
+        Check.equal(Arrays.asList("ERROR: no roster has been created"),
+                new ShiftManServer().getRegisteredStaff(null, 10), "page without a roster");
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("ERROR: Page size (0) must be at least 1"), server.getRegisteredStaff(null, 0),
+                "page of no staff");
+        Check.equal(Arrays.asList("ERROR: \"Hari Seldon\" is not registered."),
+                server.getUnassignedStaff("Hari Seldon", 10), "page after staff who are not registered");
+    }
+
+    /**
+     * @return a roster with staff registered out of order of name, several of them with each family name
+     */
+    private static ShiftManServer makeStaff() {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        for (int i = STAFF - 1; i >= 0; i--) {
+            Check.equal("", server.registerStaff("Given" + i, "Family" + i % 5), "registerStaff");
+        }
+        return server;
+    }
+}
@@ -0,0 +1,115 @@
+package shiftman.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests of searching the staff by name as it is typed, see {@link ShiftManServer#searchStaff(String, int)} and
+ * {@link StaffSearchIndex}
+ */
+public class StaffSearchIndexTest {
+    private static final String[][] STAFF = {
+            { "John", "Smith" },
+            { "Sam", "Smith" },
+            { "Johnny", "Walker" },
+            { "Jo", "March" },
+            { "Mary", "Johnson" },
+            { "Anna", "Smit" },
+            { "Smitty", "Jones" },
+            { "Ann", "Dart" }, // registered out of order of family name
+            { "Bob", "Cart" },
+            { "Cy", "Bart" },
+            { "Kim", "Bato" }
+    };
+
+    public static void main(String[] args) {
+        findsNamesStartingWithQuery();
+        findsNamesWithOneTypingMistake();
+        findsMistakesOnlyFromThreeCharacters();
+        findsMistakesInOrderOfWord();
+        findsExactMatchesFirst();
+        matchesEveryWordOfQuery();
+        findsNoMoreThanLimit();
+        refusesInvalidSearches();
+        System.out.println("StaffSearchIndexTest OK");
+    }
+
+    private static void findsNamesStartingWithQuery() {
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("Anna Smit", "John Smith", "Sam Smith", "Smitty Jones"),
+                server.searchStaff("smit", 10), "staff found by the start of a name");
+        Check.equal(server.searchStaff("smit", 10), server.searchStaff("SMIT", 10), "staff found ignoring case");
+    }
+
+    private static void findsNamesWithOneTypingMistake() {
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("John Smith", "Sam Smith"), server.searchStaff("smtih", 10), "characters swapped");
+        Check.equal(Arrays.asList("John Smith", "Sam Smith"), server.searchStaff("msith", 10), "characters swapped");
+        Check.equal(Arrays.asList("Bob Cart"), server.searchStaff("crt", 10), "character left out");
+        Check.equal(Arrays.asList("Bob Cart"), server.searchStaff("caart", 10), "character added");
+        Check.equal(Arrays.asList("Mary Johnson"), server.searchStaff("johmson", 10), "character changed");
+        Check.equal(Collections.emptyList(), server.searchStaff("jhonsn", 10), "two mistakes");
+    }
+
+    /**
+     * One or two characters are within one edit of the start of most names, so they must match exactly
+     */
+    private static void findsMistakesOnlyFromThreeCharacters() {
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("Jo March", "John Smith", "Johnny Walker", "Mary Johnson", "Smitty Jones"),
+                server.searchStaff("jo", 10), "staff found by two characters");
+        Check.equal(Collections.emptyList(), server.searchStaff("xo", 10), "two characters with a mistake");
+        Check.equal(Collections.emptyList(), server.searchStaff("q", 10), "one character with a mistake");
+        Check.equal(Arrays.asList("John Smith", "Johnny Walker", "Mary Johnson", "Smitty Jones"),
+                server.searchStaff("jhon", 10), "four characters with a mistake");
+    }
+
+    private static void findsMistakesInOrderOfWord() {
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("Cy Bart", "Bob Cart", "Ann Dart"), server.searchStaff("xart", 10),
+                "staff found with a mistake");
+        Check.equal(Arrays.asList("Kim Bato", "Ann Dart"), server.searchStaff("dat", 10),
+                "staff found with a mistake in the first character and in the last");
+    }
+
+    private static void findsExactMatchesFirst() {
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("John Smith", "Sam Smith", "Anna Smit", "Smitty Jones"),
+                server.searchStaff("smith", 10), "exact matches and then matches with a mistake");
+        Check.equal(Arrays.asList("Jo March", "John Smith"), server.searchStaff("jo", 2), "exact match first");
+    }
+
+    private static void matchesEveryWordOfQuery() {
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("John Smith"), server.searchStaff("john smi", 10), "start of both names");
+        Check.equal(Arrays.asList("John Smith", "Smitty Jones"), server.searchStaff("smi jonh", 10),
+                "names in the other order");
+        Check.equal(Arrays.asList("John Smith"), server.searchStaff("  jo   smtih ", 10), "mistake in the last word");
+        Check.equal(Collections.emptyList(), server.searchStaff("jhon smith", 10), "mistake in another word");
+    }
+
+    private static void findsNoMoreThanLimit() {
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("Anna Smit"), server.searchStaff("smit", 1), "limit of one");
+        Check.equal(Arrays.asList("Anna Smit", "John Smith", "Sam Smith"), server.searchStaff("smit", 3),
+                "limit of three");
+    }
+
+    private static void refusesInvalidSearches() {
+        Check.equal(Arrays.asList("ERROR: no roster has been created"), new ShiftManServer().searchStaff("smit", 10),
+                "search without a roster");
+        ShiftManServer server = makeStaff();
+        Check.equal(Arrays.asList("ERROR: Number of results (0) must be at least 1"), server.searchStaff("smit", 0),
+                "search for no results");
+        Check.equal(Collections.emptyList(), server.searchStaff("  ", 10), "search for nothing");
+    }
+
+    private static ShiftManServer makeStaff() {
+        ShiftManServer server = new ShiftManServer();
+        server.newRoster("Corner Shop");
+        for (String[] staff : STAFF) {
+            Check.equal("", server.registerStaff(staff[0], staff[1]), "registerStaff");
+        }
+        return server;
+    }
+}